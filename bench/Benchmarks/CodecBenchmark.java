@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Benchmarks;
+
+import Network.IOSocket;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Frame encode and decode: turning the hex query strings into bytes to 
+ * send, and turning received bytes back into the hex strings the text
+ * formatters and {@link IOSocket#readBytes()} use.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark
+{
+    /** Counter query sent to FEIG gates. */
+    private final static String FEIG_QUERY  = "020012ff9f000d02020008017700ee024431";
+    /** Counter query sent to 3M gates. */
+    private final static String THREE_M_QUERY = "63000406000D59";
+
+    private byte[] feigResponse;
+
+    @Setup
+    public void setup()
+    {
+        this.feigResponse = IOSocket.hexStringToByteArray(LoopbackGate.FEIG_RESPONSE);
+    }
+
+    @Benchmark
+    public byte[] encodeFeigQuery()
+    {
+        return IOSocket.hexStringToByteArray(FEIG_QUERY);
+    }
+
+    @Benchmark
+    public byte[] encodeThreeMQuery()
+    {
+        return IOSocket.hexStringToByteArray(THREE_M_QUERY);
+    }
+
+    @Benchmark
+    public byte[] decodeFeigResponseHex()
+    {
+        return IOSocket.hexStringToByteArray(LoopbackGate.FEIG_RESPONSE);
+    }
+
+    @Benchmark
+    public String formatFeigResponseHex()
+    {
+        return IOSocket.toHexString(this.feigResponse, this.feigResponse.length);
+    }
+}
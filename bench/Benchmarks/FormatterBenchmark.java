@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Benchmarks;
+
+import Network.IOSocket;
+import RFIDEquipment.CustomerCountFormatter;
+import RFIDEquipment.GateReading;
+import RFIDEquipment.ResultsFormatter;
+import RFIDEquipment.SupportedGateType;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing gate responses with each of the {@link CustomerCountFormatter}s,
+ * through the original hex string path, the {@link ByteBuffer} decode path,
+ * and the {@link GateReading} path the pollers use.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatterBenchmark
+{
+    /** Gate type, as named by the '-t' switch. */
+    @Param({"3M", "FEIG", "FEIGx2", "OFFLINE"})
+    public String gate;
+
+    private ResultsFormatter formatter;
+    private String message;
+    private ByteBuffer frame;
+    private long[] counters;
+
+    @Setup
+    public void setup()
+    {
+        SupportedGateType type = SupportedGateType.fromName(this.gate);
+        this.formatter = CustomerCountFormatter.getInstance(type, false);
+        this.message   = type == SupportedGateType._3M_9100_ 
+                ? LoopbackGate.THREE_M_RESPONSE : LoopbackGate.FEIG_RESPONSE;
+        this.frame     = ByteBuffer.wrap(IOSocket.hexStringToByteArray(this.message));
+        this.counters  = new long[ResultsFormatter.MAX_COUNTERS];
+    }
+
+    @Benchmark
+    public String formatHexString()
+    {
+        return this.formatter.format(this.message);
+    }
+
+    @Benchmark
+    public int decodeFrame()
+    {
+        return this.formatter.decode(this.frame, this.counters);
+    }
+
+    @Benchmark
+    public GateReading readFrame()
+    {
+        return this.formatter.read("127.0.0.1", this.frame, this.counters, 0L, 0L);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A fake gate on the loopback interface that answers every request it
+ * receives with the same canned response frame. Each connection is served
+ * by its own thread, and connections are kept open so it works with both
+ * one-shot queries and pooled connections.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class LoopbackGate implements Runnable
+{
+    /** Counter response of a dual aisle FEIG gate, 3347|5296| and 4490|4576|. */
+    public final static String FEIG_RESPONSE =
+            "020020009F0002001801770000000D13000014B00000118A000011E0EAEB81A3";
+    /** Counter response of a 3M 9100 gate, 3|500|. */
+    public final static String THREE_M_RESPONSE = "64000A0600000001F400000003";
+
+    private final ServerSocket server;
+    private final byte[] response;
+    private final Thread acceptor;
+    private final Set<Socket> clients;
+    private volatile boolean running;
+    private volatile long requested;
+
+    /**
+     * Starts a fake gate.
+     * @param port port to listen on, or 0 for any free port.
+     * @param response frame sent in reply to each request.
+     * @throws IOException if the port can't be bound.
+     */
+    public LoopbackGate(int port, byte[] response) throws IOException
+    {
+        this.server   = new ServerSocket();
+        this.server.setReuseAddress(true);
+        this.server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 128);
+        this.response = response;
+        this.running  = true;
+        this.clients  = Collections.synchronizedSet(new HashSet<Socket>());
+        this.acceptor = new Thread(this, "loopback-gate-" + this.getPort());
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    /**
+     * @return port the fake gate is listening on.
+     */
+    public int getPort()
+    {
+        return this.server.getLocalPort();
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the latest request arrived, or
+     * 0 if none has.
+     */
+    public long getRequested()
+    {
+        return this.requested;
+    }
+
+    @Override
+    public void run()
+    {
+        while (this.running)
+        {
+            try
+            {
+                final Socket client = this.server.accept();
+                client.setTcpNoDelay(true);
+                this.clients.add(client);
+                Thread worker = new Thread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        serve(client);
+                    }
+                }, "loopback-gate-client");
+                worker.setDaemon(true);
+                worker.start();
+            }
+            catch (SocketException ex)
+            {
+                // Closed by stop().
+            }
+            catch (IOException ex)
+            {
+                System.err.println("**warn: loopback gate accept failed, " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Answers requests on one connection until the client hangs up.
+     * @param client connected client.
+     */
+    private void serve(Socket client)
+    {
+        byte[] request = new byte[512];
+        try
+        {
+            InputStream in   = client.getInputStream();
+            OutputStream out = client.getOutputStream();
+            while (in.read(request) > 0)
+            {
+                this.requested = System.nanoTime();
+                out.write(this.response);
+                out.flush();
+            }
+        }
+        catch (IOException ex)
+        {
+            // Client went away, nothing to do.
+        }
+        finally
+        {
+            this.clients.remove(client);
+            try
+            {
+                client.close();
+            }
+            catch (IOException ex)
+            {
+                // Already closed.
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections and hangs up on connected clients.
+     */
+    public void stop()
+    {
+        this.running = false;
+        try
+        {
+            this.server.close();
+            synchronized (this.clients)
+            {
+                for (Socket client : this.clients)
+                {
+                    client.close();
+                }
+            }
+            this.acceptor.join();
+        }
+        catch (IOException ex)
+        {
+            // Already closed.
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Benchmarks;
+
+import Network.ConnectionPool;
+import Network.IOSocket;
+import RFIDEquipment.CustomerGate;
+import RFIDEquipment.GateReading;
+import RFIDEquipment.SupportedGateType;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end gate queries, from building the request to the formatted
+ * counts, against a fake gate on the loopback interface. Gates connect to
+ * their make's fixed port (10001 for FEIG, 2101 for 3M), so those ports 
+ * must be free on the machine running the benchmark.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryGateBenchmark
+{
+    /** Gate type, as named by the '-t' switch. */
+    @Param({"3M", "FEIG", "FEIGx2"})
+    public String gate;
+
+    /** True to keep connections open between queries. */
+    @Param({"false", "true"})
+    public boolean pooled;
+
+    private LoopbackGate fake;
+    private CustomerGate customerGate;
+    private ConnectionPool pool;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        SupportedGateType type = SupportedGateType.fromName(this.gate);
+        if (type == SupportedGateType._3M_9100_)
+        {
+            this.fake = new LoopbackGate(2101, 
+                    IOSocket.hexStringToByteArray(LoopbackGate.THREE_M_RESPONSE));
+        }
+        else
+        {
+            this.fake = new LoopbackGate(10001, 
+                    IOSocket.hexStringToByteArray(LoopbackGate.FEIG_RESPONSE));
+        }
+        this.customerGate = CustomerGate.getInstance(type, "127.0.0.1", false);
+        if (this.pooled)
+        {
+            this.pool = new ConnectionPool();
+            this.customerGate.setConnectionPool(this.pool);
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        if (this.pool != null)
+        {
+            this.pool.close();
+        }
+        this.fake.stop();
+    }
+
+    @Benchmark
+    public String queryGate()
+    {
+        return this.customerGate.queryGate();
+    }
+
+    @Benchmark
+    public GateReading readGate()
+    {
+        return this.customerGate.readGate();
+    }
+}
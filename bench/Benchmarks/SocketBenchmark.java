@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Benchmarks;
+
+import Network.FrameDecoder;
+import Network.IOSocket;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading a response off the socket with {@link IOSocket#readBytes()}, 
+ * which costs a connection per read since it closes the stream, compared
+ * with {@link IOSocket#readFrame(java.nio.ByteBuffer, Network.FrameDecoder, int)}
+ * on a fresh and on a kept open connection. The fake gate listens on a 
+ * free loopback port.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SocketBenchmark
+{
+    /** Longest the benchmarks wait for a response, in milliseconds. */
+    private final static int TIMEOUT = 1000;
+    /** FEIG advanced protocol frame, STX then a 2 byte length. */
+    private final static FrameDecoder FRAME = new FrameDecoder()
+    {
+        @Override
+        public int frameLength(byte[] buffer, int count)
+        {
+            if (count < 3)
+            {
+                return -1;
+            }
+            return ((buffer[1] & 0xff) << 8) | (buffer[2] & 0xff);
+        }
+    };
+
+    private LoopbackGate gate;
+    private byte[] query;
+    private ByteBuffer response;
+    private IOSocket connection;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        this.gate       = new LoopbackGate(0, 
+                IOSocket.hexStringToByteArray(LoopbackGate.FEIG_RESPONSE));
+        this.query      = IOSocket.hexStringToByteArray("020012ff9f000d02020008017700ee024431");
+        this.response   = ByteBuffer.allocate(500);
+        this.connection = this.connect();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        this.connection.stopConnection();
+        this.gate.stop();
+    }
+
+    private IOSocket connect()
+    {
+        IOSocket socket = new IOSocket();
+        if (! socket.startConnection("127.0.0.1", this.gate.getPort(), TIMEOUT))
+        {
+            throw new IllegalStateException("can't connect to loopback gate");
+        }
+        return socket;
+    }
+
+    @Benchmark
+    public String readBytesNewConnection()
+    {
+        IOSocket socket = this.connect();
+        socket.sendMessage(this.query);
+        String result = socket.readBytes();
+        socket.stopConnection();
+        return result;
+    }
+
+    @Benchmark
+    public int readFrameNewConnection()
+    {
+        IOSocket socket = this.connect();
+        socket.sendMessage(this.query);
+        int count = socket.readFrame(this.response, FRAME, TIMEOUT);
+        socket.stopConnection();
+        return count;
+    }
+
+    @Benchmark
+    public int readFrameKeptConnection()
+    {
+        this.connection.sendMessage(this.query);
+        return this.connection.readFrame(this.response, FRAME, TIMEOUT);
+    }
+}
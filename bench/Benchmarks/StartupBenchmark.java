@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Benchmarks;
+
+import Network.IOSocket;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times how long a patroncount process takes from being started to its 
+ * query reaching the gate, which is what a cron job pays for each poll, 
+ * and to exiting. JMH measures code in a warmed up JVM so can't time this.
+ * 
+ * The command is run the given number of times against a fake 3M gate on
+ * 127.0.0.1:2101, so that port must be free, and nothing else may query the
+ * fake gate while it runs. For example, without and with the class data 
+ * sharing archive built by bin/build-cds.sh:
+ * <pre>
+ * java -cp build/bench:dist/patroncount.jar Benchmarks.StartupBenchmark 20 \
+ *     java -jar dist/patroncount.jar -i 127.0.0.1
+ * java -cp build/bench:dist/patroncount.jar Benchmarks.StartupBenchmark 20 \
+ *     java -XX:SharedArchiveFile=dist/patroncount.jsa -jar dist/patroncount.jar -i 127.0.0.1
+ * </pre>
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class StartupBenchmark
+{
+    /** Port of 3M gates. */
+    public final static int PORT = 2101;
+
+    /**
+     * @param args number of runs, then the command to run.
+     * @throws Exception if the fake gate can't be started.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Usage: StartupBenchmark {runs} {command...}");
+            System.exit(1);
+        }
+        int runs = Integer.parseInt(args[0]);
+        List<String> command = Arrays.asList(args).subList(1, args.length);
+        LoopbackGate gate = new LoopbackGate(PORT, 
+                IOSocket.hexStringToByteArray(LoopbackGate.THREE_M_RESPONSE));
+        long[] firstByte = new long[runs];
+        long[] exited = new long[runs];
+        int failed = 0;
+        try
+        {
+            // One run first, so the files are in the page cache.
+            StartupBenchmark.run(command, gate, new long[2]);
+            for (int i = 0; i < runs; i++)
+            {
+                long[] times = new long[2];
+                if (! StartupBenchmark.run(command, gate, times))
+                {
+                    failed++;
+                }
+                firstByte[i] = times[0];
+                exited[i]    = times[1];
+            }
+        }
+        finally
+        {
+            gate.stop();
+        }
+        System.out.println(String.join(" ", command));
+        StartupBenchmark.report("first byte", firstByte);
+        StartupBenchmark.report("exit", exited);
+        if (failed > 0)
+        {
+            System.out.println("**warn: " + failed + " of " + runs 
+                    + " runs didn't print the gate's counts.");
+        }
+    }
+
+    /**
+     * Runs the command once.
+     * @param command the command.
+     * @param gate the fake gate the command queries.
+     * @param times set to the nanoseconds until the query reached the gate,
+     * or -1 if it never did, and until the process exited.
+     * @return true if the process printed counts.
+     * @throws IOException if the command can't be started.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private static boolean run(List<String> command, LoopbackGate gate, long[] times)
+            throws IOException, InterruptedException
+    {
+        long before = gate.getRequested();
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        try (InputStream in = process.getInputStream())
+        {
+            int count;
+            while ((count = in.read(buffer)) > 0)
+            {
+                output.write(buffer, 0, count);
+            }
+        }
+        process.waitFor();
+        times[1] = System.nanoTime() - started;
+        long requested = gate.getRequested();
+        times[0] = requested == before ? -1 : requested - started;
+        String counts = output.toString("US-ASCII").trim();
+        return process.exitValue() == 0 && ! counts.isEmpty() 
+                && ! counts.startsWith("-1");
+    }
+
+    private static void report(String name, long[] nanos)
+    {
+        List<Long> sorted = new ArrayList<>(nanos.length);
+        for (long time : nanos)
+        {
+            if (time >= 0)
+            {
+                sorted.add(time);
+            }
+        }
+        if (sorted.isEmpty())
+        {
+            System.out.printf("%-11s no samples%n", name);
+            return;
+        }
+        Collections.sort(sorted);
+        System.out.printf("%-11s min %7.1f ms  p50 %7.1f ms  p90 %7.1f ms  max %7.1f ms  (%d runs)%n",
+                name, StartupBenchmark.millis(sorted.get(0)),
+                StartupBenchmark.millis(sorted.get(sorted.size() / 2)),
+                StartupBenchmark.millis(sorted.get((int) Math.ceil(sorted.size() * 0.9) - 1)),
+                StartupBenchmark.millis(sorted.get(sorted.size() - 1)), sorted.size());
+    }
+
+    private static double millis(long nanos)
+    {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,45 @@
+#!/bin/sh
+#
+# Builds dist/patroncount.jsa, a class data sharing archive of the classes
+# a single gate query loads, so each cron run of patroncount maps them 
+# already parsed and verified instead of loading them from the jar. 
+#
+# The classes are found with training queries of a 3M, a FEIG and a dual
+# aisle FEIG gate run by the gate simulator. The archive only works with
+# the JVM that built it and the same jar, so rebuild it after upgrading 
+# either. Needs Java 11 or later.
+#
+# Usage: bin/build-cds.sh [simulator_address]
+#   simulator_address is the first of 3 loopback addresses the simulated
+#   gates use, 127.0.0.2 unless given. Their gate ports must be free.
+#
+# Then run patroncount with:
+#   java -XX:SharedArchiveFile=dist/patroncount.jsa -Xshare:auto \
+#       -XX:TieredStopAtLevel=1 -jar dist/patroncount.jar -i 10.0.0.127
+# 
+set -e
+cd "$(dirname "$0")/.."
+JAR=dist/patroncount.jar
+ARCHIVE=dist/patroncount.jsa
+ADDRESS=${1:-127.0.0.2}
+PREFIX=${ADDRESS%.*}
+LAST=${ADDRESS##*.}
+if [ ! -f "$JAR" ]; then
+    echo "***error: build $JAR first." >&2
+    exit 1
+fi
+WORK=$(mktemp -d)
+java -cp "$JAR" Simulator.GateSimulator -a "$ADDRESS" -n 3 -t 3M,FEIG,FEIGx2 2> "$WORK/simulator.log" &
+SIMULATOR=$!
+trap 'kill $SIMULATOR 2> /dev/null; rm -rf "$WORK"' EXIT
+sleep 2
+N=0
+for TYPE in 3M FEIG FEIGx2; do
+    GATE=$PREFIX.$((LAST + N))
+    java -XX:DumpLoadedClassList="$WORK/$TYPE.classlist" -jar "$JAR" -i "$GATE" -t "$TYPE"
+    N=$((N + 1))
+done
+cat "$WORK"/*.classlist | sort -u > "$WORK/patroncount.classlist"
+java -Xshare:dump -XX:SharedClassListFile="$WORK/patroncount.classlist" \
+    -XX:SharedArchiveFile="$ARCHIVE" -cp "$JAR"
+echo "built $ARCHIVE from $(wc -l < "$WORK/patroncount.classlist") classes."
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Analysis;
+
+import RFIDEquipment.SupportedGateType;
+
+/**
+ * Traffic through a gate between two of its readings, worked out from the
+ * gate's cumulative counters by a {@link DeltaStage}. Like 
+ * {@link RFIDEquipment.GateReading} the per-detector deltas are kept as
+ * in, out pairs, and deltas without traffic report -1 for both totals.
+ *
+ * Deltas are immutable and safe to share between threads.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public final class CountDelta
+{
+    private final String gate;
+    private final SupportedGateType type;
+    private final long start;
+    private final long end;
+    private final long in;
+    private final long out;
+    private final long[] detectors;
+    private final int missedPolls;
+    private final DeltaStatus status;
+
+    /**
+     * @param gate id of the gate, usually its IP.
+     * @param type make and model of the gate.
+     * @param start time of the previous reading, in milliseconds since the
+     * epoch, or 0 if there isn't one.
+     * @param end time of this reading, in milliseconds since the epoch.
+     * @param detectors in, out delta pairs for each detector, or an empty
+     * array if there's no traffic to report.
+     * @param missedPolls polls expected between the two readings that 
+     * didn't produce counts.
+     * @param status how the delta was worked out.
+     */
+    CountDelta(String gate, SupportedGateType type, long start, long end,
+            long[] detectors, int missedPolls, DeltaStatus status)
+    {
+        this.gate        = gate;
+        this.type        = type;
+        this.start       = start;
+        this.end         = end;
+        this.detectors   = detectors;
+        this.missedPolls = missedPolls;
+        this.status      = status;
+        if (detectors.length == 0)
+        {
+            this.in  = -1;
+            this.out = -1;
+            return;
+        }
+        long inCount = 0;
+        long outCount = 0;
+        for (int i = 0; i + 1 < detectors.length; i += 2)
+        {
+            inCount += detectors[i];
+            outCount += detectors[i + 1];
+        }
+        this.in  = inCount;
+        this.out = outCount;
+    }
+
+    /**
+     * @return id of the gate, usually its IP.
+     */
+    public String getGate()
+    {
+        return gate;
+    }
+
+    /**
+     * @return make and model of the gate.
+     */
+    public SupportedGateType getType()
+    {
+        return type;
+    }
+
+    /**
+     * @return time of the previous reading in milliseconds since the epoch,
+     * or 0 if there isn't one.
+     */
+    public long getStart()
+    {
+        return start;
+    }
+
+    /**
+     * @return time of this reading in milliseconds since the epoch.
+     */
+    public long getEnd()
+    {
+        return end;
+    }
+
+    /**
+     * @return patrons in during the interval, or -1 if there's no traffic
+     * to report.
+     */
+    public long getIn()
+    {
+        return in;
+    }
+
+    /**
+     * @return patrons out during the interval, or -1 if there's no traffic
+     * to report.
+     */
+    public long getOut()
+    {
+        return out;
+    }
+
+    /**
+     * @return number of detector deltas, twice the number of detectors.
+     */
+    public int getCounterCount()
+    {
+        return detectors.length;
+    }
+
+    /**
+     * @param index counter number, even numbers are in-counts and odd
+     * numbers are out-counts.
+     * @return traffic counted by the counter during the interval.
+     */
+    public long getCounter(int index)
+    {
+        return detectors[index];
+    }
+
+    /**
+     * @return polls expected during the interval that didn't produce 
+     * counts, the traffic of those polls is included in this delta.
+     */
+    public int getMissedPolls()
+    {
+        return missedPolls;
+    }
+
+    /**
+     * @return how the delta was worked out.
+     */
+    public DeltaStatus getStatus()
+    {
+        return status;
+    }
+
+    /**
+     * @return true if the delta holds traffic counts.
+     */
+    public boolean hasTraffic()
+    {
+        return detectors.length > 0;
+    }
+
+    /**
+     * @return the delta in the application's 'in|out|' form, which is
+     * '-1|-1|' if there's no traffic to report.
+     */
+    @Override
+    public String toString()
+    {
+        return String.valueOf(in) + "|" + String.valueOf(out) + "|";
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Analysis;
+
+import RFIDEquipment.GateCodec;
+import RFIDEquipment.GateCodecs;
+import RFIDEquipment.GateReading;
+import RFIDEquipment.ResultsFormatter;
+import RFIDEquipment.SupportedGateType;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Turns the cumulative counters gates report into the traffic between 
+ * consecutive readings, as the readings arrive. Only the last valid reading
+ * of each gate is kept, so each reading takes constant time and memory.
+ *
+ * Counters that go down are either wrapping or have been reset. A counter
+ * is taken to have wrapped if the traffic that implies is no more than the
+ * maximum rate a detector can count over the time between readings,
+ * otherwise the gate was reset, and all of its counters are taken as the 
+ * traffic since the reset. A planned reset can be flagged with 
+ * {@link #markReset(java.lang.String)} so the next reading isn't mistaken
+ * for a wrap.
+ *
+ * Readings of different gates may be passed in from different threads.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class DeltaStage
+{
+    /**
+     * Default fastest a single counter can count, in patrons per second.
+     * Real detectors count one patron at a time, so this is generous.
+     */
+    public final static double DEFAULT_MAX_RATE = 20.0;
+    private final static long[] NO_TRAFFIC = new long[0];
+    private final ConcurrentMap<String, GateState> gates;
+    private final long interval;
+    private final double maxRate;
+
+    /**
+     * @param interval expected time between readings of the same gate, in
+     * milliseconds, or 0 if readings aren't regular.
+     */
+    public DeltaStage(long interval)
+    {
+        this(interval, DEFAULT_MAX_RATE);
+    }
+
+    /**
+     * @param interval expected time between readings of the same gate, in
+     * milliseconds, or 0 if readings aren't regular.
+     * @param maxRate fastest a single counter can count, in patrons per
+     * second, used to tell wraps from resets.
+     */
+    public DeltaStage(long interval, double maxRate)
+    {
+        this.gates    = new ConcurrentHashMap<>();
+        this.interval = interval;
+        this.maxRate  = maxRate;
+    }
+
+    /**
+     * Works out the traffic since the gate's previous valid reading.
+     * @param reading the gate's latest reading. Readings of a gate must be
+     * passed in the order they were taken, readings older than the last
+     * valid one are treated as {@link DeltaStatus#NO_DATA}.
+     * @return the traffic.
+     */
+    public CountDelta accept(GateReading reading)
+    {
+        GateState state = this.getState(reading.getGate());
+        synchronized (state)
+        {
+            return state.accept(reading);
+        }
+    }
+
+    /**
+     * Flags that a gate's counters have just been reset on purpose, so the
+     * gate's next reading is taken as the traffic since the reset.
+     * @param gate id of the gate, usually its IP.
+     */
+    public void markReset(String gate)
+    {
+        GateState state = this.getState(gate);
+        synchronized (state)
+        {
+            state.resetPending = true;
+        }
+    }
+
+    /**
+     * Drops everything known about a gate, its next reading becomes a new
+     * {@link DeltaStatus#BASELINE}.
+     * @param gate id of the gate, usually its IP.
+     */
+    public void forget(String gate)
+    {
+        this.gates.remove(gate);
+    }
+
+    /**
+     * @param type make and model of a gate.
+     * @return number of values the gate's counters can hold before they 
+     * wrap back to 0.
+     */
+    public static long counterRange(SupportedGateType type)
+    {
+        GateCodec codec = GateCodecs.forType(type);
+        return codec == null ? 1L << 32 : codec.getCounterRange();
+    }
+
+    private GateState getState(String gate)
+    {
+        GateState state = this.gates.get(gate);
+        if (state == null)
+        {
+            GateState created = new GateState();
+            state = this.gates.putIfAbsent(gate, created);
+            if (state == null)
+            {
+                state = created;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * The last valid reading of a gate. Guarded by its own lock.
+     */
+    private class GateState
+    {
+        private final long[] counters = new long[ResultsFormatter.MAX_COUNTERS];
+        // 0 until there's a baseline reading.
+        private int count;
+        private long timestamp;
+        private int failed;
+        private boolean resetPending;
+
+        CountDelta accept(GateReading reading)
+        {
+            long now = reading.getTimestamp();
+            if (! reading.isValid() || (this.count > 0 && now <= this.timestamp))
+            {
+                if (this.count > 0)
+                {
+                    this.failed++;
+                }
+                return new CountDelta(reading.getGate(), reading.getType(),
+                        this.timestamp, now, NO_TRAFFIC, 0, DeltaStatus.NO_DATA);
+            }
+            int n = reading.getCounterCount();
+            if (this.count == 0 || n != this.count)
+            {
+                this.remember(reading);
+                return new CountDelta(reading.getGate(), reading.getType(), 
+                        0L, now, NO_TRAFFIC, 0, DeltaStatus.BASELINE);
+            }
+            long elapsed = now - this.timestamp;
+            long range = DeltaStage.counterRange(reading.getType());
+            long limit = (long) Math.ceil(maxRate * Math.max(elapsed, 1000L) / 1000.0);
+            DeltaStatus status = this.resetPending ? DeltaStatus.RESET : DeltaStatus.OK;
+            long[] deltas = new long[n];
+            for (int i = 0; i < n && status != DeltaStatus.RESET; i++)
+            {
+                long delta = reading.getCounter(i) - this.counters[i];
+                if (delta < 0)
+                {
+                    if (delta + range <= limit)
+                    {
+                        delta += range;
+                        status = DeltaStatus.WRAPPED;
+                    }
+                    else
+                    {
+                        status = DeltaStatus.RESET;
+                    }
+                }
+                deltas[i] = delta;
+            }
+            if (status == DeltaStatus.RESET)
+            {
+                for (int i = 0; i < n; i++)
+                {
+                    deltas[i] = reading.getCounter(i);
+                }
+            }
+            int missed = this.failed;
+            if (interval > 0)
+            {
+                missed = Math.max(0, (int) Math.round((double) elapsed / interval) - 1);
+            }
+            long start = this.timestamp;
+            this.remember(reading);
+            return new CountDelta(reading.getGate(), reading.getType(), 
+                    start, now, deltas, missed, status);
+        }
+
+        private void remember(GateReading reading)
+        {
+            this.count = reading.getCounterCount();
+            for (int i = 0; i < this.count; i++)
+            {
+                this.counters[i] = reading.getCounter(i);
+            }
+            this.timestamp    = reading.getTimestamp();
+            this.failed       = 0;
+            this.resetPending = false;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Analysis;
+
+/**
+ * How the traffic in a {@link CountDelta} was worked out.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public enum DeltaStatus
+{
+    /** The counters went up, the delta is the difference. */
+    OK,
+    /** At least one counter passed its maximum and started again from 0. */
+    WRAPPED,
+    /** 
+     * The gate's counters were reset, by a reset query or a power cycle, so
+     * the delta is the count since the reset. Traffic between the previous
+     * reading and the reset is lost.
+     */
+    RESET,
+    /** First valid reading of the gate, there's nothing to compare it to. */
+    BASELINE,
+    /** The gate didn't answer, so there are no counts for this poll. */
+    NO_DATA;
+}
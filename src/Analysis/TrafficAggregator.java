@@ -0,0 +1,383 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Analysis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of the patrons in and out of every aisle, entrance, branch 
+ * and region of the system, kept up to date as {@link CountDelta}s arrive.
+ * Each delta is added to its gate's aisles and to every level above them, so
+ * the totals and occupancy of any level can be read at any time without 
+ * going back over the gates.
+ *
+ * Where each gate is comes from a site file of lines in the form
+ * 'ip region branch entrance [aisle ...]', for example
+ * '10.2.30.38 south LON main left right'. Each of the gate's in, out 
+ * detector pairs counts toward the aisle in the same position, and pairs
+ * past the last aisle named count toward the last one. A gate without 
+ * aisles is a single aisle named after its IP. Entrances are named within 
+ * their branch and aisles within their entrance, so 'LON/main/left' is a 
+ * different aisle to 'IDY/main/left'. Gates missing from the file are 
+ * only counted in the system totals.
+ *
+ * The site map is fixed once loaded, and totals are {@link LongAdder}s, so
+ * deltas of different gates can be added from different threads without
+ * contending on a lock.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class TrafficAggregator
+{
+    /**
+     * Levels of the site map, from a single aisle up to the whole system.
+     */
+    public enum Level
+    {
+        AISLE,
+        ENTRANCE,
+        BRANCH,
+        REGION,
+        SYSTEM;
+    }
+    
+    /**
+     * Patrons in and out of one place since the aggregator was created or 
+     * last reset. Safe to read from any thread.
+     */
+    public final static class Totals
+    {
+        private final Level level;
+        private final String name;
+        private final LongAdder in;
+        private final LongAdder out;
+
+        Totals(Level level, String name)
+        {
+            this.level = level;
+            this.name  = name;
+            this.in    = new LongAdder();
+            this.out   = new LongAdder();
+        }
+
+        void add(long inCount, long outCount)
+        {
+            if (inCount != 0)
+            {
+                this.in.add(inCount);
+            }
+            if (outCount != 0)
+            {
+                this.out.add(outCount);
+            }
+        }
+
+        void reset()
+        {
+            this.in.reset();
+            this.out.reset();
+        }
+
+        /**
+         * @return the level of the site map this place is at.
+         */
+        public Level getLevel()
+        {
+            return level;
+        }
+
+        /**
+         * @return the name of the place, with the names of its branch and
+         * entrance for entrances and aisles, like 'LON/main/left'.
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return patrons in.
+         */
+        public long getIn()
+        {
+            return in.sum();
+        }
+
+        /**
+         * @return patrons out.
+         */
+        public long getOut()
+        {
+            return out.sum();
+        }
+
+        /**
+         * Only meaningful from a time the place was empty, like when the
+         * branch opens, and drifts by any patron the detectors miss.
+         * @return patrons in less patrons out.
+         */
+        public long getOccupancy()
+        {
+            // Read out first so a patron counted in between reads can't
+            // make the occupancy dip below what it really is.
+            long outCount = out.sum();
+            return in.sum() - outCount;
+        }
+        
+        @Override
+        public String toString()
+        {
+            return String.valueOf(this.getIn()) + "|" + String.valueOf(this.getOut()) + "|";
+        }
+    }
+    
+    /**
+     * Where a gate's counts go: one totals per aisle, and the totals of the
+     * aisles' entrance and everything above it.
+     */
+    private static class Route
+    {
+        private final Totals[] aisles;
+        private final Totals[] above;
+
+        Route(Totals[] aisles, Totals[] above)
+        {
+            this.aisles = aisles;
+            this.above  = above;
+        }
+    }
+    
+    private final Totals system;
+    private final Map<Level, Map<String, Totals>> levels;
+    private final Map<String, Route> routes;
+    private final Route unmapped;
+
+    /**
+     * Creates an aggregator with no sites, that only keeps system totals.
+     */
+    public TrafficAggregator()
+    {
+        this.system = new Totals(Level.SYSTEM, "system");
+        this.levels = new EnumMap<>(Level.class);
+        for (Level level : Level.values())
+        {
+            this.levels.put(level, new LinkedHashMap<String, Totals>());
+        }
+        this.levels.get(Level.SYSTEM).put(this.system.getName(), this.system);
+        this.routes   = new HashMap<>();
+        this.unmapped = new Route(new Totals[0], new Totals[] {this.system});
+    }
+
+    /**
+     * Reads a site file.
+     * @param path path of the site file.
+     * @return aggregator of the sites in the file.
+     * @throws IOException if the file can't be read.
+     */
+    public static TrafficAggregator load(String path) throws IOException
+    {
+        try (BufferedReader reader = Files.newBufferedReader(
+                Paths.get(path), StandardCharsets.UTF_8))
+        {
+            return TrafficAggregator.read(reader);
+        }
+    }
+
+    /**
+     * Reads site lines until the end of the reader. Lines that can't be
+     * used are reported and skipped, as in a fleet file.
+     * @param reader source of 'ip region branch entrance [aisle ...]' lines.
+     * @return aggregator of the sites read.
+     * @throws IOException if the reader fails.
+     */
+    public static TrafficAggregator read(BufferedReader reader) throws IOException
+    {
+        TrafficAggregator aggregator = new TrafficAggregator();
+        Map<String, String> regionOf = new HashMap<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null)
+        {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#"))
+            {
+                continue;
+            }
+            String[] fields = trimmed.split("\\s+");
+            String problem = null;
+            if (fields.length < 4)
+            {
+                problem = "expected 'ip region branch entrance [aisle ...]' but got '"
+                        + trimmed + "'";
+            }
+            else if (aggregator.routes.containsKey(fields[0]))
+            {
+                problem = "gate '" + fields[0] + "' is already mapped";
+            }
+            else if (regionOf.containsKey(fields[2]) 
+                    && ! regionOf.get(fields[2]).equals(fields[1]))
+            {
+                problem = "branch '" + fields[2] + "' is already in region '"
+                        + regionOf.get(fields[2]) + "'";
+            }
+            if (problem != null)
+            {
+                System.err.println("**warn: skipping site line " + lineNumber
+                        + ", " + problem + ".");
+                continue;
+            }
+            regionOf.put(fields[2], fields[1]);
+            String[] aisles = new String[Math.max(1, fields.length - 4)];
+            for (int i = 0; i < aisles.length; i++)
+            {
+                aisles[i] = fields.length > 4 ? fields[4 + i] : fields[0];
+            }
+            aggregator.map(fields[0], fields[1], fields[2], fields[3], aisles);
+        }
+        return aggregator;
+    }
+
+    /**
+     * Places a gate in the site map.
+     */
+    private void map(String gate, String region, String branch, 
+            String entrance, String[] aisleNames)
+    {
+        String entranceName = branch + "/" + entrance;
+        Totals[] above = new Totals[] {
+            this.getOrCreate(Level.ENTRANCE, entranceName),
+            this.getOrCreate(Level.BRANCH, branch),
+            this.getOrCreate(Level.REGION, region),
+            this.system
+        };
+        Totals[] aisles = new Totals[aisleNames.length];
+        for (int i = 0; i < aisles.length; i++)
+        {
+            aisles[i] = this.getOrCreate(Level.AISLE, entranceName + "/" + aisleNames[i]);
+        }
+        this.routes.put(gate, new Route(aisles, above));
+    }
+
+    private Totals getOrCreate(Level level, String name)
+    {
+        Map<String, Totals> named = this.levels.get(level);
+        Totals totals = named.get(name);
+        if (totals == null)
+        {
+            totals = new Totals(level, name);
+            named.put(name, totals);
+        }
+        return totals;
+    }
+
+    /**
+     * Adds the traffic of a delta to the totals of its gate's aisles and 
+     * everything above them. Deltas without traffic are ignored, as are 
+     * baselines, so counts since before the aggregator started aren't 
+     * added.
+     * @param delta traffic through a gate.
+     */
+    public void accept(CountDelta delta)
+    {
+        if (! delta.hasTraffic())
+        {
+            return;
+        }
+        Route route = this.routes.get(delta.getGate());
+        if (route == null)
+        {
+            route = this.unmapped;
+        }
+        long inCount = 0;
+        long outCount = 0;
+        for (int i = 0; i + 1 < delta.getCounterCount(); i += 2)
+        {
+            long pairIn  = delta.getCounter(i);
+            long pairOut = delta.getCounter(i + 1);
+            if (route.aisles.length > 0)
+            {
+                route.aisles[Math.min(i / 2, route.aisles.length - 1)].add(pairIn, pairOut);
+            }
+            inCount += pairIn;
+            outCount += pairOut;
+        }
+        for (Totals totals : route.above)
+        {
+            totals.add(inCount, outCount);
+        }
+    }
+
+    /**
+     * @return totals of the whole system.
+     */
+    public Totals getSystem()
+    {
+        return this.system;
+    }
+
+    /**
+     * @param level level of the site map.
+     * @param name name of the place, see {@link Totals#getName()}.
+     * @return the place's totals, or null if there's no such place.
+     */
+    public Totals get(Level level, String name)
+    {
+        return this.levels.get(level).get(name);
+    }
+
+    /**
+     * @param level level of the site map.
+     * @return totals of every place at that level, in the order they first
+     * appear in the site file.
+     */
+    public List<Totals> getAll(Level level)
+    {
+        return Collections.unmodifiableList(
+                new ArrayList<>(this.levels.get(level).values()));
+    }
+
+    /**
+     * Starts every total again from 0, for example when the branches 
+     * open for the day. Traffic added while the reset is under way may be
+     * counted at some levels and not others.
+     */
+    public void reset()
+    {
+        for (Map<String, Totals> named : this.levels.values())
+        {
+            for (Totals totals : named.values())
+            {
+                totals.reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Metrics;
+
+import Network.CircuitBreaker;
+import Network.ConnectionObserver;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the queries of one gate, kept up to date by observing the 
+ * gate's connections. Everything is recorded without locks.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class GateMetrics implements ConnectionObserver
+{
+    private final String gate;
+    private final String type;
+    final LatencyHistogram connect;
+    final LatencyHistogram firstByte;
+    final LatencyHistogram query;
+    final LongAdder queries;
+    final LongAdder bytes;
+    final LongAdder timeouts;
+    final LongAdder refusals;
+    final LongAdder empty;
+    final LongAdder unreachable;
+    volatile CircuitBreaker breaker;
+
+    /**
+     * @param gate id of the gate, usually its IP.
+     * @param type make and model of the gate.
+     */
+    GateMetrics(String gate, String type)
+    {
+        this.gate        = gate;
+        this.type        = type;
+        this.connect     = new LatencyHistogram();
+        this.firstByte   = new LatencyHistogram();
+        this.query       = new LatencyHistogram();
+        this.queries     = new LongAdder();
+        this.bytes       = new LongAdder();
+        this.timeouts    = new LongAdder();
+        this.refusals    = new LongAdder();
+        this.empty       = new LongAdder();
+        this.unreachable = new LongAdder();
+    }
+
+    /**
+     * @return id of the gate, usually its IP.
+     */
+    public String getGate()
+    {
+        return this.gate;
+    }
+
+    /**
+     * @return make and model of the gate.
+     */
+    public String getType()
+    {
+        return this.type;
+    }
+
+    /**
+     * Reports the state of the gate's circuit breaker along with the other
+     * metrics.
+     * @param breaker the gate's breaker, or null if it hasn't one.
+     */
+    public void setCircuitBreaker(CircuitBreaker breaker)
+    {
+        this.breaker = breaker;
+    }
+
+    /**
+     * @return histogram of whole query times.
+     */
+    public LatencyHistogram getQueryTimes()
+    {
+        return this.query;
+    }
+
+    @Override
+    public void connected(long nanos)
+    {
+        this.connect.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    @Override
+    public void refused()
+    {
+        this.refusals.increment();
+    }
+
+    @Override
+    public void timedOut()
+    {
+        this.timeouts.increment();
+    }
+
+    @Override
+    public void firstByte(long nanos)
+    {
+        this.firstByte.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    @Override
+    public void bytesRead(int count)
+    {
+        this.bytes.add(count);
+    }
+
+    @Override
+    public void exchanged(long nanos, int count)
+    {
+        this.queries.increment();
+        this.query.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        if (count == 0)
+        {
+            this.empty.increment();
+        }
+        else if (count < 0)
+        {
+            this.unreachable.increment();
+        }
+    }
+}
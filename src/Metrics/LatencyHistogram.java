@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Metrics;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations, with fixed buckets from 100 
+ * microseconds to 30 seconds in 1, 2.5, 5 steps. Recording is a binary 
+ * search and two atomic increments, so any number of threads can record
+ * at once without blocking each other or a reader.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class LatencyHistogram
+{
+    /** Upper bounds of the buckets in microseconds, the last bucket has no bound. */
+    private final static long[] BOUNDS = {
+        100, 250, 500, 
+        1000, 2500, 5000, 
+        10000, 25000, 50000, 
+        100000, 250000, 500000, 
+        1000000, 2500000, 5000000, 
+        10000000, 30000000
+    };
+    /** Bucket bounds as 'le' label values, in seconds. */
+    private final static String[] LABELS = new String[BOUNDS.length + 1];
+    static
+    {
+        for (int i = 0; i < BOUNDS.length; i++)
+        {
+            LABELS[i] = BigDecimal.valueOf(BOUNDS[i], 6).stripTrailingZeros().toPlainString();
+        }
+        LABELS[BOUNDS.length] = "+Inf";
+    }
+    private final AtomicLongArray counts;
+    private final AtomicLong sum;
+
+    public LatencyHistogram()
+    {
+        this.counts = new AtomicLongArray(BOUNDS.length + 1);
+        this.sum    = new AtomicLong();
+    }
+
+    /**
+     * Records a duration.
+     * @param micros the duration in microseconds.
+     */
+    public void record(long micros)
+    {
+        int low = 0;
+        int high = BOUNDS.length;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (BOUNDS[middle] < micros)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        this.counts.incrementAndGet(low);
+        this.sum.addAndGet(micros);
+    }
+
+    /**
+     * @return number of durations recorded.
+     */
+    public long getCount()
+    {
+        long count = 0;
+        for (int i = 0; i < this.counts.length(); i++)
+        {
+            count += this.counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Estimates a quantile by interpolating within the bucket it falls in.
+     * @param q the quantile, 0.5 for the median.
+     * @return the estimate in microseconds, or 0 if nothing has been 
+     * recorded. Quantiles beyond the last bound report the last bound.
+     */
+    public double quantile(double q)
+    {
+        long[] snapshot = new long[this.counts.length()];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++)
+        {
+            snapshot[i] = this.counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0)
+        {
+            return 0.0;
+        }
+        double rank = q * total;
+        long below = 0;
+        for (int i = 0; i < BOUNDS.length; i++)
+        {
+            if (below + snapshot[i] >= rank && snapshot[i] > 0)
+            {
+                double lower = i == 0 ? 0.0 : BOUNDS[i - 1];
+                return lower + (BOUNDS[i] - lower) * (rank - below) / snapshot[i];
+            }
+            below += snapshot[i];
+        }
+        return BOUNDS[BOUNDS.length - 1];
+    }
+
+    /**
+     * Writes the histogram in the Prometheus text format, in seconds.
+     * @param out where the lines are written.
+     * @param name name of the metric.
+     * @param labels labels of this histogram, like 'gate="10.0.0.1"'.
+     */
+    void write(StringBuilder out, String name, String labels)
+    {
+        long cumulative = 0;
+        for (int i = 0; i < this.counts.length(); i++)
+        {
+            cumulative += this.counts.get(i);
+            out.append(name).append("_bucket{").append(labels).append(",le=\"")
+                    .append(LABELS[i]).append("\"} ").append(cumulative).append('\n');
+        }
+        out.append(name).append("_sum{").append(labels).append("} ")
+                .append(this.sum.get() / 1e6).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ")
+                .append(cumulative).append('\n');
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Metrics;
+
+import Analysis.TrafficAggregator;
+import Network.CircuitBreaker;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds the metrics of every gate, and writes them in the Prometheus text
+ * exposition format. Gates are added on first use and never removed. The
+ * totals of a {@link TrafficAggregator} can be reported as well.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class MetricsRegistry
+{
+    /** Quantiles reported from the query time histograms. */
+    private final static double[] QUANTILES = {0.5, 0.9, 0.99};
+    private final ConcurrentMap<String, GateMetrics> gates;
+    private volatile TrafficAggregator traffic;
+
+    public MetricsRegistry()
+    {
+        this.gates = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the metrics of a gate, creating them if needed.
+     * @param gate id of the gate, usually its IP.
+     * @param type make and model of the gate.
+     * @return the gate's metrics, which can be given to 
+     * {@link RFIDEquipment.CustomerGate#setObserver(Network.ConnectionObserver)}.
+     */
+    public GateMetrics gate(String gate, String type)
+    {
+        GateMetrics metrics = this.gates.get(gate);
+        if (metrics == null)
+        {
+            metrics = new GateMetrics(gate, type);
+            GateMetrics existing = this.gates.putIfAbsent(gate, metrics);
+            if (existing != null)
+            {
+                metrics = existing;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Reports the totals of every place in the aggregator's site map.
+     * @param traffic totals to report, or null for none.
+     */
+    public void setTraffic(TrafficAggregator traffic)
+    {
+        this.traffic = traffic;
+    }
+
+    /**
+     * @return all the metrics in the Prometheus text format.
+     */
+    public String scrape()
+    {
+        List<GateMetrics> all = new ArrayList<>(this.gates.values());
+        Collections.sort(all, new Comparator<GateMetrics>()
+        {
+            @Override
+            public int compare(GateMetrics a, GateMetrics b)
+            {
+                return a.getGate().compareTo(b.getGate());
+            }
+        });
+        StringBuilder out = new StringBuilder(4096 + all.size() * 6144);
+        String[] labels = new String[all.size()];
+        for (int i = 0; i < labels.length; i++)
+        {
+            labels[i] = "gate=\"" + escape(all.get(i).getGate()) 
+                    + "\",type=\"" + escape(all.get(i).getType()) + "\"";
+        }
+        
+        header(out, "patroncount_gate_connect_seconds", "histogram",
+                "Time taken to open a connection to the gate.");
+        for (int i = 0; i < labels.length; i++)
+        {
+            all.get(i).connect.write(out, "patroncount_gate_connect_seconds", labels[i]);
+        }
+        header(out, "patroncount_gate_first_byte_seconds", "histogram",
+                "Time from sending a query to the first byte of the response.");
+        for (int i = 0; i < labels.length; i++)
+        {
+            all.get(i).firstByte.write(out, "patroncount_gate_first_byte_seconds", labels[i]);
+        }
+        header(out, "patroncount_gate_query_seconds", "histogram",
+                "Time taken by a whole query, connecting included.");
+        for (int i = 0; i < labels.length; i++)
+        {
+            all.get(i).query.write(out, "patroncount_gate_query_seconds", labels[i]);
+        }
+        header(out, "patroncount_gate_query_seconds_estimate", "gauge",
+                "Quantiles of the query time, estimated from the histogram.");
+        for (int i = 0; i < labels.length; i++)
+        {
+            LatencyHistogram histogram = all.get(i).query;
+            for (double q : QUANTILES)
+            {
+                out.append("patroncount_gate_query_seconds_estimate{")
+                        .append(labels[i]).append(",quantile=\"").append(q)
+                        .append("\"} ").append(histogram.quantile(q) / 1e6)
+                        .append('\n');
+            }
+        }
+        
+        counter(out, "patroncount_gate_queries_total", 
+                "Queries sent to the gate.", all, labels, new Field()
+        {
+            @Override
+            LongAdder get(GateMetrics metrics)
+            {
+                return metrics.queries;
+            }
+        });
+        counter(out, "patroncount_gate_read_bytes_total", 
+                "Bytes received from the gate.", all, labels, new Field()
+        {
+            @Override
+            LongAdder get(GateMetrics metrics)
+            {
+                return metrics.bytes;
+            }
+        });
+        counter(out, "patroncount_gate_timeouts_total", 
+                "Connections or responses that took longer than the timeout.", all, labels, new Field()
+        {
+            @Override
+            LongAdder get(GateMetrics metrics)
+            {
+                return metrics.timeouts;
+            }
+        });
+        counter(out, "patroncount_gate_refused_total", 
+                "Connections the gate refused.", all, labels, new Field()
+        {
+            @Override
+            LongAdder get(GateMetrics metrics)
+            {
+                return metrics.refusals;
+            }
+        });
+        counter(out, "patroncount_gate_unreachable_total", 
+                "Queries that couldn't connect to the gate.", all, labels, new Field()
+        {
+            @Override
+            LongAdder get(GateMetrics metrics)
+            {
+                return metrics.unreachable;
+            }
+        });
+        counter(out, "patroncount_gate_empty_responses_total", 
+                "Queries the gate connected for but didn't answer, usually because another application is connected to it.", 
+                all, labels, new Field()
+        {
+            @Override
+            LongAdder get(GateMetrics metrics)
+            {
+                return metrics.empty;
+            }
+        });
+        
+        header(out, "patroncount_gate_circuit_state", "gauge",
+                "1 for the current state of the gate's circuit breaker, 0 for the others.");
+        for (int i = 0; i < labels.length; i++)
+        {
+            CircuitBreaker breaker = all.get(i).breaker;
+            if (breaker == null)
+            {
+                continue;
+            }
+            CircuitBreaker.State current = breaker.getState();
+            for (CircuitBreaker.State state : CircuitBreaker.State.values())
+            {
+                out.append("patroncount_gate_circuit_state{").append(labels[i])
+                        .append(",state=\"").append(state.name().toLowerCase(Locale.ROOT))
+                        .append("\"} ").append(state == current ? 1 : 0).append('\n');
+            }
+        }
+        header(out, "patroncount_gate_skipped_total", "counter",
+                "Polls skipped because the gate's circuit breaker was open.");
+        for (int i = 0; i < labels.length; i++)
+        {
+            CircuitBreaker breaker = all.get(i).breaker;
+            if (breaker != null)
+            {
+                out.append("patroncount_gate_skipped_total{").append(labels[i])
+                        .append("} ").append(breaker.getRejected()).append('\n');
+            }
+        }
+        if (this.traffic != null)
+        {
+            MetricsRegistry.traffic(out, this.traffic);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes the patrons in, out and inside every place in the site map.
+     */
+    private static void traffic(StringBuilder out, TrafficAggregator traffic)
+    {
+        List<TrafficAggregator.Totals> all = new ArrayList<>();
+        for (TrafficAggregator.Level level : TrafficAggregator.Level.values())
+        {
+            all.addAll(traffic.getAll(level));
+        }
+        String[] labels = new String[all.size()];
+        long[] ins = new long[all.size()];
+        long[] outs = new long[all.size()];
+        for (int i = 0; i < labels.length; i++)
+        {
+            TrafficAggregator.Totals totals = all.get(i);
+            labels[i] = "level=\"" + totals.getLevel().name().toLowerCase(Locale.ROOT)
+                    + "\",name=\"" + escape(totals.getName()) + "\"";
+            // Out before in, as Totals.getOccupancy() does.
+            outs[i] = totals.getOut();
+            ins[i] = totals.getIn();
+        }
+        header(out, "patroncount_traffic_in_total", "counter",
+                "Patrons in since the daemon started or the totals were reset.");
+        for (int i = 0; i < labels.length; i++)
+        {
+            out.append("patroncount_traffic_in_total{").append(labels[i])
+                    .append("} ").append(ins[i]).append('\n');
+        }
+        header(out, "patroncount_traffic_out_total", "counter",
+                "Patrons out since the daemon started or the totals were reset.");
+        for (int i = 0; i < labels.length; i++)
+        {
+            out.append("patroncount_traffic_out_total{").append(labels[i])
+                    .append("} ").append(outs[i]).append('\n');
+        }
+        header(out, "patroncount_occupancy", "gauge",
+                "Patrons in less patrons out.");
+        for (int i = 0; i < labels.length; i++)
+        {
+            out.append("patroncount_occupancy{").append(labels[i])
+                    .append("} ").append(ins[i] - outs[i]).append('\n');
+        }
+    }
+
+    /**
+     * Picks a counter out of a gate's metrics.
+     */
+    private static abstract class Field
+    {
+        abstract LongAdder get(GateMetrics metrics);
+    }
+
+    private static void counter(StringBuilder out, String name, String help,
+            List<GateMetrics> all, String[] labels, Field field)
+    {
+        header(out, name, "counter", help);
+        for (int i = 0; i < labels.length; i++)
+        {
+            out.append(name).append('{').append(labels[i]).append("} ")
+                    .append(field.get(all.get(i)).sum()).append('\n');
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help)
+    {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Escapes a label value as the text format requires.
+     * @param value label value.
+     * @return the value with backslashes, quotes and new lines escaped.
+     */
+    static String escape(String value)
+    {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Serves the metrics of a registry on GET /metrics for Prometheus to 
+ * scrape. Requests are answered on a single daemon thread, so a stuck 
+ * scraper can't keep the application from exiting.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class MetricsServer
+{
+    private final static String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Binds the server, but doesn't start it.
+     * @param address address and port to listen on, usually loopback.
+     * @param registry metrics to serve.
+     * @throws IOException if the address can't be bound.
+     */
+    public MetricsServer(InetSocketAddress address, final MetricsRegistry registry)
+            throws IOException
+    {
+        this.server = HttpServer.create(address, 16);
+        this.server.createContext("/metrics", new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                try
+                {
+                    String method = exchange.getRequestMethod();
+                    if (! exchange.getRequestURI().getPath().equals("/metrics"))
+                    {
+                        exchange.sendResponseHeaders(404, -1);
+                        return;
+                    }
+                    if (! method.equals("GET") && ! method.equals("HEAD"))
+                    {
+                        exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                        exchange.sendResponseHeaders(405, -1);
+                        return;
+                    }
+                    byte[] body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                    if (method.equals("HEAD"))
+                    {
+                        exchange.sendResponseHeaders(200, -1);
+                        return;
+                    }
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody())
+                    {
+                        out.write(body);
+                    }
+                }
+                finally
+                {
+                    exchange.close();
+                }
+            }
+        });
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "metrics-server");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.server.setExecutor(this.executor);
+    }
+
+    /**
+     * @return address the server is listening on.
+     */
+    public InetSocketAddress getAddress()
+    {
+        return this.server.getAddress();
+    }
+
+    /**
+     * Starts answering requests.
+     */
+    public void start()
+    {
+        this.server.start();
+    }
+
+    /**
+     * Stops answering requests, waiting up to a second for any in progress.
+     */
+    public void stop()
+    {
+        this.server.stop(1);
+        this.executor.shutdown();
+    }
+}
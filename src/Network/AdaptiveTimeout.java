@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Network;
+
+/**
+ * Learns how long a device takes to answer and sets its response timeout
+ * from that, rather than using a fixed value for every device of a type.
+ *
+ * Response times are smoothed the way TCP estimates its retransmission
+ * timeout: an exponentially weighted mean and mean deviation. The timeout
+ * is the mean plus four deviations, which covers nearly every response, 
+ * times a safety factor, kept between a floor and a ceiling. Each timeout 
+ * doubles the value until the next response arrives, so a device that has
+ * slowed down stops being timed out falsely. Until a few responses have 
+ * been seen the learned value is only used if it's longer than the 
+ * device's default.
+ *
+ * All methods are thread safe.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class AdaptiveTimeout
+{
+    /** Shortest timeout, in milliseconds. */
+    public final static int DEFAULT_FLOOR = 250;
+    /** Longest timeout, in milliseconds. */
+    public final static int DEFAULT_CEILING = 10000;
+    /** Multiplier applied to the learned response time. */
+    public final static double DEFAULT_FACTOR = 2.0;
+    /** Responses needed before the learned value is used. */
+    public final static int MIN_SAMPLES = 5;
+    // Gains of the mean and deviation, 1/8 and 1/4 as in RFC 6298.
+    private final static double MEAN_GAIN = 0.125;
+    private final static double DEVIATION_GAIN = 0.25;
+    private final static int MAX_BACKOFF = 6;
+    private final int floor;
+    private final int ceiling;
+    private final double factor;
+    private double mean;
+    private double deviation;
+    private long samples;
+    private int backoff;
+
+    /**
+     * Uses the default floor, ceiling and safety factor.
+     */
+    public AdaptiveTimeout()
+    {
+        this(DEFAULT_FLOOR, DEFAULT_CEILING, DEFAULT_FACTOR);
+    }
+
+    /**
+     * @param floor shortest timeout in milliseconds.
+     * @param ceiling longest timeout in milliseconds.
+     * @param factor multiplier applied to the learned response time, at 
+     * least 1.
+     */
+    public AdaptiveTimeout(int floor, int ceiling, double factor)
+    {
+        if (floor < 1 || ceiling < floor || factor < 1.0)
+        {
+            throw new IllegalArgumentException("timeout floor " + floor 
+                    + ", ceiling " + ceiling + " and factor " + factor 
+                    + " are not valid");
+        }
+        this.floor   = floor;
+        this.ceiling = ceiling;
+        this.factor  = factor;
+    }
+
+    /**
+     * Learns from a response that arrived in time.
+     * @param micros time taken by the exchange, in microseconds.
+     */
+    public synchronized void record(long micros)
+    {
+        if (this.samples == 0)
+        {
+            this.mean      = micros;
+            this.deviation = micros / 2.0;
+        }
+        else
+        {
+            this.deviation += DEVIATION_GAIN * (Math.abs(this.mean - micros) - this.deviation);
+            this.mean      += MEAN_GAIN * (micros - this.mean);
+        }
+        this.samples++;
+        this.backoff = 0;
+    }
+
+    /**
+     * Backs off after the device didn't answer in time.
+     */
+    public synchronized void timedOut()
+    {
+        if (this.backoff < MAX_BACKOFF)
+        {
+            this.backoff++;
+        }
+    }
+
+    /**
+     * @param fallback timeout in milliseconds used until enough responses
+     * have been seen.
+     * @return how long to wait for the next response, in milliseconds.
+     */
+    public synchronized int getTimeout(int fallback)
+    {
+        double millis = fallback;
+        if (this.samples > 0)
+        {
+            double learned = (this.mean + 4.0 * this.deviation) * this.factor / 1000.0;
+            // Early estimates can only lengthen the default, so a device 
+            // that is slower than its default keeps being answered.
+            millis = this.samples < MIN_SAMPLES ? Math.max(fallback, learned) : learned;
+        }
+        // Back off from the default too, or a device slower than its 
+        // default would never answer in time to be learned from.
+        millis *= 1 << this.backoff;
+        return (int) Math.max(this.floor, Math.min(this.ceiling, Math.ceil(millis)));
+    }
+
+    /**
+     * @return number of responses learned from.
+     */
+    public synchronized long getSamples()
+    {
+        return this.samples;
+    }
+
+    /**
+     * Picks up where a saved estimate left off.
+     * @param saved text from {@link #toString()}.
+     * @throws IllegalArgumentException if the text isn't a saved estimate.
+     */
+    public synchronized void restore(String saved)
+    {
+        String[] fields = saved.trim().split(",");
+        try
+        {
+            if (fields.length != 3)
+            {
+                throw new NumberFormatException();
+            }
+            double savedMean = Double.parseDouble(fields[0]);
+            double savedDeviation = Double.parseDouble(fields[1]);
+            long savedSamples = Long.parseLong(fields[2]);
+            // Written this way round so NaN fails too.
+            if (! (savedMean >= 0 && savedDeviation >= 0) || Double.isInfinite(savedMean)
+                    || Double.isInfinite(savedDeviation) || savedSamples < 0)
+            {
+                throw new NumberFormatException();
+            }
+            this.mean      = savedMean;
+            this.deviation = savedDeviation;
+            this.samples   = savedSamples;
+            this.backoff   = 0;
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new IllegalArgumentException("invalid timeout estimate '" 
+                    + saved + "'");
+        }
+    }
+
+    /**
+     * @return the estimate as 'mean,deviation,samples' with times in 
+     * microseconds, which {@link #restore(java.lang.String)} reads back.
+     */
+    @Override
+    public synchronized String toString()
+    {
+        return Math.round(this.mean) + "," + Math.round(this.deviation) 
+                + "," + this.samples;
+    }
+}
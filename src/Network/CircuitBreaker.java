@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Network;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops querying a device that keeps failing, so polls of a device known to 
+ * be down return at once instead of waiting out a connect timeout.
+ *
+ * The breaker starts closed and opens after a number of failures in a row.
+ * While it's open requests are refused until a backoff expires, then a 
+ * single probe request is let through (half open). If the probe succeeds 
+ * the breaker closes, otherwise it opens again with twice the backoff, up
+ * to a maximum. A probe that hasn't reported back after 
+ * {@link #PROBE_TIMEOUT} is given up on and another is let through. Each 
+ * backoff is between half and all of its nominal value, picked at random,
+ * so devices that went down together aren't all probed at the same moment.
+ *
+ * All methods are thread safe.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class CircuitBreaker
+{
+    /** Failures in a row that open the breaker. */
+    public final static int DEFAULT_THRESHOLD = 3;
+    /** Backoff after the breaker first opens, in milliseconds. */
+    public final static long INITIAL_BACKOFF = 10000;
+    /** Longest backoff, in milliseconds. */
+    public final static long MAX_BACKOFF = 300000;
+    /** Longest wait for a probe to report back, in milliseconds. */
+    public final static long PROBE_TIMEOUT = 60000;
+
+    /**
+     * States of a breaker.
+     */
+    public enum State
+    {
+        /** Requests go through. */
+        CLOSED,
+        /** Requests are refused until the backoff expires. */
+        OPEN,
+        /** A probe request is in progress, others are refused. */
+        HALF_OPEN;
+    }
+
+    private final int threshold;
+    private State state;
+    private int failures;
+    private int trips;
+    private long nextProbe;
+    private long rejected;
+
+    /**
+     * Opens after {@link #DEFAULT_THRESHOLD} failures in a row.
+     */
+    public CircuitBreaker()
+    {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param threshold failures in a row that open the breaker.
+     */
+    public CircuitBreaker(int threshold)
+    {
+        if (threshold < 1)
+        {
+            throw new IllegalArgumentException("threshold must be at least 1.");
+        }
+        this.threshold = threshold;
+        this.state     = State.CLOSED;
+    }
+
+    /**
+     * Decides if a request may go ahead. A request that is let through must
+     * be followed by a call to {@link #succeeded()} or {@link #failed()}.
+     * @return true if the request may go ahead, false if the device is 
+     * known to be down.
+     */
+    public synchronized boolean allowRequest()
+    {
+        switch (this.state)
+        {
+            case CLOSED:
+                return true;
+            case OPEN:
+            case HALF_OPEN:
+                // In half open nextProbe is when the probe is given up on.
+                if (System.nanoTime() - this.nextProbe >= 0)
+                {
+                    this.state     = State.HALF_OPEN;
+                    this.nextProbe = System.nanoTime() 
+                            + TimeUnit.MILLISECONDS.toNanos(PROBE_TIMEOUT);
+                    return true;
+                }
+                break;
+            default:
+                break;
+        }
+        this.rejected++;
+        return false;
+    }
+
+    /**
+     * The request succeeded, close the breaker.
+     */
+    public synchronized void succeeded()
+    {
+        this.state    = State.CLOSED;
+        this.failures = 0;
+        this.trips    = 0;
+    }
+
+    /**
+     * The request failed, open the breaker if it has failed too often.
+     */
+    public synchronized void failed()
+    {
+        this.failures++;
+        if (this.state == State.HALF_OPEN || this.failures >= this.threshold)
+        {
+            long backoff = Math.min(MAX_BACKOFF, INITIAL_BACKOFF << Math.min(this.trips, 16));
+            long jittered = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            this.nextProbe = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(jittered);
+            this.state     = State.OPEN;
+            this.trips++;
+        }
+    }
+
+    /**
+     * @return current state of the breaker.
+     */
+    public synchronized State getState()
+    {
+        return this.state;
+    }
+
+    /**
+     * @return number of requests refused since the breaker was created.
+     */
+    public synchronized long getRejected()
+    {
+        return this.rejected;
+    }
+}
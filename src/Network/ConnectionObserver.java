@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Network;
+
+/**
+ * Is told about each step of the exchanges with one device, for example to
+ * keep metrics. Methods are called on the thread doing the exchange, so 
+ * they should be quick and must be thread safe.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public interface ConnectionObserver
+{
+    /**
+     * A connection was opened.
+     * @param nanos time taken to connect, in nanoseconds.
+     */
+    public void connected(long nanos);
+
+    /**
+     * The device refused the connection.
+     */
+    public void refused();
+
+    /**
+     * The device didn't accept the connection, or didn't finish its 
+     * response, in time.
+     */
+    public void timedOut();
+
+    /**
+     * The first byte of a response arrived.
+     * @param nanos time from sending the message to the first byte, in
+     * nanoseconds.
+     */
+    public void firstByte(long nanos);
+
+    /**
+     * Bytes of a response arrived.
+     * @param count number of bytes.
+     */
+    public void bytesRead(int count);
+
+    /**
+     * An exchange finished.
+     * @param nanos time taken by the whole exchange, connecting included,
+     * in nanoseconds.
+     * @param count bytes received, 0 if the device didn't respond, or -1 if
+     * it couldn't be connected to.
+     */
+    public void exchanged(long nanos, int count);
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Network;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one long lived connection open to each device so repeated queries
+ * don't pay for a DNS lookup and TCP handshake every time.
+ *
+ * Most gates only accept a single TCP client, so all exchanges with the same
+ * host and port are run one after another over the same connection rather
+ * than competing for the gate's only slot. A connection found closed or
+ * broken is replaced, and a device that can't be reached is retried with an
+ * exponential backoff instead of on every query.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class ConnectionPool
+{
+    /**
+     * Wait after the first failed connection, in milliseconds. The wait
+     * doubles with each further failure.
+     */
+    public final static long INITIAL_BACKOFF = 1000;
+    /**
+     * Longest wait between connection attempts, in milliseconds.
+     */
+    public final static long MAX_BACKOFF = 60000;
+    private final ConcurrentMap<String, Endpoint> endpoints;
+    private volatile boolean closed;
+
+    public ConnectionPool()
+    {
+        this.endpoints = new ConcurrentHashMap<>();
+        this.closed    = false;
+    }
+
+    /**
+     * Sends a message and reads the response frame over the pooled
+     * connection to the device, connecting first if needed. If a reused
+     * connection turns out to be dead the exchange is retried once on a
+     * fresh connection.
+     *
+     * @param host host or IP of the remote device.
+     * @param port port on the remote device.
+     * @param message raw bytes to send.
+     * @param frame knows how long the device's response frame is.
+     * @param timeout maximum time to wait for the response in milliseconds.
+     * @param response buffer the response is read into, see 
+     * {@link IOSocket#readFrame(java.nio.ByteBuffer, Network.FrameDecoder, int)}.
+     * @return number of bytes read, 0 if the device didn't respond, or -1 
+     * if no connection could be made.
+     */
+    public int exchange(String host, int port, byte[] message,
+            FrameDecoder frame, int timeout, ByteBuffer response)
+    {
+        return this.exchange(host, port, message, frame, timeout, response, null);
+    }
+
+    /**
+     * Same as {@link #exchange(java.lang.String, int, byte[], Network.FrameDecoder, int, java.nio.ByteBuffer)}
+     * but reports each step of the exchange.
+     *
+     * @param host host or IP of the remote device.
+     * @param port port on the remote device.
+     * @param message raw bytes to send.
+     * @param frame knows how long the device's response frame is.
+     * @param timeout maximum time to wait for the response in milliseconds.
+     * @param response buffer the response is read into.
+     * @param observer told about each step of the exchange, or null.
+     * @return number of bytes read, 0 if the device didn't respond, or -1 
+     * if no connection could be made.
+     */
+    public int exchange(String host, int port, byte[] message,
+            FrameDecoder frame, int timeout, ByteBuffer response,
+            ConnectionObserver observer)
+    {
+        if (this.closed)
+        {
+            return -1;
+        }
+        return this.endpoint(host, port).exchange(message, frame, timeout, 
+                response, observer);
+    }
+
+    /**
+     * Sends several messages over the pooled connection to the device and
+     * reads a response to each, see 
+     * {@link IOSocket#exchangeAll(byte[][], Network.FrameDecoder[], java.nio.ByteBuffer[], int, boolean)}.
+     * Unlike a single exchange it is never retried, since the device may 
+     * have acted on some of the messages before the connection failed.
+     *
+     * @param host host or IP of the remote device.
+     * @param port port on the remote device.
+     * @param messages raw bytes of each message.
+     * @param frames knows how long each response frame is.
+     * @param responses buffers the responses are read into, one per message.
+     * @param timeout maximum time to wait for each response in milliseconds.
+     * @param pipeline true to send every message before reading responses.
+     * @param observer told about each step of the exchange, or null.
+     * @return number of responses that arrived in full, or -1 if no 
+     * connection could be made.
+     */
+    public int exchangeAll(String host, int port, byte[][] messages,
+            FrameDecoder[] frames, ByteBuffer[] responses, int timeout, 
+            boolean pipeline, ConnectionObserver observer)
+    {
+        if (this.closed)
+        {
+            return -1;
+        }
+        return this.endpoint(host, port).exchangeAll(messages, frames, 
+                responses, timeout, pipeline, observer);
+    }
+
+    /**
+     * @param host host or IP of the remote device.
+     * @param port port on the remote device.
+     * @return the device's endpoint, created if needed.
+     */
+    private Endpoint endpoint(String host, int port)
+    {
+        String key = host + ":" + port;
+        Endpoint endpoint = this.endpoints.get(key);
+        if (endpoint == null)
+        {
+            Endpoint created = new Endpoint(host, port);
+            endpoint = this.endpoints.putIfAbsent(key, created);
+            if (endpoint == null)
+            {
+                endpoint = created;
+            }
+        }
+        return endpoint;
+    }
+
+    /**
+     * Closes every pooled connection.
+     */
+    public void close()
+    {
+        this.closed = true;
+        for (Endpoint endpoint : this.endpoints.values())
+        {
+            endpoint.disconnect();
+        }
+        this.endpoints.clear();
+    }
+
+    /**
+     * The connection to one host and port, and its reconnect backoff.
+     */
+    private static class Endpoint
+    {
+        private final String host;
+        private final int port;
+        private IOSocket socket;
+        private int failures;
+        private long nextAttempt;
+
+        Endpoint(String host, int port)
+        {
+            this.host     = host;
+            this.port     = port;
+            this.failures = 0;
+        }
+
+        synchronized int exchange(byte[] message, FrameDecoder frame, 
+                int timeout, ByteBuffer response, ConnectionObserver observer)
+        {
+            boolean reused = this.socket != null && this.socket.isUsable();
+            if (! reused && ! this.connect(observer))
+            {
+                return -1;
+            }
+            this.socket.setObserver(observer);
+            this.socket.sendMessage(message);
+            int count = this.socket.readFrame(response, frame, timeout);
+            if (count == 0 && reused && ! this.socket.isUsable())
+            {
+                // The connection died while it sat in the pool, try once
+                // more on a new one.
+                if (! this.connect(observer))
+                {
+                    return -1;
+                }
+                this.socket.setObserver(observer);
+                this.socket.sendMessage(message);
+                count = this.socket.readFrame(response, frame, timeout);
+            }
+            if (count == 0)
+            {
+                // A gate that stops answering may have lost track of the
+                // connection, so start the next exchange on a new one.
+                this.disconnect();
+            }
+            return count;
+        }
+
+        synchronized int exchangeAll(byte[][] messages, FrameDecoder[] frames, 
+                ByteBuffer[] responses, int timeout, boolean pipeline, 
+                ConnectionObserver observer)
+        {
+            boolean reused = this.socket != null && this.socket.isUsable();
+            if (! reused && ! this.connect(observer))
+            {
+                return -1;
+            }
+            this.socket.setObserver(observer);
+            int answered = this.socket.exchangeAll(messages, frames, responses, 
+                    timeout, pipeline);
+            if (answered < messages.length)
+            {
+                // Late responses would be taken for the answers to the 
+                // next exchange, so start it on a new connection.
+                this.disconnect();
+            }
+            return answered;
+        }
+
+        /**
+         * Replaces the current connection with a new one, unless the device
+         * is still in its backoff period.
+         * @param observer told about the connection, or null.
+         */
+        private boolean connect(ConnectionObserver observer)
+        {
+            this.disconnect();
+            long now = System.nanoTime();
+            if (this.failures > 0 && now - this.nextAttempt < 0)
+            {
+                return false;
+            }
+            IOSocket fresh = new IOSocket();
+            fresh.setObserver(observer);
+            if (! fresh.startConnection(this.host, this.port))
+            {
+                this.failures++;
+                long backoff = Math.min(MAX_BACKOFF,
+                        INITIAL_BACKOFF << Math.min(this.failures - 1, 16));
+                this.nextAttempt = now + TimeUnit.MILLISECONDS.toNanos(backoff);
+                System.err.println("**warn: host '" + this.host + "' will not be "
+                        + "retried for " + backoff + " milliseconds.");
+                return false;
+            }
+            this.failures = 0;
+            this.socket   = fresh;
+            return true;
+        }
+
+        synchronized void disconnect()
+        {
+            if (this.socket != null)
+            {
+                this.socket.stopConnection();
+                this.socket = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Network;
+
+/**
+ * Knows the layout of a device's response frame well enough to tell when
+ * all of it has arrived. This lets a reader return as soon as the response
+ * is complete instead of waiting out the device's worst case delay.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public interface FrameDecoder
+{
+    /**
+     * Works out the length of the frame from the bytes read so far.
+     *
+     * @param buffer bytes received so far, starting at the first byte of the
+     * frame.
+     * @param count number of valid bytes in the buffer.
+     * @return total length of the frame in bytes, or -1 if not enough of the
+     * frame has arrived to tell.
+     */
+    public int frameLength(byte[] buffer, int count);
+}
@@ -16,8 +16,6 @@
  */
 package Network;
 
-import org.apache.commons.validator.routines.InetAddressValidator;
-
 /**
  * A simple IPv4 class. 
  * @author Andrew Nisbet andrew.nisbet@epl.ca
@@ -73,8 +71,88 @@ public class GateIPv4
      */
     public boolean isValid()
     {
-        InetAddressValidator validator = InetAddressValidator.getInstance();
-        return validator.isValidInet4Address(this.getIp());
+        return GateIPv4.isValid(this.getIp());
+    }
+
+    /**
+     * Tests if an address is a dotted decimal IPv4 address, 4 numbers from
+     * 0 to 255 without leading zeros, like '10.2.19.113'. The characters 
+     * are checked in place, so nothing is allocated and no regular 
+     * expression or validation library has to be loaded.
+     * @param ip the address.
+     * @return true if valid IP (v4), and false otherwise.
+     */
+    public static boolean isValid(CharSequence ip)
+    {
+        if (ip == null)
+        {
+            return false;
+        }
+        int octets = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = 0; i < ip.length(); i++)
+        {
+            char c = ip.charAt(i);
+            if (c == '.')
+            {
+                if (digits == 0 || ++octets > 3)
+                {
+                    return false;
+                }
+                value = 0;
+                digits = 0;
+            }
+            else if (c >= '0' && c <= '9')
+            {
+                // '010' is octal to some parsers, so it isn't accepted.
+                if (digits == 1 && value == 0)
+                {
+                    return false;
+                }
+                value = value * 10 + (c - '0');
+                if (++digits > 3 || value > 255)
+                {
+                    return false;
+                }
+            }
+            else
+            {
+                return false;
+            }
+        }
+        return octets == 3 && digits > 0;
+    }
+    
+    /**
+     * Packs an address into an int, so subnets can be compared with masks.
+     * @param ip the address.
+     * @return the address with the first octet in the top 8 bits.
+     * @throws IllegalArgumentException if the address isn't valid, see
+     * {@link #isValid(java.lang.CharSequence)}.
+     */
+    public static int toInt(CharSequence ip)
+    {
+        if (! GateIPv4.isValid(ip))
+        {
+            throw new IllegalArgumentException("invalid IP '" + ip + "'");
+        }
+        int address = 0;
+        int value = 0;
+        for (int i = 0; i < ip.length(); i++)
+        {
+            char c = ip.charAt(i);
+            if (c == '.')
+            {
+                address = (address << 8) | value;
+                value = 0;
+            }
+            else
+            {
+                value = value * 10 + (c - '0');
+            }
+        }
+        return (address << 8) | value;
     }
 
     /**
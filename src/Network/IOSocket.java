@@ -27,7 +27,9 @@ import java.net.Socket;
 import java.net.SocketAddress;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.util.Formatter;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -47,6 +49,20 @@ public class IOSocket
     private Socket clientSocket;
     private DataOutputStream out;
     private InputStream in;
+    private boolean broken;
+    private ConnectionObserver observer;
+    private long sent;
+    /** Room for responses that arrive together in {@link #exchangeAll}. */
+    private final static int PENDING_SIZE = 4096;
+ 
+    /**
+     * Reports the connection's steps from now on.
+     * @param observer told about each step, or null.
+     */
+    public void setObserver(ConnectionObserver observer)
+    {
+        this.observer = observer;
+    }
  
     /**
      * Starts the connection to remote device with a default timeout of 15 seconds.
@@ -71,12 +87,22 @@ public class IOSocket
             InetAddress address = InetAddress.getByName(ip);
             SocketAddress sockAddress = new InetSocketAddress(address,port);
             clientSocket = new Socket();
+            clientSocket.setKeepAlive(true);
+            long started = System.nanoTime();
             clientSocket.connect(sockAddress, timeout);
+            if (this.observer != null)
+            {
+                this.observer.connected(System.nanoTime() - started);
+            }
             out = new DataOutputStream(clientSocket.getOutputStream());
             in = new DataInputStream(clientSocket.getInputStream());
         } 
         catch (SocketTimeoutException ex)
         {
+            if (this.observer != null)
+            {
+                this.observer.timedOut();
+            }
             System.err.println("**warn: host '" + ip + "' is not responding "
                     + "within " + timeout + " milliseconds.");
             return false;
@@ -88,16 +114,66 @@ public class IOSocket
         }
         catch (ConnectException ex)
         {
+            if (this.observer != null)
+            {
+                this.observer.refused();
+            }
             System.err.println("***error: host '" + ip + "' refusing connection.");
             return false;
         }
         catch (IOException ex)
         {
             Logger.getLogger(IOSocket.class.getName()).log(Level.SEVERE, null, ex);
+            return false;
         }
+        this.broken = false;
         return true;
     }
     
+    /**
+     * Tests if a connection that has been sitting idle can still be used.
+     * Any bytes left over from a previous response are thrown away. A 
+     * connection the remote device has closed, or that failed during an 
+     * earlier read or write, is not usable.
+     * 
+     * @return true if the connection can be reused, and false otherwise.
+     */
+    public boolean isUsable()
+    {
+        if (this.broken || clientSocket == null || clientSocket.isClosed())
+        {
+            return false;
+        }
+        try 
+        {
+            byte[] stale = new byte[64];
+            while (in.available() > 0)
+            {
+                if (in.read(stale) < 0)
+                {
+                    return false;
+                }
+            }
+            // A closed connection reads end of stream straight away, an open
+            // but quiet one times out.
+            clientSocket.setSoTimeout(1);
+            if (in.read(stale) < 0)
+            {
+                return false;
+            }
+        } 
+        catch (SocketTimeoutException ex)
+        {
+            return true;
+        }
+        catch (IOException ex) 
+        {
+            return false;
+        }
+        // The device sent something unasked for, drop the connection to be safe.
+        return false;
+    }
+    
     /**
      * Converts a String into a byte array to be put as raw bytes.
      * @param s - string that will be converted into an array of bytes.
@@ -123,14 +199,24 @@ public class IOSocket
      */
     public String sendMessage(String msg) 
     {
-        byte[] message = IOSocket.hexStringToByteArray(msg);
+        this.sendMessage(IOSocket.hexStringToByteArray(msg));
+        return "";
+    }
+    
+    /**
+     * Sends raw bytes over the socket.
+     * @param message bytes to be sent.
+     */
+    public void sendMessage(byte[] message)
+    {
         try 
         {
+            this.sent = System.nanoTime();
             out.write(message);
         } catch (IOException ex) {
+            this.broken = true;
             Logger.getLogger(IOSocket.class.getName()).log(Level.SEVERE, null, ex);
         }
-        return "";
     }
     
     /**
@@ -176,6 +262,239 @@ public class IOSocket
         return f.toString();
     }
  
+    /**
+     * Reads a single response frame from the socket. Reading stops as soon as
+     * the decoder reports that the whole frame has arrived, the buffer is 
+     * full, the remote device closes the connection, or the timeout expires,
+     * whichever comes first. Unlike {@link #readBytes()} the input stream is
+     * left open.
+     * 
+     * @param frame knows how long the device's response frame is.
+     * @param timeout maximum time to wait for the frame in milliseconds.
+     * @return string form of the bytes read, which is empty if the device
+     * didn't respond in time.
+     */
+    public String readFrame(FrameDecoder frame, int timeout)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(500);
+        int count = this.readFrame(buffer, frame, timeout);
+        return IOSocket.toHexString(buffer.array(), count);
+    }
+    
+    /**
+     * Reads a single response frame from the socket into a buffer the caller
+     * can reuse from one read to the next, so no string conversion or
+     * allocation takes place. See {@link #readFrame(Network.FrameDecoder, int)}
+     * for when reading stops.
+     * 
+     * @param response buffer backed by an array. On return its position is 0
+     * and its limit is the number of bytes read.
+     * @param frame knows how long the device's response frame is.
+     * @param timeout maximum time to wait for the frame in milliseconds.
+     * @return number of bytes read, which is 0 if the device didn't respond
+     * in time.
+     */
+    public int readFrame(ByteBuffer response, FrameDecoder frame, int timeout)
+    {
+        byte[] buffer = response.array();
+        int count = 0;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        try 
+        {
+            while (count < buffer.length)
+            {
+                int length = frame.frameLength(buffer, count);
+                if (length > 0 && count >= length)
+                {
+                    break;
+                }
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0)
+                {
+                    if (this.observer != null)
+                    {
+                        this.observer.timedOut();
+                    }
+                    break;
+                }
+                clientSocket.setSoTimeout((int) remaining);
+                int read = in.read(buffer, count, buffer.length - count);
+                if (read < 0)
+                {
+                    this.broken = true;
+                    break;
+                }
+                if (this.observer != null)
+                {
+                    if (count == 0)
+                    {
+                        this.observer.firstByte(System.nanoTime() - this.sent);
+                    }
+                    this.observer.bytesRead(read);
+                }
+                count += read;
+            }
+        } 
+        catch (SocketTimeoutException ex)
+        {
+            // The device didn't finish its frame in time, return what we got.
+            if (this.observer != null)
+            {
+                this.observer.timedOut();
+            }
+        }
+        catch (IOException ex) 
+        {
+            this.broken = true;
+            Logger.getLogger(IOSocket.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        response.clear();
+        response.limit(count);
+        return count;
+    }
+    
+    /**
+     * Sends several messages on the connection and reads one response frame
+     * for each, in order. Pipelined messages are all sent at once before any
+     * response is read, otherwise each message is sent once the response to
+     * the previous one has arrived. Pipelined responses may arrive 
+     * together, so bytes past the end of one frame are kept for the next,
+     * otherwise they are dropped. Each response has its own timeout, starting when the 
+     * previous response arrived, and the exchange stops at the first 
+     * response that doesn't arrive in full.
+     * 
+     * @param messages raw bytes of each message.
+     * @param frames knows how long each response frame is.
+     * @param responses buffers backed by arrays, one per message, that the 
+     * responses are read into. On return each has a position of 0 and a 
+     * limit of the number of bytes read, 0 for messages after the first 
+     * that wasn't answered in full.
+     * @param timeout maximum time to wait for each frame in milliseconds.
+     * @param pipeline true to send every message before reading responses.
+     * @return number of responses that arrived in full.
+     */
+    public int exchangeAll(byte[][] messages, FrameDecoder[] frames, 
+            ByteBuffer[] responses, int timeout, boolean pipeline)
+    {
+        for (ByteBuffer response : responses)
+        {
+            response.clear();
+            response.limit(0);
+        }
+        if (pipeline)
+        {
+            int total = 0;
+            for (byte[] message : messages)
+            {
+                total += message.length;
+            }
+            byte[] batch = new byte[total];
+            int offset = 0;
+            for (byte[] message : messages)
+            {
+                System.arraycopy(message, 0, batch, offset, message.length);
+                offset += message.length;
+            }
+            this.sendMessage(batch);
+        }
+        byte[] pending = new byte[PENDING_SIZE];
+        int have = 0;
+        int answered = 0;
+        try
+        {
+            for (int i = 0; i < messages.length && ! this.broken; i++)
+            {
+                if (! pipeline)
+                {
+                    // Anything the device sent past the end of the last 
+                    // frame, like a checksum the decoder doesn't count, 
+                    // belongs to that frame.
+                    have = 0;
+                    long late = in.available();
+                    while (late > 0)
+                    {
+                        late -= in.skip(late);
+                    }
+                    this.sendMessage(messages[i]);
+                }
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+                int length = frames[i].frameLength(pending, have);
+                while ((length <= 0 || have < length) && have < pending.length)
+                {
+                    long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remaining <= 0)
+                    {
+                        throw new SocketTimeoutException();
+                    }
+                    clientSocket.setSoTimeout((int) remaining);
+                    int read = in.read(pending, have, pending.length - have);
+                    if (read < 0)
+                    {
+                        this.broken = true;
+                        break;
+                    }
+                    if (this.observer != null)
+                    {
+                        if (have == 0 && i == 0)
+                        {
+                            this.observer.firstByte(System.nanoTime() - this.sent);
+                        }
+                        this.observer.bytesRead(read);
+                    }
+                    have += read;
+                    length = frames[i].frameLength(pending, have);
+                }
+                boolean complete = length > 0 && have >= length;
+                int count = Math.min(complete ? length : have, responses[i].capacity());
+                System.arraycopy(pending, 0, responses[i].array(), 0, count);
+                responses[i].limit(count);
+                if (! complete)
+                {
+                    break;
+                }
+                have -= length;
+                System.arraycopy(pending, length, pending, 0, have);
+                answered++;
+            }
+        }
+        catch (SocketTimeoutException ex)
+        {
+            // The device didn't answer in time, report what arrived.
+            if (this.observer != null)
+            {
+                this.observer.timedOut();
+            }
+            if (answered < responses.length && have > 0)
+            {
+                int count = Math.min(have, responses[answered].capacity());
+                System.arraycopy(pending, 0, responses[answered].array(), 0, count);
+                responses[answered].limit(count);
+            }
+        }
+        catch (IOException ex)
+        {
+            this.broken = true;
+            Logger.getLogger(IOSocket.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return answered;
+    }
+    
+    /**
+     * Converts bytes into the string form used by {@link #readBytes()}.
+     * @param buffer bytes to convert.
+     * @param count number of bytes from the start of the buffer to convert.
+     * @return string of 2 lower case hex digits per byte.
+     */
+    public static String toHexString(byte[] buffer, int count)
+    {
+        Formatter f = new Formatter();
+        for (int i = 0; i < count; i++)
+        {
+            f.format("%02x", buffer[i]);
+        }
+        return f.toString();
+    }
+ 
     /**
      * Closes the socket connection.
      */
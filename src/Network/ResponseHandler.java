@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Network;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the response of an exchange that completes some time after it
+ * was started. See {@link SelectorTransport}.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public interface ResponseHandler
+{
+    /**
+     * Called once the exchange finishes if the device was connected to, 
+     * whether it answered or not.
+     *
+     * @param response the bytes received, from position 0 to the limit. 
+     * It is empty if the device didn't respond in time.
+     */
+    public void completed(ByteBuffer response);
+    
+    /**
+     * Called instead of {@link #completed(java.nio.ByteBuffer)} if the 
+     * device couldn't be connected to; it was refused, unknown, didn't 
+     * accept the connection in time, or the transport closed first.
+     */
+    public void unreachable();
+}
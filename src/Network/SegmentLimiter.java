@@ -0,0 +1,380 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps queries from swamping any one network segment, like the gates 
+ * behind a branch's router or a serial to Ethernet converter, while gates
+ * on different segments are still queried in parallel. Each segment has a
+ * limit on the queries in flight, and optionally a token bucket that limits
+ * how fast queries start.
+ *
+ * A gate's segment is its subnet, by default its /24, unless a labelled
+ * segment lists the gate's address. Settings come from a properties file:
+ * <pre>
+ * # Subnet of gates not in a labelled segment.
+ * prefix=24
+ * # Most queries in flight per segment.
+ * in.flight=4
+ * # Queries started per second per segment, 0 for no limit.
+ * rate=10
+ * # Queries that can start at once after a quiet spell, default in.flight.
+ * burst=4
+ * # Labelled segments, and their own limits.
+ * segment.LON=10.2.30.0/24,10.2.31.0/25
+ * in.flight.LON=1
+ * rate.LON=2
+ * </pre>
+ *
+ * Safe to use from any number of threads. Threads waiting for a segment
+ * wait on the limiter's monitor, which {@link #release(java.lang.String)}
+ * notifies.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class SegmentLimiter
+{
+    /** Default subnet prefix length of a segment. */
+    public final static int DEFAULT_PREFIX = 24;
+    /** Default most queries in flight per segment. */
+    public final static int DEFAULT_IN_FLIGHT = 4;
+    /** Returned by {@link #tryAcquire(java.lang.String)} while the segment is full. */
+    public final static long FULL = Long.MAX_VALUE;
+    private final int prefix;
+    private final int inFlight;
+    private final double rate;
+    private final int burst;
+    private final List<Labelled> labelled;
+    private final Map<String, Segment> segments;
+    private final Properties overrides;
+
+    /**
+     * A named segment and the addresses in it.
+     */
+    private static class Labelled
+    {
+        private final String label;
+        private final int address;
+        private final int mask;
+
+        Labelled(String label, int address, int mask)
+        {
+            this.label   = label;
+            this.address = address & mask;
+            this.mask    = mask;
+        }
+    }
+
+    /**
+     * Queries in flight and tokens of one segment. Guarded by the limiter.
+     */
+    private static class Segment
+    {
+        private final int inFlight;
+        private final double rate;
+        private final double burst;
+        private int running;
+        private double tokens;
+        private long refilled;
+
+        Segment(int inFlight, double rate, int burst)
+        {
+            this.inFlight = inFlight;
+            this.rate     = rate / TimeUnit.SECONDS.toNanos(1);
+            this.burst    = burst;
+            this.tokens   = burst;
+            this.refilled = System.nanoTime();
+        }
+    }
+
+    /**
+     * Limits every segment the same way, with no labelled segments.
+     * @param prefix subnet prefix length of a segment, 0 to 32.
+     * @param inFlight most queries in flight per segment.
+     * @param rate queries started per second per segment, or 0 for no limit.
+     * @param burst queries that can start at once, at least 1.
+     */
+    public SegmentLimiter(int prefix, int inFlight, double rate, int burst)
+    {
+        this(prefix, inFlight, rate, burst, new Properties());
+    }
+
+    private SegmentLimiter(int prefix, int inFlight, double rate, int burst,
+            Properties settings)
+    {
+        if (prefix < 0 || prefix > 32 || inFlight < 1 || rate < 0.0 || burst < 1)
+        {
+            throw new IllegalArgumentException("prefix must be 0 to 32, in flight"
+                    + " and burst at least 1, and rate 0 or more");
+        }
+        this.prefix    = prefix;
+        this.inFlight  = inFlight;
+        this.rate      = rate;
+        this.burst     = burst;
+        this.labelled  = new ArrayList<>();
+        this.segments  = new HashMap<>();
+        this.overrides = settings;
+    }
+
+    /**
+     * Reads the limiter's settings from a properties file, see above.
+     * @param path path of the file.
+     * @return the limiter.
+     * @throws IOException if the file can't be read.
+     * @throws IllegalArgumentException if a setting isn't valid.
+     */
+    public static SegmentLimiter load(String path) throws IOException
+    {
+        Properties settings = new Properties();
+        try (InputStream in = Files.newInputStream(Paths.get(path)))
+        {
+            settings.load(in);
+        }
+        int inFlight = SegmentLimiter.intSetting(settings, "in.flight", DEFAULT_IN_FLIGHT);
+        SegmentLimiter limiter = new SegmentLimiter(
+                SegmentLimiter.intSetting(settings, "prefix", DEFAULT_PREFIX),
+                inFlight, SegmentLimiter.rateSetting(settings, "rate", 0.0),
+                SegmentLimiter.intSetting(settings, "burst", inFlight), settings);
+        for (String key : settings.stringPropertyNames())
+        {
+            // Checked now so a typo is found before polling starts.
+            if (key.startsWith("in.flight.") || key.startsWith("burst."))
+            {
+                if (SegmentLimiter.intSetting(settings, key, 1) < 1)
+                {
+                    throw new IllegalArgumentException("'" + key + "' must be at least 1");
+                }
+            }
+            else if (key.startsWith("rate."))
+            {
+                SegmentLimiter.rateSetting(settings, key, 0.0);
+            }
+            else if (key.startsWith("segment."))
+            {
+                String label = key.substring("segment.".length());
+                for (String subnet : settings.getProperty(key).split(","))
+                {
+                    limiter.addSegment(label, subnet.trim());
+                }
+            }
+        }
+        return limiter;
+    }
+
+    private static int intSetting(Properties settings, String key, int value)
+    {
+        String text = settings.getProperty(key);
+        if (text == null)
+        {
+            return value;
+        }
+        try
+        {
+            return Integer.parseInt(text.trim());
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new IllegalArgumentException("invalid '" + key + "' value '" + text + "'");
+        }
+    }
+
+    /**
+     * @return the rate, which is never negative or not a number.
+     */
+    private static double rateSetting(Properties settings, String key, double value)
+    {
+        String text = settings.getProperty(key);
+        if (text == null)
+        {
+            return value;
+        }
+        double rate;
+        try
+        {
+            rate = Double.parseDouble(text.trim());
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new IllegalArgumentException("invalid '" + key + "' value '" + text + "'");
+        }
+        if (! (rate >= 0.0) || Double.isInfinite(rate))
+        {
+            throw new IllegalArgumentException("'" + key + "' must be 0 or more");
+        }
+        return rate;
+    }
+
+    /**
+     * Puts a subnet in a labelled segment. Only to be called before the
+     * limiter is used. Labelled segments are checked in the order added.
+     * @param label name of the segment.
+     * @param subnet 'address/prefix', or just an address for one gate.
+     * @throws IllegalArgumentException if the subnet isn't valid.
+     */
+    public void addSegment(String label, String subnet)
+    {
+        int slash = subnet.indexOf('/');
+        int bits = 32;
+        String address = subnet;
+        if (slash >= 0)
+        {
+            address = subnet.substring(0, slash);
+            try
+            {
+                bits = Integer.parseInt(subnet.substring(slash + 1));
+            }
+            catch (NumberFormatException ex)
+            {
+                bits = -1;
+            }
+        }
+        if (bits < 0 || bits > 32 || ! GateIPv4.isValid(address))
+        {
+            throw new IllegalArgumentException("invalid subnet '" + subnet 
+                    + "' in segment '" + label + "'");
+        }
+        this.labelled.add(new Labelled(label, GateIPv4.toInt(address), SegmentLimiter.mask(bits)));
+    }
+
+    private static int mask(int bits)
+    {
+        return bits == 0 ? 0 : -1 << (32 - bits);
+    }
+
+    /**
+     * @param ip address of a gate.
+     * @return the gate's segment, its label or its subnet like '10.2.19.0/24'.
+     * @throws IllegalArgumentException if the address isn't valid.
+     */
+    public String segmentOf(String ip)
+    {
+        int address = GateIPv4.toInt(ip);
+        for (Labelled segment : this.labelled)
+        {
+            if ((address & segment.mask) == segment.address)
+            {
+                return segment.label;
+            }
+        }
+        int subnet = address & SegmentLimiter.mask(this.prefix);
+        return (subnet >>> 24) + "." + ((subnet >>> 16) & 0xff) + "." 
+                + ((subnet >>> 8) & 0xff) + "." + (subnet & 0xff) + "/" + this.prefix;
+    }
+
+    /**
+     * Starts a query on a segment if the segment has room and a token.
+     * @param segment the segment, see {@link #segmentOf(java.lang.String)}.
+     * @return 0 if the query can start, and must be followed by a call to
+     * {@link #release(java.lang.String)} when it's done. Otherwise 
+     * nanoseconds until the next token, or {@link #FULL} if the segment 
+     * is waiting for a query to finish.
+     */
+    public synchronized long tryAcquire(String segment)
+    {
+        Segment state = this.getSegment(segment);
+        if (state.running >= state.inFlight)
+        {
+            return FULL;
+        }
+        if (state.rate > 0.0)
+        {
+            long now = System.nanoTime();
+            state.tokens = Math.min(state.burst, 
+                    state.tokens + (now - state.refilled) * state.rate);
+            state.refilled = now;
+            if (state.tokens < 1.0)
+            {
+                return Math.max(1L, (long) Math.ceil((1.0 - state.tokens) / state.rate));
+            }
+            state.tokens -= 1.0;
+        }
+        state.running++;
+        return 0L;
+    }
+
+    /**
+     * Waits until a query can start on a segment.
+     * @param segment the segment, see {@link #segmentOf(java.lang.String)}.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public synchronized void acquire(String segment) throws InterruptedException
+    {
+        long wait;
+        while ((wait = this.tryAcquire(segment)) != 0L)
+        {
+            this.await(wait);
+        }
+    }
+
+    /**
+     * Waits on the limiter's monitor for a query to finish or a token to
+     * come due. The caller must hold the monitor.
+     * @param nanos longest wait, or {@link #FULL} to wait for a release.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void await(long nanos) throws InterruptedException
+    {
+        if (nanos == FULL)
+        {
+            this.wait();
+        }
+        else
+        {
+            TimeUnit.NANOSECONDS.timedWait(this, nanos);
+        }
+    }
+
+    /**
+     * Ends a query started by {@link #tryAcquire(java.lang.String)} or 
+     * {@link #acquire(java.lang.String)}.
+     * @param segment the segment.
+     */
+    public synchronized void release(String segment)
+    {
+        this.getSegment(segment).running--;
+        this.notifyAll();
+    }
+
+    private Segment getSegment(String segment)
+    {
+        Segment state = this.segments.get(segment);
+        if (state == null)
+        {
+            int limit = SegmentLimiter.intSetting(this.overrides, "in.flight." + segment, this.inFlight);
+            // The overrides were range checked when they were loaded.
+            state = new Segment(limit,
+                    SegmentLimiter.rateSetting(this.overrides, "rate." + segment, this.rate),
+                    SegmentLimiter.intSetting(this.overrides, "burst." + segment, 
+                            Math.min(this.burst, limit)));
+            this.segments.put(segment, state);
+        }
+        return state;
+    }
+}
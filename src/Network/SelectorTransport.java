@@ -0,0 +1,506 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Network;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Non-blocking alternative to {@link IOSocket}. A single thread drives any
+ * number of exchanges (connect, send one message, read one response frame)
+ * through a {@link Selector}, so hundreds of devices can be queried at once
+ * without a thread for each of them.
+ *
+ * Each exchange reports back exactly once through its {@link ResponseHandler},
+ * on the transport's thread, so handlers should be quick. As with
+ * {@link IOSocket#readFrame(java.nio.ByteBuffer, Network.FrameDecoder, int)} 
+ * a device that doesn't respond in time produces an empty response, and
+ * one that can't be connected to is reported as unreachable.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class SelectorTransport
+{
+    /**
+     * Connect timeout in milliseconds, the same default as {@link IOSocket}.
+     */
+    public final static int CONNECT_TIMEOUT = 5000;
+    private final Selector selector;
+    private final Queue<Exchange> pending;
+    // Only touched by the transport thread.
+    private final Set<Exchange> active;
+    private final Thread thread;
+    private volatile boolean running;
+
+    /**
+     * Opens the selector and starts the transport thread.
+     * @throws IOException if the selector can't be opened.
+     */
+    public SelectorTransport() throws IOException
+    {
+        this.selector = Selector.open();
+        this.pending  = new ConcurrentLinkedQueue<>();
+        this.active   = new HashSet<>();
+        this.running  = true;
+        this.thread   = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                SelectorTransport.this.run();
+            }
+        }, "selector-transport");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Starts an exchange with a remote device. The method returns
+     * immediately, the response is handed to the handler when it arrives.
+     *
+     * @param host host or IP of the remote device.
+     * @param port port on the remote device.
+     * @param message raw bytes to send.
+     * @param frame knows how long the device's response frame is.
+     * @param timeout maximum time to wait for the response frame once
+     * connected, in milliseconds.
+     * @param response array backed buffer the response is read into, which 
+     * must not be used by anything else until the handler is called.
+     * @param handler receives the response.
+     */
+    public void submit(String host, int port, byte[] message,
+            FrameDecoder frame, int timeout, ByteBuffer response, 
+            ResponseHandler handler)
+    {
+        this.submit(host, port, message, frame, timeout, response, handler, null);
+    }
+
+    /**
+     * Same as {@link #submit(java.lang.String, int, byte[], Network.FrameDecoder, int, java.nio.ByteBuffer, Network.ResponseHandler)}
+     * but reports each step of the exchange, on the transport's thread.
+     *
+     * @param host host or IP of the remote device.
+     * @param port port on the remote device.
+     * @param message raw bytes to send.
+     * @param frame knows how long the device's response frame is.
+     * @param timeout maximum time to wait for the response frame once
+     * connected, in milliseconds.
+     * @param response array backed buffer the response is read into.
+     * @param handler receives the response.
+     * @param observer told about each step of the exchange, or null.
+     */
+    public void submit(String host, int port, byte[] message,
+            FrameDecoder frame, int timeout, ByteBuffer response, 
+            ResponseHandler handler, ConnectionObserver observer)
+    {
+        Exchange exchange = new Exchange(host, port, message, frame, timeout, 
+                response, handler, observer);
+        this.pending.add(exchange);
+        // If the transport closed meanwhile, its last sweep of the queue may 
+        // already be done, so whoever takes the exchange back completes it.
+        if (! this.running && this.pending.remove(exchange))
+        {
+            exchange.complete();
+            return;
+        }
+        this.selector.wakeup();
+    }
+
+    /**
+     * Stops the transport. Exchanges that haven't finished are completed
+     * with what they've read so far, or as unreachable if they never 
+     * connected.
+     */
+    public void close()
+    {
+        this.running = false;
+        this.selector.wakeup();
+        try
+        {
+            this.thread.join();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        // Anything submitted after the thread's last sweep.
+        Exchange exchange;
+        while ((exchange = this.pending.poll()) != null)
+        {
+            exchange.complete();
+        }
+    }
+
+    private void run()
+    {
+        try
+        {
+            while (this.running)
+            {
+                try
+                {
+                    this.startPending();
+                    this.selector.select(this.selectTimeout());
+                    Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                    while (keys.hasNext())
+                    {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (key.isValid())
+                        {
+                            this.ready((Exchange) key.attachment(), key);
+                        }
+                    }
+                    this.expire();
+                }
+                catch (IOException ex)
+                {
+                    Logger.getLogger(SelectorTransport.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+        }
+        finally
+        {
+            // Also reached if the thread dies, so nothing is left waiting
+            // and later submits are completed at once.
+            this.running = false;
+            Exchange exchange;
+            while ((exchange = this.pending.poll()) != null)
+            {
+                exchange.complete();
+            }
+            for (Exchange started : new ArrayList<>(this.active))
+            {
+                started.finish();
+            }
+            try
+            {
+                this.selector.close();
+            }
+            catch (IOException ex)
+            {
+                Logger.getLogger(SelectorTransport.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    private void startPending()
+    {
+        Exchange exchange;
+        while ((exchange = this.pending.poll()) != null)
+        {
+            try
+            {
+                exchange.start();
+            }
+            catch (RuntimeException ex)
+            {
+                this.failed(exchange, ex);
+            }
+        }
+    }
+
+    /**
+     * Moves an exchange on, finishing it if its frame decoder or observer 
+     * fails, so one bad exchange can't stop the transport.
+     */
+    private void ready(Exchange exchange, SelectionKey key)
+    {
+        try
+        {
+            exchange.ready(key);
+        }
+        catch (RuntimeException ex)
+        {
+            this.failed(exchange, ex);
+        }
+    }
+
+    /**
+     * Reports an exchange that threw and finishes it with what it has read.
+     */
+    private void failed(Exchange exchange, RuntimeException ex)
+    {
+        Logger.getLogger(SelectorTransport.class.getName()).log(Level.SEVERE,
+                "exchange with '" + exchange.host + "' failed.", ex);
+        exchange.finish();
+    }
+
+    /**
+     * @return milliseconds until the next exchange's deadline.
+     */
+    private long selectTimeout()
+    {
+        long next = Long.MAX_VALUE;
+        for (Exchange exchange : this.active)
+        {
+            next = Math.min(next, exchange.deadline);
+        }
+        if (next == Long.MAX_VALUE)
+        {
+            return 0; // nothing to time, wait for a wakeup.
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(next - System.nanoTime()) + 1);
+    }
+
+    private void expire()
+    {
+        long now = System.nanoTime();
+        List<Exchange> expired = new ArrayList<>();
+        for (Exchange exchange : this.active)
+        {
+            if (now - exchange.deadline >= 0)
+            {
+                expired.add(exchange);
+            }
+        }
+        for (Exchange exchange : expired)
+        {
+            if (exchange.state == State.CONNECTING)
+            {
+                System.err.println("**warn: host '" + exchange.host + "' is not responding "
+                        + "within " + CONNECT_TIMEOUT + " milliseconds.");
+            }
+            try
+            {
+                if (exchange.observer != null)
+                {
+                    exchange.observer.timedOut();
+                }
+            }
+            catch (RuntimeException ex)
+            {
+                Logger.getLogger(SelectorTransport.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            exchange.finish();
+        }
+    }
+
+    private enum State
+    {
+        CONNECTING,
+        WRITING,
+        READING;
+    }
+
+    /**
+     * One connect, write and read cycle with a single device.
+     */
+    private class Exchange
+    {
+        private final String host;
+        private final int port;
+        private final ByteBuffer out;
+        private final ByteBuffer response;
+        private final byte[] in;
+        private final FrameDecoder frame;
+        private final int timeout;
+        private final ResponseHandler handler;
+        private final ConnectionObserver observer;
+        private SocketChannel channel;
+        private State state;
+        private long deadline;
+        private long started;
+        private int count;
+        private boolean connected;
+
+        Exchange(String host, int port, byte[] message, FrameDecoder frame,
+                int timeout, ByteBuffer response, ResponseHandler handler,
+                ConnectionObserver observer)
+        {
+            this.host     = host;
+            this.port     = port;
+            this.out      = ByteBuffer.wrap(message);
+            this.response = response;
+            this.in       = response.array();
+            this.frame    = frame;
+            this.timeout  = timeout;
+            this.handler  = handler;
+            this.observer = observer;
+            this.count    = 0;
+            this.connected = false;
+        }
+
+        void start()
+        {
+            active.add(this);
+            this.state    = State.CONNECTING;
+            this.started  = System.nanoTime();
+            this.deadline = this.started + TimeUnit.MILLISECONDS.toNanos(CONNECT_TIMEOUT);
+            InetSocketAddress address = new InetSocketAddress(this.host, this.port);
+            if (address.isUnresolved())
+            {
+                System.err.println("***error: unknown host '" + this.host + "'.");
+                this.finish();
+                return;
+            }
+            try
+            {
+                this.channel = SocketChannel.open();
+                this.channel.configureBlocking(false);
+                if (this.channel.connect(address))
+                {
+                    this.connected();
+                    this.channel.register(selector, SelectionKey.OP_WRITE, this);
+                }
+                else
+                {
+                    this.channel.register(selector, SelectionKey.OP_CONNECT, this);
+                }
+            }
+            catch (IOException ex)
+            {
+                Logger.getLogger(SelectorTransport.class.getName()).log(Level.SEVERE, null, ex);
+                this.finish();
+            }
+        }
+
+        void ready(SelectionKey key)
+        {
+            try
+            {
+                if (key.isConnectable())
+                {
+                    if (this.channel.finishConnect())
+                    {
+                        this.connected();
+                        key.interestOps(SelectionKey.OP_WRITE);
+                    }
+                }
+                else if (key.isWritable())
+                {
+                    this.channel.write(this.out);
+                    if (! this.out.hasRemaining())
+                    {
+                        this.state   = State.READING;
+                        this.started = System.nanoTime();
+                        key.interestOps(SelectionKey.OP_READ);
+                    }
+                }
+                else if (key.isReadable())
+                {
+                    this.response.limit(this.in.length).position(this.count);
+                    int read = this.channel.read(this.response);
+                    if (read < 0)
+                    {
+                        this.finish();
+                        return;
+                    }
+                    if (this.observer != null && read > 0)
+                    {
+                        if (this.count == 0)
+                        {
+                            this.observer.firstByte(System.nanoTime() - this.started);
+                        }
+                        this.observer.bytesRead(read);
+                    }
+                    this.count += read;
+                    int length = this.frame.frameLength(this.in, this.count);
+                    if ((length > 0 && this.count >= length) || this.count == this.in.length)
+                    {
+                        this.finish();
+                    }
+                }
+            }
+            catch (ConnectException ex)
+            {
+                if (this.observer != null)
+                {
+                    this.observer.refused();
+                }
+                System.err.println("***error: host '" + this.host + "' refusing connection.");
+                this.finish();
+            }
+            catch (IOException ex)
+            {
+                Logger.getLogger(SelectorTransport.class.getName()).log(Level.SEVERE, null, ex);
+                this.finish();
+            }
+        }
+
+        private void connected()
+        {
+            if (this.observer != null)
+            {
+                this.observer.connected(System.nanoTime() - this.started);
+            }
+            this.connected = true;
+            this.state    = State.WRITING;
+            this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.timeout);
+        }
+
+        void finish()
+        {
+            if (! active.remove(this))
+            {
+                return;
+            }
+            if (this.channel != null)
+            {
+                try
+                {
+                    this.channel.close();
+                }
+                catch (IOException ex)
+                {
+                    Logger.getLogger(SelectorTransport.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+            this.complete();
+        }
+
+        /**
+         * Passes whatever was read to the handler, or tells it the device 
+         * was never connected to.
+         */
+        void complete()
+        {
+            try
+            {
+                if (! this.connected)
+                {
+                    this.handler.unreachable();
+                    return;
+                }
+                this.response.clear();
+                this.response.limit(this.count);
+                this.handler.completed(this.response);
+            }
+            catch (RuntimeException ex)
+            {
+                Logger.getLogger(SelectorTransport.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+}
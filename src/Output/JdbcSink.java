@@ -0,0 +1,508 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Output;
+
+import RFIDEquipment.GateReading;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes readings to a database table with JDBC, a batch at a time. 
+ * Readings are buffered and written once 'batch size' have built up, or 
+ * every 'flush interval', whichever comes first, with each batch in its 
+ * own transaction, so a whole fleet sweep is one round trip and one commit.
+ *
+ * Rows are keyed on the gate and the reading's timestamp, and written with
+ * the database's upsert or insert-or-ignore statement where it has one, so
+ * a batch can be retried without duplicating rows even if its first commit
+ * did land. Other databases fall back to inserting the batch a row at a 
+ * time, skipping rows that are already there. A batch that still fails is
+ * put back at the front of the buffer for the next flush.
+ *
+ * The table is created if it doesn't exist:
+ * <pre>
+ * CREATE TABLE gate_readings (
+ *     gate VARCHAR(45) NOT NULL,
+ *     read_at TIMESTAMP NOT NULL,
+ *     type VARCHAR(32) NOT NULL,
+ *     status VARCHAR(16) NOT NULL,
+ *     in_count BIGINT NOT NULL,
+ *     out_count BIGINT NOT NULL,
+ *     latency_us BIGINT NOT NULL,
+ *     PRIMARY KEY (gate, read_at))
+ * </pre>
+ * Failed queries are kept too, with -1 counts as the application has always
+ * reported them.
+ *
+ * The JDBC driver of the database, for example H2 or SQLite, must be on the
+ * class path. All methods are thread safe.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class JdbcSink
+{
+    /** Default name of the table. */
+    public final static String DEFAULT_TABLE = "gate_readings";
+    /** Default number of readings that triggers a write. */
+    public final static int DEFAULT_BATCH_SIZE = 500;
+    /** Default longest time a reading waits to be written, in milliseconds. */
+    public final static long DEFAULT_FLUSH_INTERVAL = 5000;
+    /** Readings kept while the database is down, newer ones are dropped. */
+    public final static int MAX_PENDING = 100000;
+    /** Attempts at writing a batch before it's put back for later. */
+    public final static int MAX_ATTEMPTS = 3;
+    private final String url;
+    private final Properties credentials;
+    private final String table;
+    private final int batchSize;
+    private final String insert;
+    private final Deque<GateReading> pending;
+    private final Object writing;
+    private final ScheduledExecutorService flusher;
+    private Connection connection;
+    private long dropped;
+    private volatile boolean closed;
+
+    /**
+     * Uses the default table, batch size and flush interval.
+     * @param url JDBC URL of the database, like 'jdbc:h2:./counts'.
+     * @param user database user, or null.
+     * @param password the user's password, or null.
+     */
+    public JdbcSink(String url, String user, String password)
+    {
+        this(url, user, password, DEFAULT_TABLE, DEFAULT_BATCH_SIZE, 
+                DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * @param url JDBC URL of the database, like 'jdbc:h2:./counts'.
+     * @param user database user, or null.
+     * @param password the user's password, or null.
+     * @param table name of the table.
+     * @param batchSize number of readings that triggers a write.
+     * @param flushInterval longest time a reading waits to be written, in
+     * milliseconds, or 0 to only write full batches and on {@link #flush()}.
+     */
+    public JdbcSink(String url, String user, String password, String table,
+            int batchSize, long flushInterval)
+    {
+        if (batchSize < 1 || flushInterval < 0)
+        {
+            throw new IllegalArgumentException("batch size must be at least 1 "
+                    + "and flush interval can't be negative.");
+        }
+        if (! table.matches("[A-Za-z_][A-Za-z0-9_.]*"))
+        {
+            throw new IllegalArgumentException("invalid table name '" + table + "'");
+        }
+        this.url         = url;
+        this.credentials = new Properties();
+        if (user != null)
+        {
+            this.credentials.setProperty("user", user);
+        }
+        if (password != null)
+        {
+            this.credentials.setProperty("password", password);
+        }
+        this.table     = table;
+        this.batchSize = batchSize;
+        this.insert    = JdbcSink.insertStatement(url, table);
+        this.pending   = new ArrayDeque<>();
+        this.writing   = new Object();
+        this.flusher   = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "jdbc-sink");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        if (flushInterval > 0)
+        {
+            this.flusher.scheduleWithFixedDelay(this.flushTask(), flushInterval, 
+                    flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Builds the statement that writes one row, as an upsert or 
+     * insert-or-ignore where the database has one.
+     * @param url JDBC URL of the database.
+     * @param table name of the table.
+     * @return the SQL of the statement.
+     */
+    static String insertStatement(String url, String table)
+    {
+        String columns = " (gate, read_at, type, status, in_count, out_count, latency_us)";
+        String values = " VALUES (?, ?, ?, ?, ?, ?, ?)";
+        if (url.startsWith("jdbc:h2:"))
+        {
+            return "MERGE INTO " + table + columns + " KEY (gate, read_at)" + values;
+        }
+        if (url.startsWith("jdbc:sqlite:") || url.startsWith("jdbc:postgresql:"))
+        {
+            return "INSERT INTO " + table + columns + values 
+                    + " ON CONFLICT (gate, read_at) DO NOTHING";
+        }
+        if (url.startsWith("jdbc:mysql:") || url.startsWith("jdbc:mariadb:"))
+        {
+            return "INSERT IGNORE INTO " + table + columns + values;
+        }
+        return "INSERT INTO " + table + columns + values;
+    }
+
+    /**
+     * Buffers a reading, starting a write in the background if a batch has
+     * built up. Never waits on the database.
+     * @param reading the reading.
+     */
+    public void accept(GateReading reading)
+    {
+        boolean full;
+        synchronized (this.pending)
+        {
+            if (this.pending.size() >= MAX_PENDING)
+            {
+                if (this.dropped++ % 1000 == 0)
+                {
+                    System.err.println("**warn: database '" + this.url 
+                            + "' is behind, " + this.dropped + " readings dropped.");
+                }
+                return;
+            }
+            this.pending.addLast(reading);
+            full = this.pending.size() >= this.batchSize;
+        }
+        if (full && ! this.closed)
+        {
+            this.flusher.execute(this.flushTask());
+        }
+    }
+
+    /**
+     * Writes every buffered reading, a batch at a time, and waits for it.
+     * @return true if everything was written, false if some readings are
+     * still waiting because the database couldn't be written.
+     */
+    public boolean flush()
+    {
+        synchronized (this.writing)
+        {
+            while (true)
+            {
+                List<GateReading> batch = new ArrayList<>(this.batchSize);
+                synchronized (this.pending)
+                {
+                    while (batch.size() < this.batchSize && ! this.pending.isEmpty())
+                    {
+                        batch.add(this.pending.pollFirst());
+                    }
+                }
+                if (batch.isEmpty())
+                {
+                    return true;
+                }
+                if (! this.write(batch))
+                {
+                    synchronized (this.pending)
+                    {
+                        for (int i = batch.size() - 1; i >= 0; i--)
+                        {
+                            this.pending.addFirst(batch.get(i));
+                        }
+                    }
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the background writes, writes what is left, and disconnects.
+     * @return true if every reading was written.
+     */
+    public boolean close()
+    {
+        this.closed = true;
+        this.flusher.shutdown();
+        try
+        {
+            this.flusher.awaitTermination(30, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        boolean written = this.flush();
+        synchronized (this.writing)
+        {
+            this.disconnect();
+        }
+        if (! written)
+        {
+            System.err.println("**error: " + this.pendingCount() 
+                    + " readings couldn't be written to '" + this.url + "'.");
+        }
+        return written;
+    }
+
+    /**
+     * @return number of readings waiting to be written.
+     */
+    public int pendingCount()
+    {
+        synchronized (this.pending)
+        {
+            return this.pending.size();
+        }
+    }
+
+    private Runnable flushTask()
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                flush();
+            }
+        };
+    }
+
+    /**
+     * Writes a batch in one transaction, trying a few times.
+     * @param batch the readings.
+     * @return true if the batch was committed.
+     */
+    private boolean write(List<GateReading> batch)
+    {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++)
+        {
+            try
+            {
+                this.writeBatch(batch);
+                return true;
+            }
+            catch (SQLException ex)
+            {
+                Logger.getLogger(JdbcSink.class.getName()).log(Level.WARNING,
+                        "attempt " + attempt + " at writing " + batch.size() 
+                        + " readings to '" + this.url + "' failed.", ex);
+                this.disconnect();
+                if (attempt < MAX_ATTEMPTS)
+                {
+                    try
+                    {
+                        Thread.sleep(1000L << (attempt - 1));
+                    }
+                    catch (InterruptedException ie)
+                    {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void writeBatch(List<GateReading> batch) throws SQLException
+    {
+        Connection db = this.connect();
+        try (PreparedStatement statement = db.prepareStatement(this.insert))
+        {
+            for (GateReading reading : batch)
+            {
+                this.bind(statement, reading);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            db.commit();
+        }
+        catch (BatchUpdateException ex)
+        {
+            if (! JdbcSink.rollback(db, ex) || ! JdbcSink.isDuplicate(ex))
+            {
+                throw ex;
+            }
+            // A plain insert found rows from an earlier attempt that did 
+            // commit, so write the rest one at a time.
+            this.writeEach(db, batch);
+        }
+        catch (SQLException ex)
+        {
+            JdbcSink.rollback(db, ex);
+            throw ex;
+        }
+    }
+
+    private void writeEach(Connection db, List<GateReading> batch) throws SQLException
+    {
+        try (PreparedStatement statement = db.prepareStatement(this.insert))
+        {
+            for (GateReading reading : batch)
+            {
+                this.bind(statement, reading);
+                try
+                {
+                    statement.executeUpdate();
+                }
+                catch (SQLException ex)
+                {
+                    if (! JdbcSink.isDuplicate(ex))
+                    {
+                        throw ex;
+                    }
+                }
+            }
+            db.commit();
+        }
+        catch (SQLException ex)
+        {
+            JdbcSink.rollback(db, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Rolls back a failed write. A dead connection is the usual reason a
+     * write fails and then the rollback fails too, so its failure is kept
+     * with the original one rather than replacing it.
+     * @param db the connection.
+     * @param cause why the write failed.
+     * @return true if the write was rolled back.
+     */
+    private static boolean rollback(Connection db, SQLException cause)
+    {
+        try
+        {
+            db.rollback();
+            return true;
+        }
+        catch (SQLException ex)
+        {
+            cause.addSuppressed(ex);
+            return false;
+        }
+    }
+
+    /**
+     * @param ex the failure.
+     * @return true if the failure was a constraint violation, SQL state 
+     * class '23', which for this table means the row is already there.
+     */
+    private static boolean isDuplicate(SQLException ex)
+    {
+        return ex.getSQLState() != null && ex.getSQLState().startsWith("23");
+    }
+
+    private void bind(PreparedStatement statement, GateReading reading) throws SQLException
+    {
+        statement.setString(1, reading.getGate());
+        statement.setTimestamp(2, new Timestamp(reading.getTimestamp()));
+        statement.setString(3, reading.getType().toString());
+        statement.setString(4, reading.getStatus().name());
+        statement.setLong(5, reading.getIn());
+        statement.setLong(6, reading.getOut());
+        statement.setLong(7, reading.getLatency());
+    }
+
+    /**
+     * @return the open connection, connecting and creating the table first
+     * if needed.
+     * @throws SQLException if the database can't be reached.
+     */
+    private Connection connect() throws SQLException
+    {
+        if (this.connection != null)
+        {
+            return this.connection;
+        }
+        Connection db = DriverManager.getConnection(this.url, this.credentials);
+        try
+        {
+            db.setAutoCommit(false);
+            try (Statement statement = db.createStatement())
+            {
+                statement.execute("CREATE TABLE IF NOT EXISTS " + this.table + " ("
+                        + "gate VARCHAR(45) NOT NULL, "
+                        + "read_at TIMESTAMP NOT NULL, "
+                        + "type VARCHAR(32) NOT NULL, "
+                        + "status VARCHAR(16) NOT NULL, "
+                        + "in_count BIGINT NOT NULL, "
+                        + "out_count BIGINT NOT NULL, "
+                        + "latency_us BIGINT NOT NULL, "
+                        + "PRIMARY KEY (gate, read_at))");
+                db.commit();
+            }
+            catch (SQLException ex)
+            {
+                // Not every database knows 'IF NOT EXISTS', the table may
+                // well be there already.
+                db.rollback();
+                Logger.getLogger(JdbcSink.class.getName()).log(Level.FINE,
+                        "unable to create table " + this.table + ".", ex);
+            }
+        }
+        catch (SQLException ex)
+        {
+            db.close();
+            throw ex;
+        }
+        this.connection = db;
+        return db;
+    }
+
+    private void disconnect()
+    {
+        if (this.connection == null)
+        {
+            return;
+        }
+        try
+        {
+            this.connection.close();
+        }
+        catch (SQLException ex)
+        {
+            // Going away anyway.
+        }
+        this.connection = null;
+    }
+}
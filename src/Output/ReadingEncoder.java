@@ -0,0 +1,477 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Output;
+
+import Analysis.CountDelta;
+import RFIDEquipment.GateReading;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Writes {@link GateReading}s to a stream, one record per reading, in one of
+ * several formats. See {@link #getInstance(java.lang.String, java.io.OutputStream, boolean)}
+ * for the supported formats. The traffic between readings, {@link CountDelta}s,
+ * can be written in the same formats, but a stream should hold either 
+ * readings or deltas, not both.
+ *
+ * Encoders write as they go and are not thread safe, callers that share
+ * an encoder must synchronize on it.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public abstract class ReadingEncoder
+{
+    /**
+     * Timestamp format of the pipe encoder, which is the format the daemon
+     * has always used.
+     */
+    public final static DateTimeFormatter PIPE_TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Builds an encoder for the named format.
+     *
+     * <ul>
+     * <li>'pipe', the original 'gate|in|out|' lines, or 'timestamp|gate|in|out|'
+     * if timestamps are requested.</li>
+     * <li>'csv', a header line, then one comma separated line per reading
+     * with every field of the reading.</li>
+     * <li>'json', JSON Lines, one object per reading.</li>
+     * <li>'binary', compact big-endian records, one per reading. Each record
+     * starts with a short holding the length of the rest of the record, see
+     * the BinaryEncoder class for the layout.</li>
+     * </ul>
+     *
+     * @param format name of the format (case insensitive).
+     * @param out where the readings are written.
+     * @param timestamps true to include timestamps in the pipe format. The
+     * other formats always include them.
+     * @return the encoder.
+     * @throws IllegalArgumentException if the format isn't supported.
+     */
+    public static ReadingEncoder getInstance(String format, OutputStream out,
+            boolean timestamps)
+    {
+        switch (format.toUpperCase(Locale.ROOT))
+        {
+            case "PIPE":
+                return new PipeEncoder(out, timestamps);
+            case "CSV":
+                return new CsvEncoder(out);
+            case "JSON":
+                return new JsonLinesEncoder(out);
+            case "BINARY":
+                return new BinaryEncoder(out);
+            default:
+                throw new IllegalArgumentException("unsupported output format '"
+                        + format + "'");
+        }
+    }
+
+    /**
+     * Writes one reading.
+     * @param reading the reading to write.
+     * @throws IOException if the stream can't be written.
+     */
+    public abstract void encode(GateReading reading) throws IOException;
+
+    /**
+     * Writes the traffic between two readings.
+     * @param delta the traffic to write.
+     * @throws IOException if the stream can't be written.
+     */
+    public abstract void encode(CountDelta delta) throws IOException;
+
+    /**
+     * Pushes any buffered records to the underlying stream.
+     * @throws IOException if the stream can't be written.
+     */
+    public abstract void flush() throws IOException;
+
+    /**
+     * Base of the encoders that write lines of text.
+     */
+    private abstract static class TextEncoder extends ReadingEncoder
+    {
+        protected final Writer writer;
+        protected final StringBuilder line;
+
+        TextEncoder(OutputStream out)
+        {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            this.line   = new StringBuilder(128);
+        }
+
+        @Override
+        public void encode(GateReading reading) throws IOException
+        {
+            this.line.setLength(0);
+            this.append(reading);
+            this.line.append('\n');
+            this.writer.append(this.line);
+        }
+
+        @Override
+        public void encode(CountDelta delta) throws IOException
+        {
+            this.line.setLength(0);
+            this.append(delta);
+            this.line.append('\n');
+            this.writer.append(this.line);
+        }
+
+        protected abstract void append(GateReading reading);
+
+        protected abstract void append(CountDelta delta);
+
+        @Override
+        public void flush() throws IOException
+        {
+            this.writer.flush();
+        }
+
+        protected static String isoTimestamp(GateReading reading)
+        {
+            return Instant.ofEpochMilli(reading.getTimestamp()).toString();
+        }
+
+        protected static String isoTimestamp(long timestamp)
+        {
+            return timestamp == 0L ? "" : Instant.ofEpochMilli(timestamp).toString();
+        }
+    }
+
+    /**
+     * The application's original output, 'gate|in|out|', optionally with a
+     * local timestamp in front.
+     */
+    private static class PipeEncoder extends TextEncoder
+    {
+        private final boolean timestamps;
+
+        PipeEncoder(OutputStream out, boolean timestamps)
+        {
+            super(out);
+            this.timestamps = timestamps;
+        }
+
+        @Override
+        protected void append(GateReading reading)
+        {
+            if (this.timestamps)
+            {
+                this.line.append(LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(reading.getTimestamp()),
+                        ZoneId.systemDefault()).format(PIPE_TIMESTAMP)).append('|');
+            }
+            this.line.append(reading.getGate()).append('|')
+                    .append(reading.getIn()).append('|')
+                    .append(reading.getOut()).append('|');
+        }
+
+        @Override
+        protected void append(CountDelta delta)
+        {
+            if (this.timestamps)
+            {
+                this.line.append(LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(delta.getEnd()),
+                        ZoneId.systemDefault()).format(PIPE_TIMESTAMP)).append('|');
+            }
+            this.line.append(delta.getGate()).append('|')
+                    .append(delta.getIn()).append('|')
+                    .append(delta.getOut()).append('|');
+        }
+    }
+
+    /**
+     * Comma separated values with a header. Detector counters are written
+     * in a single column separated by spaces, since gates have different
+     * numbers of detectors.
+     */
+    private static class CsvEncoder extends TextEncoder
+    {
+        private boolean header;
+
+        CsvEncoder(OutputStream out)
+        {
+            super(out);
+            this.header = false;
+        }
+
+        @Override
+        public void encode(GateReading reading) throws IOException
+        {
+            if (! this.header)
+            {
+                this.writer.write("timestamp,gate,type,status,in,out,detectors,latency_us\n");
+                this.header = true;
+            }
+            super.encode(reading);
+        }
+
+        @Override
+        public void encode(CountDelta delta) throws IOException
+        {
+            if (! this.header)
+            {
+                this.writer.write("start,end,gate,type,status,in,out,detectors,missed_polls\n");
+                this.header = true;
+            }
+            super.encode(delta);
+        }
+
+        @Override
+        protected void append(GateReading reading)
+        {
+            this.line.append(isoTimestamp(reading)).append(',')
+                    .append(reading.getGate()).append(',')
+                    .append(reading.getType()).append(',')
+                    .append(reading.getStatus()).append(',')
+                    .append(reading.getIn()).append(',')
+                    .append(reading.getOut()).append(',');
+            for (int i = 0; i < reading.getCounterCount(); i++)
+            {
+                if (i > 0)
+                {
+                    this.line.append(' ');
+                }
+                this.line.append(reading.getCounter(i));
+            }
+            this.line.append(',').append(reading.getLatency());
+        }
+
+        @Override
+        protected void append(CountDelta delta)
+        {
+            this.line.append(isoTimestamp(delta.getStart())).append(',')
+                    .append(isoTimestamp(delta.getEnd())).append(',')
+                    .append(delta.getGate()).append(',')
+                    .append(delta.getType()).append(',')
+                    .append(delta.getStatus()).append(',')
+                    .append(delta.getIn()).append(',')
+                    .append(delta.getOut()).append(',');
+            for (int i = 0; i < delta.getCounterCount(); i++)
+            {
+                if (i > 0)
+                {
+                    this.line.append(' ');
+                }
+                this.line.append(delta.getCounter(i));
+            }
+            this.line.append(',').append(delta.getMissedPolls());
+        }
+    }
+
+    /**
+     * JSON Lines, one object per line.
+     */
+    private static class JsonLinesEncoder extends TextEncoder
+    {
+        JsonLinesEncoder(OutputStream out)
+        {
+            super(out);
+        }
+
+        @Override
+        protected void append(GateReading reading)
+        {
+            this.line.append("{\"timestamp\":\"").append(isoTimestamp(reading))
+                    .append("\",\"gate\":");
+            JsonLinesEncoder.appendString(this.line, reading.getGate());
+            this.line.append(",\"type\":");
+            JsonLinesEncoder.appendString(this.line, reading.getType().toString());
+            this.line.append(",\"status\":\"").append(reading.getStatus())
+                    .append("\",\"in\":").append(reading.getIn())
+                    .append(",\"out\":").append(reading.getOut())
+                    .append(",\"detectors\":[");
+            for (int i = 0; i < reading.getCounterCount(); i++)
+            {
+                if (i > 0)
+                {
+                    this.line.append(',');
+                }
+                this.line.append(reading.getCounter(i));
+            }
+            this.line.append("],\"latency_us\":").append(reading.getLatency())
+                    .append('}');
+        }
+
+        @Override
+        protected void append(CountDelta delta)
+        {
+            this.line.append("{\"start\":");
+            if (delta.getStart() == 0L)
+            {
+                this.line.append("null");
+            }
+            else
+            {
+                this.line.append('"').append(isoTimestamp(delta.getStart())).append('"');
+            }
+            this.line.append(",\"end\":\"").append(isoTimestamp(delta.getEnd()))
+                    .append("\",\"gate\":");
+            JsonLinesEncoder.appendString(this.line, delta.getGate());
+            this.line.append(",\"type\":");
+            JsonLinesEncoder.appendString(this.line, delta.getType().toString());
+            this.line.append(",\"status\":\"").append(delta.getStatus())
+                    .append("\",\"in\":").append(delta.getIn())
+                    .append(",\"out\":").append(delta.getOut())
+                    .append(",\"detectors\":[");
+            for (int i = 0; i < delta.getCounterCount(); i++)
+            {
+                if (i > 0)
+                {
+                    this.line.append(',');
+                }
+                this.line.append(delta.getCounter(i));
+            }
+            this.line.append("],\"missed_polls\":").append(delta.getMissedPolls())
+                    .append('}');
+        }
+
+        /**
+         * Appends a quoted JSON string.
+         * @param line where the string is written.
+         * @param value text to quote.
+         */
+        static void appendString(StringBuilder line, String value)
+        {
+            line.append('"');
+            for (int i = 0; i < value.length(); i++)
+            {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\')
+                {
+                    line.append('\\').append(c);
+                }
+                else if (c < 0x20)
+                {
+                    line.append(String.format("\\u%04x", (int) c));
+                }
+                else
+                {
+                    line.append(c);
+                }
+            }
+            line.append('"');
+        }
+    }
+
+    /**
+     * Compact binary records, all numbers big-endian:
+     * <pre>
+     * short  length of the rest of the record in bytes
+     * long   timestamp, milliseconds since the epoch
+     * UTF    gate id (as {@link DataOutputStream#writeUTF(java.lang.String)})
+     * byte   gate type, ordinal of SupportedGateType
+     * byte   status, ordinal of ReadingStatus
+     * long   in count
+     * long   out count
+     * long   latency in microseconds
+     * byte   number of detector counters, n
+     * long[n] detector counters
+     * </pre>
+     * Delta records have the same length prefix, followed by:
+     * <pre>
+     * long   start, milliseconds since the epoch, or 0 if there isn't one
+     * long   end, milliseconds since the epoch
+     * UTF    gate id
+     * byte   gate type, ordinal of SupportedGateType
+     * byte   status, ordinal of DeltaStatus
+     * long   in traffic
+     * long   out traffic
+     * int    missed polls
+     * byte   number of detector deltas, n
+     * long[n] detector deltas
+     * </pre>
+     */
+    private static class BinaryEncoder extends ReadingEncoder
+    {
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream record;
+        private final DataOutputStream fields;
+
+        BinaryEncoder(OutputStream out)
+        {
+            this.out    = new DataOutputStream(new BufferedOutputStream(out));
+            this.record = new ByteArrayOutputStream(96);
+            this.fields = new DataOutputStream(this.record);
+        }
+
+        @Override
+        public void encode(GateReading reading) throws IOException
+        {
+            this.record.reset();
+            this.fields.writeLong(reading.getTimestamp());
+            this.fields.writeUTF(reading.getGate());
+            this.fields.writeByte(reading.getType().ordinal());
+            this.fields.writeByte(reading.getStatus().ordinal());
+            this.fields.writeLong(reading.getIn());
+            this.fields.writeLong(reading.getOut());
+            this.fields.writeLong(reading.getLatency());
+            this.fields.writeByte(reading.getCounterCount());
+            for (int i = 0; i < reading.getCounterCount(); i++)
+            {
+                this.fields.writeLong(reading.getCounter(i));
+            }
+            this.out.writeShort(this.record.size());
+            this.record.writeTo(this.out);
+        }
+
+        @Override
+        public void encode(CountDelta delta) throws IOException
+        {
+            this.record.reset();
+            this.fields.writeLong(delta.getStart());
+            this.fields.writeLong(delta.getEnd());
+            this.fields.writeUTF(delta.getGate());
+            this.fields.writeByte(delta.getType().ordinal());
+            this.fields.writeByte(delta.getStatus().ordinal());
+            this.fields.writeLong(delta.getIn());
+            this.fields.writeLong(delta.getOut());
+            this.fields.writeInt(delta.getMissedPolls());
+            this.fields.writeByte(delta.getCounterCount());
+            for (int i = 0; i < delta.getCounterCount(); i++)
+            {
+                this.fields.writeLong(delta.getCounter(i));
+            }
+            this.out.writeShort(this.record.size());
+            this.record.writeTo(this.out);
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            this.out.flush();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Polling;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the list of gates in a fleet. See {@link GateEntry} for the format
+ * of each line. Lines that can't be parsed are reported and skipped so one
+ * typo doesn't stop the rest of the fleet from being counted.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class FleetConfig
+{
+    /**
+     * Reads a fleet file.
+     * @param path path of the fleet file.
+     * @return list of gates in the order they appear in the file.
+     * @throws IOException if the file can't be read.
+     */
+    public static List<GateEntry> load(String path) throws IOException
+    {
+        try (BufferedReader reader = Files.newBufferedReader(
+                Paths.get(path), StandardCharsets.UTF_8))
+        {
+            return FleetConfig.read(reader);
+        }
+    }
+
+    /**
+     * Reads gate entries until the end of the reader.
+     * @param reader source of 'ip type [timeout]' lines.
+     * @return list of gates in the order they were read.
+     * @throws IOException if the reader fails.
+     */
+    public static List<GateEntry> read(BufferedReader reader) throws IOException
+    {
+        List<GateEntry> gates = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null)
+        {
+            lineNumber++;
+            try
+            {
+                GateEntry entry = GateEntry.parse(line);
+                if (entry != null)
+                {
+                    gates.add(entry);
+                }
+            }
+            catch (IllegalArgumentException ex)
+            {
+                System.err.println("**warn: skipping fleet line " + lineNumber
+                        + ", " + ex.getMessage() + ".");
+            }
+        }
+        return gates;
+    }
+}
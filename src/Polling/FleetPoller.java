@@ -0,0 +1,652 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Polling;
+
+import Network.SegmentLimiter;
+import Network.SelectorTransport;
+import RFIDEquipment.CustomerGate;
+import RFIDEquipment.GateReading;
+import RFIDEquipment.ReadingStatus;
+import RFIDEquipment.ResultsListener;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Queries a whole fleet of gates from one process. Gates are queried in
+ * parallel, at most 'concurrency' at a time, so a sweep of the fleet takes
+ * about as long as the slowest gate rather than the sum of all of them.
+ *
+ * Each gate produces one {@link GateReading}, in the same order the gates
+ * were listed.
+ * 
+ * Gates can also be streamed with {@link #stream(BufferedReader, ResultsListener)},
+ * which starts each query as its line is read and reports each reading as
+ * soon as it's done, so a fleet of any size goes through in constant memory.
+ * 
+ * By default each query runs on its own thread from a bounded pool. If a
+ * {@link SelectorTransport} is set, all queries are instead driven by the
+ * transport's single thread and the pool isn't used at all.
+ * 
+ * A {@link SegmentLimiter} limits the queries on each network segment as 
+ * well. A sweep then takes gates from each segment in turn, starting 
+ * whichever can go next, so a slow or busy segment doesn't hold up the 
+ * gates on the others.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class FleetPoller
+{
+    /**
+     * Default maximum number of gates queried at the same time.
+     */
+    public final static int DEFAULT_CONCURRENCY = 32;
+    /** Most streamed gates held waiting for their network segment. */
+    public final static int STREAM_BACKLOG = 1000;
+    /** Longest wait for a busy segment before checking for more input, in milliseconds. */
+    private final static long INPUT_CHECK = 50;
+    private final int concurrency;
+    private final boolean debug;
+    private SelectorTransport transport;
+    private LearnedTimeouts timeouts;
+    private SegmentLimiter limiter;
+
+    /**
+     * @param concurrency maximum number of gates queried at the same time.
+     * @param debug true to output debug information.
+     */
+    public FleetPoller(int concurrency, boolean debug)
+    {
+        if (concurrency < 1)
+        {
+            throw new IllegalArgumentException("concurrency must be at least 1.");
+        }
+        this.concurrency = concurrency;
+        this.debug       = debug;
+    }
+
+    /**
+     * Runs all subsequent polls over a shared non-blocking transport.
+     * @param transport the transport, or null to use a pool of threads.
+     */
+    public void setTransport(SelectorTransport transport)
+    {
+        this.transport = transport;
+    }
+
+    /**
+     * Sets each gate's timeout from its response times, unless the fleet 
+     * gives it one. The caller saves the timeouts when it is done.
+     * @param timeouts the learned timeouts, or null to use each gate type's
+     * default.
+     */
+    public void setLearnedTimeouts(LearnedTimeouts timeouts)
+    {
+        this.timeouts = timeouts;
+    }
+
+    /**
+     * Limits the queries in flight, and how fast they start, on each 
+     * network segment.
+     * @param limiter the limiter, or null to only limit the whole fleet.
+     */
+    public void setLimiter(SegmentLimiter limiter)
+    {
+        this.limiter = limiter;
+    }
+
+    /**
+     * Queries every gate in the fleet and waits for all of them to finish.
+     * @param gates the fleet.
+     * @return one reading per gate, in the order of the gates argument.
+     */
+    public List<GateReading> poll(List<GateEntry> gates)
+    {
+        List<GateReading> results = new ArrayList<>(gates.size());
+        if (gates.isEmpty())
+        {
+            return results;
+        }
+        if (this.limiter != null)
+        {
+            return this.pollLimited(gates);
+        }
+        if (this.transport != null)
+        {
+            return this.pollNonBlocking(gates);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.min(this.concurrency, gates.size()),
+                FleetPoller.daemonThreads("fleet-poller"));
+        try
+        {
+            List<Future<GateReading>> pending = new ArrayList<>(gates.size());
+            for (GateEntry entry : gates)
+            {
+                pending.add(pool.submit(this.queryTask(entry)));
+            }
+            for (int i = 0; i < pending.size(); i++)
+            {
+                GateEntry entry = gates.get(i);
+                try
+                {
+                    results.add(pending.get(i).get());
+                }
+                catch (ExecutionException ex)
+                {
+                    System.err.println("***error: query of gate '" + entry.getIp()
+                            + "' failed: " + ex.getCause());
+                    results.add(FleetPoller.failed(entry));
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                    results.add(FleetPoller.failed(entry));
+                }
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Queries gates as their 'ip type [timeout]' lines are read, at most
+     * 'concurrency' at a time. Reading stops while that many are running,
+     * so a slow fleet holds back the input instead of piling it up. Each 
+     * reading is passed on as soon as its query finishes, so they come in
+     * order of completion, not the order of the lines. Lines that can't be
+     * parsed are reported and skipped, as in a fleet file. With a 
+     * {@link SegmentLimiter} gates whose segment is busy wait in a queue
+     * for it while reading carries on, and the segments take turns, so one
+     * busy segment only holds up the input once {@link #STREAM_BACKLOG}
+     * gates are waiting.
+     * @param reader source of 'ip type [timeout]' lines, read to the end.
+     * @param listener receives every reading, from the threads running the
+     * queries, so it must be thread safe.
+     * @return number of gates queried.
+     * @throws IOException if the reader fails. The queries already started
+     * are still finished and passed on first.
+     */
+    public int stream(BufferedReader reader, final ResultsListener listener) throws IOException
+    {
+        final Semaphore inFlight = new Semaphore(this.concurrency);
+        ExecutorService pool = null;
+        if (this.transport == null)
+        {
+            pool = Executors.newFixedThreadPool(this.concurrency, 
+                    FleetPoller.daemonThreads("fleet-stream"));
+        }
+        ResultsListener finished = new ResultsListener()
+        {
+            @Override
+            public void completed(GateReading reading)
+            {
+                try
+                {
+                    listener.completed(reading);
+                }
+                finally
+                {
+                    inFlight.release();
+                }
+            }
+        };
+        int started = 0;
+        int lineNumber = 0;
+        String line;
+        try
+        {
+            if (this.limiter != null)
+            {
+                started = this.streamLimited(reader, pool, inFlight, finished);
+            }
+            else
+            {
+                while ((line = reader.readLine()) != null)
+                {
+                    GateEntry entry = FleetPoller.parseLine(line, ++lineNumber);
+                    if (entry == null)
+                    {
+                        continue;
+                    }
+                    inFlight.acquire();
+                    this.start(entry, pool, finished);
+                    started++;
+                }
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            // Every permit is back once the last query has been passed on.
+            inFlight.acquireUninterruptibly(this.concurrency);
+            if (pool != null)
+            {
+                pool.shutdown();
+            }
+        }
+        return started;
+    }
+
+    /**
+     * Streams the gates through the limiter, queueing each gate for its 
+     * segment and starting the queues in turn.
+     * @return number of gates queried.
+     */
+    private int streamLimited(BufferedReader reader, ExecutorService pool, 
+            Semaphore inFlight, ResultsListener finished) 
+            throws IOException, InterruptedException
+    {
+        Map<String, ArrayDeque<GateEntry>> queues = new LinkedHashMap<>();
+        List<String> segments = new ArrayList<>();
+        int waiting = 0;
+        int next = 0;
+        int started = 0;
+        int lineNumber = 0;
+        boolean more = true;
+        while (more || waiting > 0)
+        {
+            // Only block on the input when no gate is waiting to start.
+            while (more && waiting < STREAM_BACKLOG && (waiting == 0 || reader.ready()))
+            {
+                String line = reader.readLine();
+                if (line == null)
+                {
+                    more = false;
+                    break;
+                }
+                GateEntry entry = FleetPoller.parseLine(line, ++lineNumber);
+                if (entry == null)
+                {
+                    continue;
+                }
+                String segment = this.limiter.segmentOf(entry.getIp());
+                ArrayDeque<GateEntry> queue = queues.get(segment);
+                if (queue == null)
+                {
+                    queue = new ArrayDeque<>();
+                    queues.put(segment, queue);
+                }
+                if (queue.isEmpty())
+                {
+                    segments.add(segment);
+                }
+                queue.add(entry);
+                waiting++;
+            }
+            if (waiting == 0)
+            {
+                continue;
+            }
+            inFlight.acquire();
+            GateEntry entry = null;
+            String segment = null;
+            synchronized (this.limiter)
+            {
+                long wait = SegmentLimiter.FULL;
+                // Round robin, so every segment gets its turn.
+                for (int tried = 0; tried < segments.size() && entry == null; tried++)
+                {
+                    int at = (next + tried) % segments.size();
+                    long due = this.limiter.tryAcquire(segments.get(at));
+                    if (due == 0L)
+                    {
+                        segment = segments.get(at);
+                        ArrayDeque<GateEntry> queue = queues.get(segment);
+                        entry = queue.poll();
+                        if (queue.isEmpty())
+                        {
+                            segments.remove(at);
+                            next = segments.isEmpty() ? 0 : at % segments.size();
+                        }
+                        else
+                        {
+                            next = (at + 1) % segments.size();
+                        }
+                    }
+                    wait = Math.min(wait, due);
+                }
+                if (entry == null)
+                {
+                    inFlight.release();
+                    if (more)
+                    {
+                        wait = Math.min(wait, TimeUnit.MILLISECONDS.toNanos(INPUT_CHECK));
+                    }
+                    this.limiter.await(wait);
+                    continue;
+                }
+            }
+            waiting--;
+            this.start(entry, pool, this.releasing(segment, finished));
+            started++;
+        }
+        return started;
+    }
+
+    /**
+     * @param line an 'ip type [timeout]' line.
+     * @param lineNumber where the line is in the input.
+     * @return the gate, or null if the line is blank, a comment, or can't 
+     * be parsed, which is reported.
+     */
+    private static GateEntry parseLine(String line, int lineNumber)
+    {
+        try
+        {
+            return GateEntry.parse(line);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            System.err.println("**warn: skipping input line " + lineNumber
+                    + ", " + ex.getMessage() + ".");
+            return null;
+        }
+    }
+
+    /**
+     * Starts one gate's query on the pool, or on the transport if there is
+     * no pool.
+     */
+    private void start(final GateEntry entry, ExecutorService pool, 
+            final ResultsListener listener)
+    {
+        if (pool == null)
+        {
+            this.buildGate(entry).readGate(this.transport, listener);
+            return;
+        }
+        pool.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                GateReading reading;
+                try
+                {
+                    reading = buildGate(entry).readGate();
+                }
+                catch (RuntimeException ex)
+                {
+                    System.err.println("***error: query of gate '" + entry.getIp()
+                            + "' failed: " + ex);
+                    reading = FleetPoller.failed(entry);
+                }
+                listener.completed(reading);
+            }
+        });
+    }
+
+    /**
+     * Starts every query on the transport, keeping at most 'concurrency' in
+     * flight, then waits for the last one to finish.
+     */
+    private List<GateReading> pollNonBlocking(List<GateEntry> gates)
+    {
+        final GateReading[] results = new GateReading[gates.size()];
+        final CountDownLatch done = new CountDownLatch(gates.size());
+        final Semaphore inFlight = new Semaphore(this.concurrency);
+        try
+        {
+            for (int i = 0; i < gates.size(); i++)
+            {
+                final int index = i;
+                final GateEntry entry = gates.get(i);
+                inFlight.acquire();
+                this.buildGate(entry).readGate(this.transport, new ResultsListener()
+                {
+                    @Override
+                    public void completed(GateReading reading)
+                    {
+                        try
+                        {
+                            results[index] = reading;
+                        }
+                        finally
+                        {
+                            inFlight.release();
+                            done.countDown();
+                        }
+                    }
+                });
+            }
+            done.await();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            for (int i = 0; i < results.length; i++)
+            {
+                if (results[i] == null)
+                {
+                    results[i] = FleetPoller.failed(gates.get(i));
+                }
+            }
+        }
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    /**
+     * Starts the gates segment by segment in turn, at most 'concurrency' in
+     * all and as many per segment as the limiter allows, then waits for the
+     * last one to finish.
+     */
+    private List<GateReading> pollLimited(List<GateEntry> gates)
+    {
+        final GateReading[] results = new GateReading[gates.size()];
+        final CountDownLatch done = new CountDownLatch(gates.size());
+        final Semaphore inFlight = new Semaphore(this.concurrency);
+        Map<String, ArrayDeque<Integer>> queues = new LinkedHashMap<>();
+        for (int i = 0; i < gates.size(); i++)
+        {
+            String segment = this.limiter.segmentOf(gates.get(i).getIp());
+            ArrayDeque<Integer> queue = queues.get(segment);
+            if (queue == null)
+            {
+                queue = new ArrayDeque<>();
+                queues.put(segment, queue);
+            }
+            queue.add(i);
+        }
+        List<String> segments = new ArrayList<>(queues.keySet());
+        ExecutorService pool = null;
+        if (this.transport == null)
+        {
+            pool = Executors.newFixedThreadPool(Math.min(this.concurrency, gates.size()),
+                    FleetPoller.daemonThreads("fleet-poller"));
+        }
+        try
+        {
+            int next = 0;
+            while (! segments.isEmpty())
+            {
+                inFlight.acquire();
+                int index = -1;
+                String segment = null;
+                synchronized (this.limiter)
+                {
+                    long wait = SegmentLimiter.FULL;
+                    // Round robin, so every segment gets its turn.
+                    for (int tried = 0; tried < segments.size() && index < 0; tried++)
+                    {
+                        int at = (next + tried) % segments.size();
+                        long due = this.limiter.tryAcquire(segments.get(at));
+                        if (due == 0L)
+                        {
+                            segment = segments.get(at);
+                            ArrayDeque<Integer> queue = queues.get(segment);
+                            index = queue.poll();
+                            if (queue.isEmpty())
+                            {
+                                segments.remove(at);
+                                next = segments.isEmpty() ? 0 : at % segments.size();
+                            }
+                            else
+                            {
+                                next = (at + 1) % segments.size();
+                            }
+                        }
+                        wait = Math.min(wait, due);
+                    }
+                    if (index < 0)
+                    {
+                        inFlight.release();
+                        this.limiter.await(wait);
+                        continue;
+                    }
+                }
+                final int slot = index;
+                this.start(gates.get(slot), pool, this.releasing(segment, new ResultsListener()
+                {
+                    @Override
+                    public void completed(GateReading reading)
+                    {
+                        try
+                        {
+                            results[slot] = reading;
+                        }
+                        finally
+                        {
+                            inFlight.release();
+                            done.countDown();
+                        }
+                    }
+                }));
+            }
+            done.await();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            if (pool != null)
+            {
+                pool.shutdownNow();
+            }
+        }
+        for (int i = 0; i < results.length; i++)
+        {
+            if (results[i] == null)
+            {
+                results[i] = FleetPoller.failed(gates.get(i));
+            }
+        }
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    /**
+     * @param segment segment the query was started on.
+     * @param listener receives the reading.
+     * @return a listener that frees the segment before passing the reading on.
+     */
+    private ResultsListener releasing(final String segment, final ResultsListener listener)
+    {
+        final SegmentLimiter segments = this.limiter;
+        return new ResultsListener()
+        {
+            @Override
+            public void completed(GateReading reading)
+            {
+                segments.release(segment);
+                listener.completed(reading);
+            }
+        };
+    }
+
+    private Callable<GateReading> queryTask(final GateEntry entry)
+    {
+        return new Callable<GateReading>()
+        {
+            @Override
+            public GateReading call()
+            {
+                return buildGate(entry).readGate();
+            }
+        };
+    }
+
+    /**
+     * @param entry the gate that couldn't be queried.
+     * @return a reading that records the failure.
+     */
+    static GateReading failed(GateEntry entry)
+    {
+        return new GateReading(entry.getIp(), entry.getType(), 
+                System.currentTimeMillis(), ReadingStatus.NO_RESPONSE, 0);
+    }
+
+    private CustomerGate buildGate(GateEntry entry)
+    {
+        CustomerGate gate = CustomerGate.getInstance(
+                entry.getType(), entry.getIp(), this.debug);
+        if (entry.getTimeout() > 0)
+        {
+            gate.setTimeoutMillis(entry.getTimeout());
+        }
+        else if (this.timeouts != null)
+        {
+            gate.setAdaptiveTimeout(this.timeouts.get(entry.getIp()));
+        }
+        return gate;
+    }
+
+    /**
+     * Builds daemon threads so an outstanding query never keeps the
+     * application from exiting.
+     * @param name prefix of the thread names.
+     * @return thread factory.
+     */
+    static ThreadFactory daemonThreads(final String name)
+    {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Polling;
+
+import Analysis.DeltaStage;
+import RFIDEquipment.CommandReply;
+import RFIDEquipment.CustomerGate;
+import RFIDEquipment.GateReading;
+import RFIDEquipment.ReadingStatus;
+import RFIDEquipment.SupportedQueryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the final counts of every gate in a fleet and resets its counters,
+ * all in parallel, so the day's totals of every branch end at the same 
+ * moment. Each gate is read and reset in one session on one connection, 
+ * so no patron is counted between the read and the reset, and a gate that 
+ * fails is tried again a few times.
+ *
+ * The gates are built and the threads started before the reset time, so
+ * the only work left when it comes is talking to the gates.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class FleetReset
+{
+    /** Default attempts at resetting each gate. */
+    public final static int DEFAULT_ATTEMPTS = 3;
+    /** Time between attempts at resetting a gate, in milliseconds. */
+    public final static long RETRY_DELAY = 250;
+    private final static List<SupportedQueryType> SESSION = Arrays.asList(
+            SupportedQueryType.CUSTOMER_COUNTS, SupportedQueryType.RESET_COUNTS);
+
+    /**
+     * How the reset of a gate turned out.
+     */
+    public enum Outcome
+    {
+        /** The gate acknowledged the reset. */
+        RESET,
+        /** The gate didn't acknowledge the reset on any attempt. */
+        FAILED,
+        /** No reset frame is known for the gate's make and model. */
+        UNSUPPORTED;
+    }
+
+    /**
+     * The final counts of one gate, and whether it was reset.
+     */
+    public final static class Result
+    {
+        private final GateEntry entry;
+        private final GateReading reading;
+        private final Outcome outcome;
+        private final ReadingStatus status;
+        private final int attempts;
+        private final long finished;
+
+        Result(GateEntry entry, GateReading reading, Outcome outcome, 
+                ReadingStatus status, int attempts, long finished)
+        {
+            this.entry    = entry;
+            this.reading  = reading;
+            this.outcome  = outcome;
+            this.status   = status;
+            this.attempts = attempts;
+            this.finished = finished;
+        }
+
+        /**
+         * @return the gate.
+         */
+        public GateEntry getEntry()
+        {
+            return entry;
+        }
+
+        /**
+         * @return counts read just before the first reset that was 
+         * acknowledged, or the last attempt's reading if there wasn't one.
+         * Null if the gate wasn't queried.
+         */
+        public GateReading getReading()
+        {
+            return reading;
+        }
+
+        /**
+         * @return how the reset turned out.
+         */
+        public Outcome getOutcome()
+        {
+            return outcome;
+        }
+
+        /**
+         * @return status of the last reset command sent, or null if none 
+         * was.
+         */
+        public ReadingStatus getStatus()
+        {
+            return status;
+        }
+
+        /**
+         * @return number of sessions with the gate.
+         */
+        public int getAttempts()
+        {
+            return attempts;
+        }
+
+        /**
+         * @return when the gate was done with, in milliseconds since the 
+         * epoch.
+         */
+        public long getFinished()
+        {
+            return finished;
+        }
+
+        /**
+         * @return the result as 'ip|in_count|out_count|outcome|attempts|'.
+         */
+        @Override
+        public String toString()
+        {
+            long in = reading == null ? -1 : reading.getIn();
+            long out = reading == null ? -1 : reading.getOut();
+            return entry.getIp() + "|" + in + "|" + out + "|" + outcome + "|" 
+                    + attempts + "|";
+        }
+    }
+
+    private final List<GateEntry> entries;
+    private final List<CustomerGate> gates;
+    private final int concurrency;
+    private final int attempts;
+    private volatile DeltaStage deltas;
+
+    /**
+     * @param fleet gates to reset.
+     * @param concurrency most gates talked to at the same time.
+     * @param attempts most sessions with each gate.
+     * @param debug true to build gates with debug output.
+     */
+    public FleetReset(List<GateEntry> fleet, int concurrency, int attempts, boolean debug)
+    {
+        if (concurrency < 1 || attempts < 1)
+        {
+            throw new IllegalArgumentException("concurrency and attempts must be at least 1");
+        }
+        this.entries     = new ArrayList<>(fleet);
+        this.gates       = new ArrayList<>(fleet.size());
+        this.concurrency = concurrency;
+        this.attempts    = attempts;
+        for (GateEntry entry : this.entries)
+        {
+            CustomerGate gate = CustomerGate.getInstance(entry.getType(), entry.getIp(), debug);
+            if (entry.getTimeout() > 0)
+            {
+                gate.setTimeoutMillis(entry.getTimeout());
+            }
+            this.gates.add(gate);
+        }
+    }
+
+    /**
+     * Flags each gate that's reset in the stage, so its next reading is
+     * taken as the traffic since the reset rather than a wrap.
+     * @param deltas stage of the gates' traffic, or null for none.
+     */
+    public void setDeltaStage(DeltaStage deltas)
+    {
+        this.deltas = deltas;
+    }
+
+    /**
+     * Resets every gate, waiting for the start time first.
+     * @param start when to start, in milliseconds since the epoch, or 0 to
+     * start now.
+     * @return the result of each gate, in fleet order.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public List<Result> run(long start) throws InterruptedException
+    {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(this.concurrency, 
+                this.concurrency, 0L, TimeUnit.MILLISECONDS, 
+                new LinkedBlockingQueue<Runnable>(), 
+                FleetPoller.daemonThreads("fleet-reset"));
+        pool.prestartAllCoreThreads();
+        final CountDownLatch go = new CountDownLatch(1);
+        List<Future<Result>> futures = new ArrayList<>(this.gates.size());
+        try
+        {
+            for (int i = 0; i < this.gates.size(); i++)
+            {
+                final GateEntry entry = this.entries.get(i);
+                final CustomerGate gate = this.gates.get(i);
+                futures.add(pool.submit(new Callable<Result>()
+                {
+                    @Override
+                    public Result call() throws InterruptedException
+                    {
+                        go.await();
+                        return reset(entry, gate);
+                    }
+                }));
+            }
+            long wait = start - System.currentTimeMillis();
+            if (wait > 0)
+            {
+                Thread.sleep(wait);
+            }
+            go.countDown();
+            List<Result> results = new ArrayList<>(futures.size());
+            for (int i = 0; i < futures.size(); i++)
+            {
+                try
+                {
+                    results.add(futures.get(i).get());
+                }
+                catch (ExecutionException ex)
+                {
+                    System.err.println("***error: reset of gate " + this.entries.get(i).getIp()
+                            + " failed, " + ex.getCause());
+                    results.add(new Result(this.entries.get(i), null, Outcome.FAILED, 
+                            null, 0, System.currentTimeMillis()));
+                }
+            }
+            return results;
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads and resets one gate, trying again until the reset is 
+     * acknowledged or the attempts run out.
+     */
+    private Result reset(GateEntry entry, CustomerGate gate) throws InterruptedException
+    {
+        if (CustomerGate.getQueryFrame(entry.getType(), SupportedQueryType.RESET_COUNTS) == null)
+        {
+            return new Result(entry, null, Outcome.UNSUPPORTED, null, 0, 
+                    System.currentTimeMillis());
+        }
+        GateReading reading = null;
+        ReadingStatus status = null;
+        for (int attempt = 1; attempt <= this.attempts; attempt++)
+        {
+            if (attempt > 1)
+            {
+                Thread.sleep(RETRY_DELAY);
+            }
+            List<CommandReply> replies = gate.runSession(SESSION);
+            GateReading counts = replies.get(0).getReading();
+            // Counts read before an earlier reset that may have worked 
+            // are the day's real totals, later ones aren't.
+            if (reading == null || ! reading.isValid())
+            {
+                reading = counts;
+            }
+            status = replies.get(1).getStatus();
+            if (replies.get(1).isAnswered())
+            {
+                DeltaStage stage = this.deltas;
+                if (stage != null)
+                {
+                    stage.markReset(entry.getIp());
+                }
+                return new Result(entry, reading, Outcome.RESET, status, attempt,
+                        System.currentTimeMillis());
+            }
+        }
+        return new Result(entry, reading, Outcome.FAILED, status, this.attempts,
+                System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Polling;
+
+import Network.GateIPv4;
+import RFIDEquipment.SupportedGateType;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * One gate in a fleet: its IP, make and model, and an optional timeout that
+ * overrides the gate type's default.
+ *
+ * Entries are written one per line as 'ip type [timeout]', where type is any
+ * name accepted by the '-t' switch and the timeout is in seconds, down to 
+ * the millisecond, for example:
+ * <pre>
+ * # IDY
+ * 10.2.19.113  3M
+ * # LON, give it a bit longer.
+ * 10.2.30.38   FEIGx2  2
+ * # HVY answers quickly.
+ * 10.2.44.12   FEIG    0.4
+ * </pre>
+ * A gate with a timeout here always uses it, rather than learning one from
+ * its response times.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class GateEntry
+{
+    private final String ip;
+    private final SupportedGateType type;
+    private final int timeout;
+
+    /**
+     * @param ip v4 IP of the gate.
+     * @param type make and model of the gate.
+     * @param timeout milliseconds to wait for the gate, or 0 for the gate 
+     * type's default.
+     */
+    public GateEntry(String ip, SupportedGateType type, int timeout)
+    {
+        this.ip      = ip;
+        this.type    = type;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Parses a single 'ip type [timeout]' line.
+     * @param line text of the entry.
+     * @return the entry, or null if the line is blank or a '#' comment.
+     * @throws IllegalArgumentException if the line can't be parsed.
+     */
+    public static GateEntry parse(String line)
+    {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#"))
+        {
+            return null;
+        }
+        String[] fields = trimmed.split("\\s+");
+        if (fields.length < 2 || fields.length > 3)
+        {
+            throw new IllegalArgumentException("expected 'ip type [timeout]' but got '"
+                    + trimmed + "'");
+        }
+        if (! new GateIPv4(fields[0]).isValid())
+        {
+            throw new IllegalArgumentException("invalid IP '" + fields[0] + "'");
+        }
+        SupportedGateType type = SupportedGateType.fromName(fields[1]);
+        if (type == null)
+        {
+            throw new IllegalArgumentException("invalid RFID gate type '"
+                    + fields[1] + "'");
+        }
+        int timeout = 0;
+        if (fields.length == 3)
+        {
+            timeout = GateEntry.parseTimeout(fields[2]);
+        }
+        return new GateEntry(fields[0], type, timeout);
+    }
+
+    /**
+     * Parses a timeout given in seconds, like '3' or '0.25'. As with '-s' 
+     * ever since it was added, 0 means the gate type's default timeout.
+     * @param seconds text of the timeout.
+     * @return the timeout in milliseconds, rounded up to whole milliseconds,
+     * or 0 for the default.
+     * @throws IllegalArgumentException if the text isn't 0 or a positive 
+     * number of seconds, or is longer than a day.
+     */
+    public static int parseTimeout(String seconds)
+    {
+        try
+        {
+            BigDecimal millis = new BigDecimal(seconds).movePointRight(3)
+                    .setScale(0, RoundingMode.CEILING);
+            if (millis.signum() >= 0 && millis.compareTo(BigDecimal.valueOf(86400000)) <= 0)
+            {
+                return millis.intValue();
+            }
+        }
+        catch (NumberFormatException ex)
+        {
+            // Reported below.
+        }
+        throw new IllegalArgumentException("invalid timeout '" + seconds + "'");
+    }
+
+    /**
+     * @return the IPv4 of the gate.
+     */
+    public String getIp()
+    {
+        return ip;
+    }
+
+    /**
+     * @return the make and model of the gate.
+     */
+    public SupportedGateType getType()
+    {
+        return type;
+    }
+
+    /**
+     * @return timeout in milliseconds, or 0 if the gate type's default is 
+     * used.
+     */
+    public int getTimeout()
+    {
+        return timeout;
+    }
+}
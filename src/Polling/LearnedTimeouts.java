@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Polling;
+
+import Network.AdaptiveTimeout;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The timeouts gates have learned from their response times, kept in a 
+ * properties file so they survive restarts. The file holds one 
+ * 'gate.{ip}=mean,deviation,samples' line per gate, and may set the 
+ * 'floor' and 'ceiling' of every timeout in milliseconds, and the safety
+ * 'factor' applied to response times, for example:
+ * <pre>
+ * floor=250
+ * ceiling=10000
+ * factor=2.0
+ * gate.10.2.19.113=48210,6120,1440
+ * </pre>
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class LearnedTimeouts
+{
+    private final static String GATE_PREFIX = "gate.";
+    private final Path file;
+    private final Properties settings;
+    private final int floor;
+    private final int ceiling;
+    private final double factor;
+    private final ConcurrentMap<String, AdaptiveTimeout> gates;
+
+    /**
+     * Reads the file if it exists.
+     * @param file where the timeouts are kept.
+     * @throws IOException if the file exists but can't be read.
+     * @throws IllegalArgumentException if the floor, ceiling or factor 
+     * aren't valid.
+     */
+    public LearnedTimeouts(Path file) throws IOException
+    {
+        this.file     = file;
+        this.settings = new Properties();
+        this.gates    = new ConcurrentHashMap<>();
+        if (Files.exists(file))
+        {
+            try (InputStream in = Files.newInputStream(file))
+            {
+                this.settings.load(in);
+            }
+        }
+        try
+        {
+            this.floor   = Integer.parseInt(this.settings.getProperty("floor", 
+                    String.valueOf(AdaptiveTimeout.DEFAULT_FLOOR)).trim());
+            this.ceiling = Integer.parseInt(this.settings.getProperty("ceiling", 
+                    String.valueOf(AdaptiveTimeout.DEFAULT_CEILING)).trim());
+            this.factor  = Double.parseDouble(this.settings.getProperty("factor", 
+                    String.valueOf(AdaptiveTimeout.DEFAULT_FACTOR)).trim());
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new IllegalArgumentException("invalid timeout settings in '"
+                    + file + "': " + ex.getMessage());
+        }
+        // Fail now rather than on the first gate.
+        new AdaptiveTimeout(this.floor, this.ceiling, this.factor);
+    }
+
+    /**
+     * Gets the learned timeout of a gate, picking up the saved estimate if
+     * there is one.
+     * @param ip the gate's IP.
+     * @return the gate's timeout, the same object every time.
+     */
+    public AdaptiveTimeout get(String ip)
+    {
+        AdaptiveTimeout timeout = this.gates.get(ip);
+        if (timeout == null)
+        {
+            AdaptiveTimeout created = new AdaptiveTimeout(this.floor, 
+                    this.ceiling, this.factor);
+            String saved = this.settings.getProperty(GATE_PREFIX + ip);
+            if (saved != null)
+            {
+                try
+                {
+                    created.restore(saved);
+                }
+                catch (IllegalArgumentException ex)
+                {
+                    System.err.println("**warn: ignoring the saved timeout of gate '" 
+                            + ip + "', " + ex.getMessage() + ".");
+                }
+            }
+            timeout = this.gates.putIfAbsent(ip, created);
+            if (timeout == null)
+            {
+                timeout = created;
+            }
+        }
+        return timeout;
+    }
+
+    /**
+     * Writes every gate's estimate back to the file. Gates in the file 
+     * that weren't used are kept as they were. The file is replaced in one
+     * step, so a crash part way through leaves the old one.
+     * @throws IOException if the file can't be written.
+     */
+    public synchronized void save() throws IOException
+    {
+        for (Map.Entry<String, AdaptiveTimeout> entry : this.gates.entrySet())
+        {
+            if (entry.getValue().getSamples() > 0)
+            {
+                this.settings.setProperty(GATE_PREFIX + entry.getKey(), 
+                        entry.getValue().toString());
+            }
+        }
+        Path parent = this.file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(parent, "timeouts", ".tmp");
+        try
+        {
+            try (OutputStream out = Files.newOutputStream(temporary))
+            {
+                this.settings.store(out, "Learned gate timeouts, see patroncount -h.");
+            }
+            Files.move(temporary, this.file, StandardCopyOption.REPLACE_EXISTING, 
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
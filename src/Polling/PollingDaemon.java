@@ -0,0 +1,541 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Polling;
+
+import Analysis.CountDelta;
+import Analysis.DeltaStage;
+import Analysis.DeltaStatus;
+import Analysis.TrafficAggregator;
+import Metrics.GateMetrics;
+import Metrics.MetricsRegistry;
+import Network.CircuitBreaker;
+import Network.SegmentLimiter;
+import Network.ConnectionPool;
+import Output.JdbcSink;
+import Output.ReadingEncoder;
+import RFIDEquipment.CustomerGate;
+import RFIDEquipment.GateReading;
+import Storage.TimeSeriesStore;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Long running alternative to querying gates one process at a time. The
+ * fleet is loaded once, the gates are built once, and each gate is then
+ * polled at a fixed rate until the process is stopped.
+ *
+ * Every poll writes one reading to the encoder, by default a line in the form
+ * 'timestamp|ip|in_count|out_count|', for example 
+ * '2018-10-22 13:00:00|10.2.19.113|1234|1220|'. Polls of the
+ * same gate never overlap, and the first poll of each gate is staggered
+ * across the interval so the whole fleet isn't queried in the same instant.
+ * Gates are queried over a {@link ConnectionPool} so each gate keeps one
+ * connection open between polls.
+ *
+ * With a {@link DeltaStage} the daemon writes the traffic since each gate's
+ * previous poll instead of the gate's running totals. Nothing is written for
+ * a gate's first successful poll since there's nothing to compare it to.
+ * Readings can also be kept in a {@link TimeSeriesStore}, and the traffic
+ * added up by branch and region in a {@link TrafficAggregator}.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class PollingDaemon
+{
+    /** Minutes between saves of the learned timeouts. */
+    public final static long SAVE_PERIOD = 5;
+    private final List<GateEntry> entries;
+    private final List<CustomerGate> gates;
+    private final ReadingEncoder out;
+    private final ConnectionPool pool;
+    private final ScheduledExecutorService scheduler;
+    private volatile DeltaStage deltas;
+    private volatile boolean writeDeltas;
+    private volatile TrafficAggregator aggregator;
+    private volatile TimeSeriesStore store;
+    private volatile JdbcSink sink;
+    private volatile LearnedTimeouts timeouts;
+    private volatile SegmentLimiter limiter;
+    // Polls waiting for room on their segment, guarded by the limiter.
+    private final Map<String, ArrayDeque<Runnable>> waiting;
+    private final List<CircuitBreaker> breakers;
+    private final List<GateMetrics> metrics;
+
+    /**
+     * Builds every gate in the fleet.
+     * @param fleet the gates to poll.
+     * @param concurrency maximum number of gates queried at the same time.
+     * @param out where readings are written.
+     * @param debug true to output debug information.
+     */
+    public PollingDaemon(List<GateEntry> fleet, int concurrency, ReadingEncoder out, boolean debug)
+    {
+        this.entries = new ArrayList<>(fleet);
+        this.gates   = new ArrayList<>(fleet.size());
+        this.out     = out;
+        this.pool    = new ConnectionPool();
+        this.breakers = new ArrayList<>();
+        this.metrics  = new ArrayList<>();
+        this.waiting  = new HashMap<>();
+        for (GateEntry entry : this.entries)
+        {
+            CustomerGate gate = CustomerGate.getInstance(
+                    entry.getType(), entry.getIp(), debug);
+            if (entry.getTimeout() > 0)
+            {
+                gate.setTimeoutMillis(entry.getTimeout());
+            }
+            gate.setConnectionPool(this.pool);
+            this.gates.add(gate);
+        }
+        this.scheduler = new ScheduledThreadPoolExecutor(concurrency,
+                FleetPoller.daemonThreads("polling-daemon"));
+    }
+
+    /**
+     * Writes the traffic between polls rather than the gates' counters.
+     * Must be called before {@link #start(int)}.
+     * @param deltas works out the traffic, or null to write the counters.
+     */
+    public void setDeltaStage(DeltaStage deltas)
+    {
+        this.deltas = deltas;
+        this.writeDeltas = deltas != null;
+    }
+
+    /**
+     * Adds the traffic of every poll to the aggregator's totals. Without a
+     * {@link DeltaStage} one is made when the daemon starts, but the 
+     * counters are still written rather than the traffic.
+     * Must be called before {@link #start(int)}.
+     * @param aggregator totals traffic is added to, or null for none.
+     */
+    public void setAggregator(TrafficAggregator aggregator)
+    {
+        this.aggregator = aggregator;
+    }
+
+    /**
+     * Appends every reading to a store as well as writing it out.
+     * Must be called before {@link #start(int)}.
+     * @param store where readings are kept, or null to not keep them.
+     */
+    public void setStore(TimeSeriesStore store)
+    {
+        this.store = store;
+    }
+
+    /**
+     * Writes every reading to a database as well as writing it out.
+     * Must be called before {@link #start(int)}, and the sink is closed
+     * by {@link #stop()}.
+     * @param sink where readings are written, or null to not write them.
+     */
+    public void setSink(JdbcSink sink)
+    {
+        this.sink = sink;
+    }
+
+    /**
+     * Records connection and query metrics of every gate in the registry.
+     * Must be called before {@link #start(int)}.
+     * @param registry where metrics are kept.
+     */
+    public void setMetrics(MetricsRegistry registry)
+    {
+        this.metrics.clear();
+        for (int i = 0; i < this.gates.size(); i++)
+        {
+            GateEntry entry = this.entries.get(i);
+            GateMetrics gateMetrics = registry.gate(entry.getIp(), 
+                    entry.getType().toString());
+            this.gates.get(i).setObserver(gateMetrics);
+            this.metrics.add(gateMetrics);
+        }
+        this.linkBreakers();
+    }
+
+    /**
+     * Stops polling gates that have failed too often in a row, and probes
+     * them now and then until they answer again. Polls of those gates 
+     * write {@link RFIDEquipment.ReadingStatus#CIRCUIT_OPEN} readings 
+     * without waiting on the network. Must be called before 
+     * {@link #start(int)}.
+     * @param threshold failures in a row before a gate stops being polled.
+     */
+    public void setCircuitBreakers(int threshold)
+    {
+        this.breakers.clear();
+        for (CustomerGate gate : this.gates)
+        {
+            CircuitBreaker breaker = new CircuitBreaker(threshold);
+            gate.setCircuitBreaker(breaker);
+            this.breakers.add(breaker);
+        }
+        this.linkBreakers();
+    }
+
+    /**
+     * Reports each gate's breaker in its metrics, whichever was set first.
+     */
+    private void linkBreakers()
+    {
+        if (this.metrics.size() == this.breakers.size())
+        {
+            for (int i = 0; i < this.metrics.size(); i++)
+            {
+                this.metrics.get(i).setCircuitBreaker(this.breakers.get(i));
+            }
+        }
+    }
+
+    /**
+     * Sets each gate's timeout from its response times, unless the fleet 
+     * gives it one. What has been learned is saved every few minutes and
+     * when the daemon stops. Must be called before {@link #start(int)}.
+     * @param timeouts the learned timeouts.
+     */
+    public void setLearnedTimeouts(LearnedTimeouts timeouts)
+    {
+        this.timeouts = timeouts;
+        for (int i = 0; i < this.gates.size(); i++)
+        {
+            GateEntry entry = this.entries.get(i);
+            if (entry.getTimeout() == 0)
+            {
+                this.gates.get(i).setAdaptiveTimeout(timeouts.get(entry.getIp()));
+            }
+        }
+    }
+
+    /**
+     * Limits the polls in flight, and how fast they start, on each network
+     * segment. A poll whose segment is full is queued until a poll on the
+     * segment finishes, and one waiting for the segment's rate is put off
+     * until then, so a busy segment never holds up the scheduler's threads
+     * or the polls of other segments.
+     * Must be called before {@link #start(int)}.
+     * @param limiter the limiter, or null to only limit the whole fleet.
+     */
+    public void setLimiter(SegmentLimiter limiter)
+    {
+        this.limiter = limiter;
+    }
+
+    /**
+     * Starts polling every gate in the fleet.
+     * @param interval time between polls of the same gate, in seconds.
+     */
+    public void start(int interval)
+    {
+        long period = TimeUnit.SECONDS.toMillis(interval);
+        if (this.aggregator != null && this.deltas == null)
+        {
+            this.deltas = new DeltaStage(period);
+        }
+        for (int i = 0; i < this.gates.size(); i++)
+        {
+            long stagger = period * i / this.gates.size();
+            this.scheduler.scheduleAtFixedRate(this.pollTask(i), stagger,
+                    period, TimeUnit.MILLISECONDS);
+        }
+        if (this.timeouts != null)
+        {
+            this.scheduler.scheduleWithFixedDelay(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    saveTimeouts();
+                }
+            }, SAVE_PERIOD, SAVE_PERIOD, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Saves the learned timeouts, if there are any.
+     */
+    private void saveTimeouts()
+    {
+        if (this.timeouts == null)
+        {
+            return;
+        }
+        try
+        {
+            this.timeouts.save();
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(PollingDaemon.class.getName()).log(Level.SEVERE,
+                    "unable to save learned timeouts.", ex);
+        }
+    }
+
+    /**
+     * Blocks until the daemon is stopped.
+     */
+    public void awaitTermination()
+    {
+        try
+        {
+            while (! this.scheduler.awaitTermination(1, TimeUnit.DAYS))
+            {
+                // Keep waiting, the daemon runs until it is stopped.
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops polling. Queries already running are allowed to finish.
+     */
+    public void stop()
+    {
+        this.scheduler.shutdown();
+        try
+        {
+            this.scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        this.pool.close();
+        if (this.store != null)
+        {
+            this.store.flush();
+        }
+        if (this.sink != null)
+        {
+            this.sink.close();
+        }
+        this.saveTimeouts();
+        synchronized (this.out)
+        {
+            try
+            {
+                this.out.flush();
+            }
+            catch (IOException ex)
+            {
+                Logger.getLogger(PollingDaemon.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    private Runnable pollTask(final int index)
+    {
+        final GateEntry entry = this.entries.get(index);
+        final AtomicBoolean due = new AtomicBoolean(false);
+        final Runnable attempt = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                SegmentLimiter segments = limiter;
+                if (segments == null)
+                {
+                    try
+                    {
+                        poll(index);
+                    }
+                    finally
+                    {
+                        due.set(false);
+                    }
+                    return;
+                }
+                String segment = segments.segmentOf(entry.getIp());
+                long wait;
+                synchronized (segments)
+                {
+                    wait = segments.tryAcquire(segment);
+                    if (wait == SegmentLimiter.FULL)
+                    {
+                        // Started again when a poll on the segment finishes.
+                        waiting(segment).add(this);
+                        return;
+                    }
+                }
+                if (wait > 0L)
+                {
+                    later(this, wait);
+                    return;
+                }
+                try
+                {
+                    poll(index);
+                }
+                finally
+                {
+                    due.set(false);
+                    release(segments, segment);
+                }
+            }
+        };
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                // A poll still waiting for its segment stands in for this one,
+                // so polls of the same gate still never overlap.
+                if (due.compareAndSet(false, true))
+                {
+                    attempt.run();
+                }
+            }
+        };
+    }
+
+    /**
+     * Queries one gate and passes its reading on.
+     * @param index the gate's place in the fleet.
+     */
+    private void poll(int index)
+    {
+        GateEntry entry = this.entries.get(index);
+        CustomerGate gate = this.gates.get(index);
+        // An exception would cancel this gate's schedule, so
+        // report it and carry on with the next poll.
+        try
+        {
+            GateReading reading = gate.readGate();
+            if (this.store != null)
+            {
+                try
+                {
+                    this.store.append(reading);
+                }
+                catch (IOException ex)
+                {
+                    Logger.getLogger(PollingDaemon.class.getName()).log(Level.SEVERE,
+                            "unable to store reading of gate " + entry.getIp() + ".", ex);
+                }
+            }
+            if (this.sink != null)
+            {
+                this.sink.accept(reading);
+            }
+            CountDelta delta = null;
+            if (this.deltas != null)
+            {
+                delta = this.deltas.accept(reading);
+                if (this.aggregator != null)
+                {
+                    this.aggregator.accept(delta);
+                }
+            }
+            if (! this.writeDeltas)
+            {
+                synchronized (this.out)
+                {
+                    this.out.encode(reading);
+                    this.out.flush();
+                }
+                return;
+            }
+            if (delta.getStatus() != DeltaStatus.BASELINE)
+            {
+                synchronized (this.out)
+                {
+                    this.out.encode(delta);
+                    this.out.flush();
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(PollingDaemon.class.getName()).log(Level.SEVERE,
+                    "unable to write reading of gate " + entry.getIp() + ".", ex);
+        }
+        catch (RuntimeException ex)
+        {
+            Logger.getLogger(PollingDaemon.class.getName()).log(Level.SEVERE,
+                    "poll of gate " + entry.getIp() + " failed.", ex);
+        }
+    }
+
+    /**
+     * @param segment the segment.
+     * @return the polls waiting for room on the segment. The caller must 
+     * hold the limiter's monitor.
+     */
+    private ArrayDeque<Runnable> waiting(String segment)
+    {
+        ArrayDeque<Runnable> queue = this.waiting.get(segment);
+        if (queue == null)
+        {
+            queue = new ArrayDeque<>();
+            this.waiting.put(segment, queue);
+        }
+        return queue;
+    }
+
+    /**
+     * Ends a poll on a segment and starts the next poll waiting for it.
+     * @param segments the limiter.
+     * @param segment the segment.
+     */
+    private void release(SegmentLimiter segments, String segment)
+    {
+        Runnable next;
+        synchronized (segments)
+        {
+            segments.release(segment);
+            next = this.waiting(segment).poll();
+        }
+        if (next != null)
+        {
+            this.later(next, 0L);
+        }
+    }
+
+    /**
+     * Runs a poll on the scheduler after a delay, unless it's stopping.
+     * @param task the poll.
+     * @param nanos the delay in nanoseconds.
+     */
+    private void later(Runnable task, long nanos)
+    {
+        try
+        {
+            this.scheduler.schedule(task, nanos, TimeUnit.NANOSECONDS);
+        }
+        catch (RejectedExecutionException ex)
+        {
+            // Stopping.
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Polling;
+
+import RFIDEquipment.CustomerGate;
+import RFIDEquipment.GateReading;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps each gate's latest reading for a while, so any number of callers 
+ * asking about the same gate cost the gate one query per time to live. 
+ * Most gates only take one connection at a time, so callers that would 
+ * otherwise query a gate at the same time get "Is another application 
+ * connected?" instead of counts.
+ *
+ * A caller that finds no fresh reading queries the gate itself, and callers
+ * that ask while that query is under way wait for it and share its reading
+ * rather than query the gate again. Failed readings are kept too, so a gate
+ * that's down isn't retried by every caller. The least recently used gates
+ * are dropped once the cache is full, but never one with a query under 
+ * way, or a caller arriving after it was dropped would query it again.
+ *
+ * Safe to use from any number of threads.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class ReadingCache
+{
+    /** Default time a reading is kept, in milliseconds. */
+    public final static long DEFAULT_TTL = 5000;
+    /** Default number of gates kept. */
+    public final static int DEFAULT_MAX_SIZE = 1024;
+    private final long ttl;
+    private final boolean debug;
+    private final Slots slots;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder shared;
+
+    /**
+     * What's known about one gate. Guarded by the cache's lock.
+     */
+    private static class Slot
+    {
+        private CustomerGate gate;
+        private GateReading reading;
+        private long expires;
+        private CompletableFuture<GateReading> pending;
+    }
+
+    /**
+     * The gates kept, least recently used first. Guarded by its own lock.
+     */
+    private static class Slots extends LinkedHashMap<String, Slot>
+    {
+        private final static long serialVersionUID = 1L;
+        private final int maxSize;
+
+        Slots(int maxSize)
+        {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Slot> eldest)
+        {
+            Iterator<Slot> oldest = this.values().iterator();
+            while (this.size() > this.maxSize && oldest.hasNext())
+            {
+                if (oldest.next().pending == null)
+                {
+                    oldest.remove();
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @param ttl milliseconds a reading is used for before the gate is 
+     * queried again.
+     * @param maxSize most gates kept, the least recently used are dropped
+     * after that.
+     * @param debug true to build gates with debug output.
+     */
+    public ReadingCache(long ttl, int maxSize, boolean debug)
+    {
+        if (ttl < 0 || maxSize < 1)
+        {
+            throw new IllegalArgumentException("time to live must be 0 or more,"
+                    + " and size at least 1");
+        }
+        this.ttl    = TimeUnit.MILLISECONDS.toNanos(ttl);
+        this.debug  = debug;
+        this.hits   = new LongAdder();
+        this.misses = new LongAdder();
+        this.shared = new LongAdder();
+        this.slots  = new Slots(maxSize);
+    }
+
+    /**
+     * Gets a gate's reading, querying the gate only if there's no fresh
+     * reading and no query of it under way.
+     * @param entry the gate.
+     * @return the gate's reading, which may be up to the time to live old.
+     */
+    public GateReading get(GateEntry entry)
+    {
+        String key = entry.getIp() + " " + entry.getType().name();
+        CompletableFuture<GateReading> pending;
+        Slot slot;
+        synchronized (this.slots)
+        {
+            slot = this.slots.get(key);
+            boolean added = slot == null;
+            if (added)
+            {
+                slot = new Slot();
+            }
+            if (slot.pending != null)
+            {
+                this.shared.increment();
+                pending = slot.pending;
+                slot = null;
+            }
+            else if (slot.reading != null && slot.expires - System.nanoTime() > 0)
+            {
+                this.hits.increment();
+                return slot.reading;
+            }
+            else
+            {
+                this.misses.increment();
+                if (slot.gate == null)
+                {
+                    slot.gate = CustomerGate.getInstance(entry.getType(), 
+                            entry.getIp(), this.debug);
+                    if (entry.getTimeout() > 0)
+                    {
+                        slot.gate.setTimeoutMillis(entry.getTimeout());
+                    }
+                }
+                pending = new CompletableFuture<>();
+                slot.pending = pending;
+                if (added)
+                {
+                    // Added with its query under way, so it can't be dropped.
+                    this.slots.put(key, slot);
+                }
+            }
+        }
+        if (slot == null)
+        {
+            return ReadingCache.await(pending);
+        }
+        GateReading reading;
+        try
+        {
+            reading = slot.gate.readGate();
+        }
+        catch (RuntimeException | Error ex)
+        {
+            synchronized (this.slots)
+            {
+                slot.pending = null;
+            }
+            pending.completeExceptionally(ex);
+            throw ex;
+        }
+        synchronized (this.slots)
+        {
+            slot.pending = null;
+            slot.reading = reading;
+            slot.expires = System.nanoTime() + this.ttl;
+        }
+        pending.complete(reading);
+        return reading;
+    }
+
+    /**
+     * Waits for another caller's query of the gate.
+     */
+    private static GateReading await(CompletableFuture<GateReading> pending)
+    {
+        boolean interrupted = false;
+        try
+        {
+            while (true)
+            {
+                try
+                {
+                    return pending.get();
+                }
+                catch (InterruptedException ex)
+                {
+                    interrupted = true;
+                }
+                catch (ExecutionException ex)
+                {
+                    if (ex.getCause() instanceof Error)
+                    {
+                        throw (Error) ex.getCause();
+                    }
+                    throw (RuntimeException) ex.getCause();
+                }
+            }
+        }
+        finally
+        {
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return number of gates kept.
+     */
+    public int size()
+    {
+        synchronized (this.slots)
+        {
+            return this.slots.size();
+        }
+    }
+
+    /**
+     * @return calls answered with a kept reading.
+     */
+    public long getHits()
+    {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return calls that queried the gate.
+     */
+    public long getMisses()
+    {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return calls that waited for another caller's query of the gate.
+     */
+    public long getShared()
+    {
+        return this.shared.sum();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package RFIDEquipment;
+
+import Network.FrameDecoder;
+import Network.IOSocket;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A codec whose settings are all fixed when it is built. Subclasses pass 
+ * their settings, including the queries they support, to the constructor 
+ * and build the formatter. Frames can also be added later from a file, see 
+ * {@link GateCodecs#loadQueryFrames(java.lang.String)}.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public abstract class BasicGateCodec implements GateCodec
+{
+    private final SupportedGateType type;
+    private final String[] names;
+    private final int port;
+    private final int timeout;
+    private final long counterRange;
+    private final FrameDecoder decoder;
+    private final boolean pipelined;
+    // Replaced, never changed, so it can be read without a lock.
+    private volatile Map<SupportedQueryType, ByteBuffer> frames;
+
+    /**
+     * @param type make and model of gate.
+     * @param names names accepted by the '-t' switch.
+     * @param port TCP port of the gate, or 0 if it isn't queried over the 
+     * network.
+     * @param timeout default time to wait for a reply, in milliseconds.
+     * @param counterRange number of values the counters hold before they wrap.
+     * @param decoder knows how long reply frames are, or null if the gate
+     * isn't queried over the network.
+     * @param pipelined true if commands can be sent all at once.
+     */
+    protected BasicGateCodec(SupportedGateType type, String[] names, int port,
+            int timeout, long counterRange, FrameDecoder decoder, boolean pipelined)
+    {
+        this(type, names, port, timeout, counterRange, decoder, pipelined, 
+                Collections.<SupportedQueryType, String>emptyMap());
+    }
+
+    /**
+     * @param type make and model of gate.
+     * @param names names accepted by the '-t' switch.
+     * @param port TCP port of the gate, or 0 if it isn't queried over the 
+     * network.
+     * @param timeout default time to wait for a reply, in milliseconds.
+     * @param counterRange number of values the counters hold before they wrap.
+     * @param decoder knows how long reply frames are, or null if the gate
+     * isn't queried over the network.
+     * @param pipelined true if commands can be sent all at once.
+     * @param queries the queries the gate supports, each with the bytes 
+     * sent to the gate as a string of hex digits.
+     */
+    protected BasicGateCodec(SupportedGateType type, String[] names, int port,
+            int timeout, long counterRange, FrameDecoder decoder, boolean pipelined,
+            Map<SupportedQueryType, String> queries)
+    {
+        this.type         = type;
+        this.names        = names.clone();
+        this.port         = port;
+        this.timeout      = timeout;
+        this.counterRange = counterRange;
+        this.decoder      = decoder;
+        this.pipelined    = pipelined;
+        Map<SupportedQueryType, ByteBuffer> initial = new EnumMap<>(SupportedQueryType.class);
+        for (Map.Entry<SupportedQueryType, String> query : queries.entrySet())
+        {
+            initial.put(query.getKey(), BasicGateCodec.readOnly(
+                    IOSocket.hexStringToByteArray(query.getValue())));
+        }
+        this.frames       = initial;
+    }
+
+    /**
+     * Adds or replaces a query the gate supports.
+     * @param query the query.
+     * @param frame bytes sent to the gate.
+     */
+    final synchronized void putQueryFrame(SupportedQueryType query, byte[] frame)
+    {
+        Map<SupportedQueryType, ByteBuffer> copy = new EnumMap<>(this.frames);
+        copy.put(query, BasicGateCodec.readOnly(frame));
+        this.frames = copy;
+    }
+
+    /**
+     * @param frame bytes sent to the gate.
+     * @return a read only copy of the bytes.
+     */
+    private static ByteBuffer readOnly(byte[] frame)
+    {
+        return ByteBuffer.wrap(frame.clone()).asReadOnlyBuffer();
+    }
+
+    @Override
+    public SupportedGateType getType()
+    {
+        return this.type;
+    }
+
+    @Override
+    public String[] getNames()
+    {
+        return this.names.clone();
+    }
+
+    @Override
+    public int getPort()
+    {
+        return this.port;
+    }
+
+    @Override
+    public int getTimeout()
+    {
+        return this.timeout;
+    }
+
+    @Override
+    public long getCounterRange()
+    {
+        return this.counterRange;
+    }
+
+    @Override
+    public ByteBuffer getQueryFrame(SupportedQueryType query)
+    {
+        ByteBuffer frame = this.frames.get(query);
+        // Each caller gets its own position and limit.
+        return frame == null ? null : frame.duplicate();
+    }
+
+    @Override
+    public FrameDecoder getFrameDecoder()
+    {
+        return this.decoder;
+    }
+
+    @Override
+    public boolean isPipelined()
+    {
+        return this.pipelined;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package RFIDEquipment;
+
+import Network.IOSocket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The gate's reply to one command of a session.
+ * @see CustomerGate#runSession(java.util.List)
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public final class CommandReply
+{
+    private final SupportedQueryType command;
+    private final ReadingStatus status;
+    private final byte[] response;
+    private final GateReading reading;
+
+    /**
+     * @param command the command that was sent.
+     * @param status {@link ReadingStatus#OK} if the whole reply arrived.
+     * @param response bytes of the reply, from its position to its limit.
+     * @param reading the counts, if the command was for counts.
+     */
+    CommandReply(SupportedQueryType command, ReadingStatus status, 
+            ByteBuffer response, GateReading reading)
+    {
+        this.command  = command;
+        this.status   = status;
+        this.response = Arrays.copyOfRange(response.array(), 
+                response.position(), response.limit());
+        this.reading  = reading;
+    }
+
+    /**
+     * @return the command that was sent.
+     */
+    public SupportedQueryType getCommand()
+    {
+        return command;
+    }
+
+    /**
+     * @return {@link ReadingStatus#OK} if the whole reply arrived, 
+     * otherwise why it didn't.
+     */
+    public ReadingStatus getStatus()
+    {
+        return status;
+    }
+
+    /**
+     * @return true if the whole reply arrived.
+     */
+    public boolean isAnswered()
+    {
+        return status == ReadingStatus.OK;
+    }
+
+    /**
+     * @return a copy of the bytes the gate replied with.
+     */
+    public byte[] getResponse()
+    {
+        return Arrays.copyOf(response, response.length);
+    }
+
+    /**
+     * @return the counts for a {@link SupportedQueryType#CUSTOMER_COUNTS}
+     * command, or null for other commands.
+     */
+    public GateReading getReading()
+    {
+        return reading;
+    }
+
+    /**
+     * @return the counts as 'in|out|' for a count command, otherwise the 
+     * reply in hex, or the status if there was no reply.
+     */
+    @Override
+    public String toString()
+    {
+        if (reading != null)
+        {
+            return reading.toString();
+        }
+        if (response.length == 0)
+        {
+            return status.toString();
+        }
+        return IOSocket.toHexString(response, response.length);
+    }
+}
@@ -16,43 +16,144 @@
  */
 package RFIDEquipment;
 
+import Network.IOSocket;
+import java.nio.ByteBuffer;
+
 /**
  * Each gate reports using different responses and each response needs to be
  * formatted into a standard format that the database at EPL can consume. 
  * These classes do that job.
  * 
+ * Formatters hold no shared state, and a new one is built for every gate so
+ * each gate may carry its own debug setting.
+ * 
+ * Counters are read directly from the binary response frame with 
+ * {@link #decode(java.nio.ByteBuffer, long[])}. The older string form of 
+ * {@link #format(java.lang.String)} is still accepted, and is converted to a
+ * frame before decoding.
+ * 
  * @author Andrew Nisbet andrew.nisbet@epl.ca
  * @version 1.0
  * @since   2018-10-22
  */
 public abstract class CustomerCountFormatter implements ResultsFormatter
 {
-    private static ResultsFormatter instance;
-    private static boolean DEBUG;
+    protected final SupportedGateType type;
+    protected final boolean debug;
+    
+    /**
+     * @param type make and model of gate the formatter reads.
+     * @param debug true if the formatter should output debug information.
+     */
+    protected CustomerCountFormatter(SupportedGateType type, boolean debug)
+    {
+        this.type  = type;
+        this.debug = debug;
+    }
     
+    /**
+     * Builds a new formatter for the requested make and model of gate, 
+     * with the gate's {@link GateCodec}.
+     * @param gate make and model of the gate.
+     * @param debug true to output debug information.
+     * @return new formatter.
+     */
     public static ResultsFormatter getInstance(SupportedGateType gate, boolean debug)
     {
-        DEBUG = debug;
-        
-        switch (gate)
+        GateCodec codec = GateCodecs.forType(gate);
+        if (codec == null)
+        {
+            throw new UnsupportedOperationException("***error, unsupported "
+                    + "output formatter type requiested.");
+        }
+        return codec.newFormatter(debug);
+    }
+    
+    /**
+     * Converts the string of hex bytes into a frame, decodes it, and 
+     * formats the counters.
+     * 
+     * @param message String of bytes received from the gate.
+     * @return 'in|out|', or '-1|-1|' if the message isn't a valid response.
+     */
+    @Override
+    public String format(String message)
+    {
+        String result = "-1|-1|";
+        try
+        {
+            if (this.debug)
+            {
+                System.err.println("count data recv'd: '" + message + "'");
+            }
+            // If there is another application connected to the port, you won't get
+            // any data, because someone else is hogging the connection so test if 
+            // you get any data back.
+            if (message.length() == 0)
+            {
+                return result;
+            }
+            long[] counters = new long[MAX_COUNTERS];
+            ByteBuffer frame = ByteBuffer.wrap(IOSocket.hexStringToByteArray(message));
+            result = this.format(counters, this.decode(frame, counters));
+        } 
+        catch (NullPointerException ex)
+        {
+            if (this.debug)
+            {
+                System.err.println("count data recv'd: 'null'");
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Adds up the in and out counters of every detector.
+     * 
+     * @param counters in-count, out-count pairs.
+     * @param count number of counters, or -1 if decoding failed.
+     * @return 'in|out|', or '-1|-1|' if there are no counters.
+     */
+    @Override
+    public String format(long[] counters, int count)
+    {
+        if (count < 2)
+        {
+            return "-1|-1|";
+        }
+        long inCount = 0;
+        long outCount = 0;
+        for (int i = 0; i + 1 < count; i += 2)
+        {
+            inCount += counters[i];
+            outCount += counters[i + 1];
+        }
+        // or more like patroncount: 'in|out|'
+        return String.valueOf(inCount) + "|" + String.valueOf(outCount) + "|";
+    }
+    
+    @Override
+    public GateReading read(String gate, ByteBuffer frame, long[] counters, 
+            long timestamp, long latency)
+    {
+        int count = this.decode(frame, counters);
+        if (count < 2)
         {
-            case _3M_9100_:
-                instance = new ThreeMCustomerCountFormatter();
-                break;
-            case _FEIG_ID_ISC_LR2500_B_:
-                instance = new FeigCustomerCountFormatter();
-                break;
-            case _FEIG_ID_ISC_LR2500_B_DUAL_AISLE_:
-                instance = new FeigCustomerCountDualAisleFormatter();
-                break;
-            case _DUMMY_:
-                instance = new DummyCustomerCountFormatter();
-                break;
-            default:
-                throw new UnsupportedOperationException("***error, unsupported "
-                        + "output formatter type requiested.");
+            return new GateReading(gate, this.type, timestamp, 
+                    ReadingStatus.NO_RESPONSE, latency);
         }
-        return instance;
+        return new GateReading(gate, this.type, timestamp, counters, count, latency);
+    }
+    
+    /**
+     * Reads an unsigned 32 bit big-endian counter.
+     * @param frame response frame.
+     * @param offset byte offset of the counter from the start of the frame.
+     * @return value of the counter.
+     */
+    protected static long counter(ByteBuffer frame, int offset)
+    {
+        return frame.getInt(frame.position() + offset) & 0xffffffffL;
     }
     
     /**
@@ -60,8 +161,13 @@ public abstract class CustomerCountFormatter implements ResultsFormatter
      * a gate is shown to be offline, or if you need results to be output even
      * if the gate can't be reached.
      */
-    private static class DummyCustomerCountFormatter extends CustomerCountFormatter
+    static class DummyCustomerCountFormatter extends CustomerCountFormatter
     {
+        DummyCustomerCountFormatter(SupportedGateType type, boolean debug)
+        {
+            super(type, debug);
+        }
+        
         /**
          * If the message string is empty the default output is '-1|-1|'. If 
          * the message is not empty the message itself is output. Essentially
@@ -80,7 +186,7 @@ public abstract class CustomerCountFormatter implements ResultsFormatter
             try
             {
                 // Return the count.
-                if (DEBUG)
+                if (this.debug)
                 {
                     System.err.println("count data recv'd: '" + message + "'");
                 }
@@ -93,93 +199,69 @@ public abstract class CustomerCountFormatter implements ResultsFormatter
             } 
             catch (NullPointerException ex)
             {
-                if (DEBUG)
+                if (this.debug)
                 {
                     System.err.println("count data recv'd: 'null'");
                 }
             }
             return result;
         }
+        
+        /**
+         * Dummy gates never receive a frame.
+         * @return -1 always.
+         */
+        @Override
+        public int decode(ByteBuffer frame, long[] counters)
+        {
+            return -1;
+        }
     }
     
     /**
-     * Instance of a 3M 9100 gate formatter.
+     * Instance of a 3M 9100 gate formatter. The out count is the low 28 bits
+     * of bytes 5 to 8, and the in count the low 28 bits of bytes 9 to 12.
      */
-    private static class ThreeMCustomerCountFormatter extends CustomerCountFormatter
+    static class ThreeMCustomerCountFormatter extends CustomerCountFormatter
     {
+        ThreeMCustomerCountFormatter(SupportedGateType type, boolean debug)
+        {
+            super(type, debug);
+        }
+        
         @Override
-        public String format(String message)
+        public int decode(ByteBuffer frame, long[] counters)
         {
-            String result = "-1|-1|";
-            try
-            {
-                // Return the count.
-                if (DEBUG)
-                {
-                    System.err.println("count data recv'd: '" + message + "'");
-                }
-                // If there is another application connected to the port, you won't get
-                // any data, because someone else is hogging the connection so test if 
-                // you get any data back.
-                if (message.length() == 0)
-                {
-                    return result;
-                }
-                long outCount = Long.parseLong(message.substring(11, 18), 16);
-                long inCount = Long.parseLong(message.substring(19, 26), 16);
-                // or more like patroncount: 'in|out|'
-                result = String.valueOf(inCount) + "|" + String.valueOf(outCount) + "|";
-            } 
-            catch (NullPointerException ex)
+            if (frame.remaining() < 13)
             {
-                if (DEBUG)
-                {
-                    System.err.println("count data recv'd: 'null'");
-                }
+                return -1;
             }
-            return result;
+            counters[0] = counter(frame, 9) & 0x0fffffffL;
+            counters[1] = counter(frame, 5) & 0x0fffffffL;
+            return 2;
         }
     }
     
     /**
      * Instance of a FEIG single-aisle gate formatter.
      */
-    private static class FeigCustomerCountFormatter extends CustomerCountFormatter
+    static class FeigCustomerCountFormatter extends CustomerCountFormatter
     {
+        FeigCustomerCountFormatter(SupportedGateType type, boolean debug)
+        {
+            super(type, debug);
+        }
+        
         @Override
-        public String format(String message)
+        public int decode(ByteBuffer frame, long[] counters)
         {
-            String result = "-1|-1|";
-            try
-            {
-                // If there is another application connected to the port, you won't get
-                // any data, because someone else is hogging the connection so test if 
-                // you get any data back.
-                if (message.length() == 0)
-                {
-                    return result;
-                }
-                else
-                {
-                    // Display the count.
-                    if (DEBUG)
-                    {
-                        System.err.println("count data recv'd:" + message);
-                    }
-                    long inCount = Long.parseLong(message.substring(24, 32), 16);
-                    long outCount = Long.parseLong(message.substring(32, 40), 16);
-                    // or more like patroncount: 'in|out|'
-                    result = String.valueOf(inCount) + "|" + String.valueOf(outCount) + "|";
-                }
-            } 
-            catch (NullPointerException ex)
+            if (frame.remaining() < 20)
             {
-                if (DEBUG)
-                {
-                    System.err.println("count data recv'd: 'null'");
-                }
+                return -1;
             }
-            return result;
+            counters[0] = counter(frame, 12);
+            counters[1] = counter(frame, 16);
+            return 2;
         }
     }
     
@@ -190,55 +272,34 @@ public abstract class CustomerCountFormatter implements ResultsFormatter
      * See {@linkplain http://ilswiki.epl.ca/index.php/Bibliotheca_gate_hacking#People_Counter_LON_gates}
      * for more details on how this gate reports values.
      */
-    private static class FeigCustomerCountDualAisleFormatter extends CustomerCountFormatter
+    static class FeigCustomerCountDualAisleFormatter extends CustomerCountFormatter
     {
+        FeigCustomerCountDualAisleFormatter(SupportedGateType type, boolean debug)
+        {
+            super(type, debug);
+        }
+        
         @Override
-        public String format(String message)
+        public int decode(ByteBuffer frame, long[] counters)
         {
-            String result = "-1|-1|";
-            try
-            {
-                // If there is another application connected to the port, you won't get
-                // any data, because someone else is hogging the connection so test if 
-                // you get any data back.
-                if (message.length() == 0)
-                {
-                    return result;
-                }
-                else
-                {
-                    // Display the count.
-                    if (DEBUG)
-                    {
-                        System.err.println("count data recv'd:" + message);
-                    }
-                    // 02 00 20 00 9F 00 02 00 18 01 77 00 [00 00 0D 13] [00 00 14 B0] [00 00 11 8A] [00 00 11 E0] EA EB 81 A3 OK
-                    //
-                    //Radar Detector 1 Counter 1
-                    //Radar Detector 1 Counter 2
-                    //Radar Detector 2 Counter 1
-                    //Radar Detector 2 Counter 2
-                    long inCountOne = Long.parseLong(message.substring(24, 32), 16);
-                    long outCountOne = Long.parseLong(message.substring(32, 40), 16);
-                    // Second aisle
-                    long inCountTwo = Long.parseLong(message.substring(40, 48), 16);
-                    long outCountTwo = Long.parseLong(message.substring(48, 56), 16);
-                    // The count on the display is the sum of inCountOne and inCountTwo
-                    // the out count on the display is sum of outCountOne and outCountTwo.
-                    long inCount = inCountOne + inCountTwo;
-                    long outCount = outCountOne + outCountTwo;
-                    // or more like patroncount: 'in|out|'
-                    result = String.valueOf(inCount) + "|" + String.valueOf(outCount) + "|";
-                }
-            } 
-            catch (NullPointerException ex)
+            if (frame.remaining() < 28)
             {
-                if (DEBUG)
-                {
-                    System.err.println("count data recv'd: 'null'");
-                }
+                return -1;
             }
-            return result;
+            // 02 00 20 00 9F 00 02 00 18 01 77 00 [00 00 0D 13] [00 00 14 B0] [00 00 11 8A] [00 00 11 E0] EA EB 81 A3 OK
+            //
+            //Radar Detector 1 Counter 1
+            //Radar Detector 1 Counter 2
+            //Radar Detector 2 Counter 1
+            //Radar Detector 2 Counter 2
+            counters[0] = counter(frame, 12);
+            counters[1] = counter(frame, 16);
+            // Second aisle
+            counters[2] = counter(frame, 20);
+            counters[3] = counter(frame, 24);
+            // The count on the display is the sum of inCountOne and inCountTwo
+            // the out count on the display is sum of outCountOne and outCountTwo.
+            return 4;
         }
     }
 }
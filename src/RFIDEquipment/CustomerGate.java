@@ -16,11 +16,21 @@
  */
 package RFIDEquipment;
 
+import Network.AdaptiveTimeout;
+import Network.CircuitBreaker;
+import Network.ConnectionObserver;
+import Network.ConnectionPool;
+import Network.FrameDecoder;
 import Network.IOSocket;
 import Network.GateIPv4;
-import java.util.concurrent.TimeUnit;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import Network.ResponseHandler;
+import Network.SelectorTransport;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import patroncount.Patroncount;
 
 /**
@@ -29,55 +39,124 @@ import patroncount.Patroncount;
  * request for a given make/model of gate and builds a working instance, ready
  * for running queries against.
  * 
+ * Each call to {@link #getInstance(RFIDEquipment.SupportedGateType, java.lang.String, boolean)}
+ * builds a new gate with its own formatter and debug setting, so gates may be
+ * queried in parallel from different threads. A single gate runs one query
+ * at a time, reusing its response buffer and counters from one query to the
+ * next.
+ * 
+ * Queries produce a {@link GateReading}, and {@link #queryGate()} renders it
+ * in the original 'in|out|' form.
+ * 
+ * What is sent to each make and model, and how its replies are read, comes
+ * from its {@link GateCodec}, so supporting a new model means writing a 
+ * codec rather than changing this class.
+ * 
  * @author Andrew Nisbet andrew.nisbet@epl.ca
  * @version 1.0
  * @since   2018-10-22
  */
 public abstract class CustomerGate
 {
-    private static CustomerGate instance;
-    private static boolean DEBUG;
+    protected final SupportedGateType type;
+    protected final boolean debug;
+    protected ConnectionPool pool;
+    protected ConnectionObserver observer;
+    protected AdaptiveTimeout adaptive;
+    protected CircuitBreaker breaker;
+    protected int timeout;
+    protected final ByteBuffer responseBuffer;
+    protected final long[] counters;
+    
+    /**
+     * @param codec protocol of the gate's make and model.
+     * @param debug true if the gate should output debug information.
+     */
+    protected CustomerGate(GateCodec codec, boolean debug)
+    {
+        this.type           = codec.getType();
+        this.debug          = debug;
+        this.timeout        = codec.getTimeout();
+        this.responseBuffer = ByteBuffer.allocate(500);
+        this.counters       = new long[ResultsFormatter.MAX_COUNTERS];
+    }
     
+    /**
+     * Builds a new gate of the requested make and model.
+     * @param gate make and model of the gate.
+     * @param gateIP v4 IP of the gate.
+     * @param debug true to output debug information.
+     * @return a new gate ready to be queried.
+     */
     public static CustomerGate getInstance(
             SupportedGateType gate, 
             String gateIP, 
             boolean debug)
     {
-        DEBUG = debug;
-        if (instance == null)
+        GateCodec codec = GateCodecs.forType(gate);
+        if (codec == null)
         {
-            switch (gate)
-            {
-                case _3M_9100_:
-                    instance = new ThreeMGate(gateIP);
-                    break;
-                case _FEIG_ID_ISC_LR2500_B_:
-                    instance = new FeigGate(gateIP);
-                    break;
-                case _FEIG_ID_ISC_LR2500_B_DUAL_AISLE_:
-                    instance = new FeigGateDualAisle(gateIP);
-                    break;
-                case _DUMMY_:
-                    instance = new DummyGate(gateIP);
-                    break;
-                default:
-                    System.err.println("***error, customer"
-                            + " gate type not supported.");
-                    Patroncount.displayHelp(1);
-            }
+            System.err.println("***error, customer"
+                    + " gate type not supported.");
+            Patroncount.displayHelp(1);
+            return null;
         }
-        return instance;
+        if (codec.getFrameDecoder() == null)
+        {
+            return new DummyGate(gateIP, codec, debug);
+        }
+        return new NetworkGate(gateIP, codec, debug);
     }
     
     /**
      * The older 3M gates need some time to fetch counts internally then relay
      * them. The sweet spot for the older gates is 3 seconds, pretty slow. If
      * after 3 seconds the gate fails to respond, consider it not connected 
-     * via the network and move onto another gate.
+     * via the network and move onto another gate. Gates that answer sooner
+     * are read as soon as their whole response arrives, so this is only an 
+     * upper bound.
      * @param seconds duration before considering a gate not connected via the
      * network.
      */
-    public abstract void setTimeout(int seconds);
+    public void setTimeout(int seconds)
+    {
+        this.setTimeoutMillis(seconds * 1000);
+    }
+    
+    /**
+     * Same as {@link #setTimeout(int)} but in milliseconds. If the gate 
+     * learns its timeout this is only used until it has learned enough.
+     * @param millis duration before considering a gate not connected via 
+     * the network.
+     */
+    public void setTimeoutMillis(int millis)
+    {
+        this.timeout = millis;
+    }
+    
+    /**
+     * @return how long the next query waits for the gate's response, in 
+     * milliseconds.
+     */
+    public int getTimeout()
+    {
+        if (this.adaptive != null)
+        {
+            return this.adaptive.getTimeout(this.timeout);
+        }
+        return this.timeout;
+    }
+    
+    /**
+     * Sets the timeout of subsequent queries from the gate's past response 
+     * times, which are learned as it is queried.
+     * @param adaptive the gate's response times, or null to always use the
+     * fixed timeout.
+     */
+    public void setAdaptiveTimeout(AdaptiveTimeout adaptive)
+    {
+        this.adaptive = adaptive;
+    }
     
     /**
      * Sets the type of query we will ask the gate. The default for all gates
@@ -89,6 +168,8 @@ public abstract class CustomerGate
      * method.
      * 
      * @param type the query type that the gate is expected to execute.
+     * @throws UnsupportedQueryException if the gate's make and model doesn't
+     * support the query, in which case the gate's query is unchanged.
      */
     public abstract void setQuery(SupportedQueryType type);
     
@@ -97,7 +178,537 @@ public abstract class CustomerGate
      * @return results string. 
      * @see ResultsFormatter for more information on displaying output results.
      */
-    public abstract String queryGate();
+    public String queryGate()
+    {
+        return this.readGate().toString();
+    }
+    
+    /**
+     * Triggers the query to be run against a given gate.
+     * @return the reading, which always has a status even if the gate 
+     * couldn't be reached.
+     */
+    public abstract GateReading readGate();
+    
+    /**
+     * Triggers the query to be run against a given gate over a shared 
+     * non-blocking transport. The method returns right away and the listener
+     * receives the same reading {@link #readGate()} would return. Each 
+     * exchange reads into buffers of its own, so it doesn't disturb other 
+     * queries of the gate that run at the same time.
+     * @param transport transport that runs the exchange with the gate.
+     * @param listener receives the reading on the transport's thread.
+     */
+    public abstract void readGate(SelectorTransport transport, ResultsListener listener);
+    
+    /**
+     * Queries the gate without blocking the caller, on a shared pool of 
+     * {@value QueryExecutors#DEFAULT_THREADS} daemon threads. Futures of 
+     * many gates can be combined with {@link CompletableFuture#allOf} or
+     * {@link CompletableFuture#anyOf}, for example to query a whole branch
+     * at once.
+     * @return completes with the same reading {@link #readGate()} would 
+     * return.
+     */
+    public CompletableFuture<GateReading> queryGateAsync()
+    {
+        return this.queryGateAsync(QueryExecutors.defaultExecutor(), 0);
+    }
+    
+    /**
+     * Queries the gate without blocking the caller. Cancelling the future 
+     * before the query starts means it's never sent, cancelling it later 
+     * lets the query finish but discards the reading.
+     * @param executor runs the blocking query.
+     * @param deadline milliseconds the query may take, counting any wait 
+     * for the executor, or 0 for no deadline other than the gate's timeout.
+     * @return completes with the reading, or exceptionally with a 
+     * {@link java.util.concurrent.TimeoutException} if the deadline passes
+     * first.
+     */
+    public CompletableFuture<GateReading> queryGateAsync(Executor executor, long deadline)
+    {
+        final CompletableFuture<GateReading> result = new CompletableFuture<>();
+        try
+        {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    // Cancelled, or out of time, while waiting its turn.
+                    if (result.isDone())
+                    {
+                        return;
+                    }
+                    try
+                    {
+                        result.complete(readGate());
+                    }
+                    catch (RuntimeException ex)
+                    {
+                        result.completeExceptionally(ex);
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException ex)
+        {
+            result.completeExceptionally(ex);
+        }
+        QueryExecutors.deadline(result, deadline);
+        return result;
+    }
+    
+    /**
+     * Queries the gate over a shared non-blocking transport, so no thread 
+     * waits on the gate at all. The exchange has buffers of its own, so it
+     * may overlap other queries of the gate, and one that outlives its 
+     * deadline leaves nothing of the gate's in use.
+     * @param transport transport that runs the exchange with the gate.
+     * @param deadline milliseconds the query may take, or 0 for no deadline
+     * other than the gate's timeout.
+     * @return completes with the reading on the transport's thread, or 
+     * exceptionally with a {@link java.util.concurrent.TimeoutException} 
+     * if the deadline passes first. Dependent stages that block should be
+     * run with one of the future's 'Async' methods.
+     */
+    public CompletableFuture<GateReading> queryGateAsync(SelectorTransport transport, long deadline)
+    {
+        final CompletableFuture<GateReading> result = new CompletableFuture<>();
+        this.readGate(transport, new ResultsListener()
+        {
+            @Override
+            public void completed(GateReading reading)
+            {
+                result.complete(reading);
+            }
+        });
+        QueryExecutors.deadline(result, deadline);
+        return result;
+    }
+    
+    /**
+     * Runs several commands on one connection to the gate, for example 
+     * reading the counts then resetting them, and collects the replies in 
+     * order. No other query of this gate runs in between. Where the gate's
+     * protocol allows, every command is sent at once, otherwise each waits
+     * for the reply to the one before. The session stops at the first 
+     * command that isn't answered in full, and later commands are reported
+     * as {@link ReadingStatus#NO_RESPONSE}.
+     * @param commands the commands, in the order they're sent.
+     * @return one reply per command, in the same order.
+     * @throws UnsupportedQueryException if the gate doesn't support one of
+     * the commands, in which case nothing is sent.
+     */
+    public synchronized List<CommandReply> runSession(List<SupportedQueryType> commands)
+    {
+        long timestamp = System.currentTimeMillis();
+        long started = System.nanoTime();
+        List<CommandReply> replies = new ArrayList<>(commands.size());
+        GateIPv4 ip = this.getAddress();
+        FrameDecoder decoder = this.getFrameDecoder();
+        ByteBuffer[] responses = new ByteBuffer[commands.size()];
+        for (int i = 0; i < responses.length; i++)
+        {
+            responses[i] = ByteBuffer.allocate(this.responseBuffer.capacity());
+            responses[i].limit(0);
+        }
+        if (decoder == null)
+        {
+            // Not queried over the network.
+            for (int i = 0; i < commands.size(); i++)
+            {
+                replies.add(this.reply(ip, commands.get(i), ReadingStatus.OFFLINE, 
+                        responses[i], timestamp, 0));
+            }
+            return replies;
+        }
+        byte[][] messages = new byte[commands.size()][];
+        FrameDecoder[] frames = new FrameDecoder[commands.size()];
+        for (int i = 0; i < messages.length; i++)
+        {
+            messages[i] = CustomerGate.getQueryFrame(this.type, commands.get(i));
+            if (messages[i] == null)
+            {
+                throw new UnsupportedQueryException("***error: " + this.type 
+                        + " gates don't support the " + commands.get(i) + " command.");
+            }
+            frames[i] = decoder;
+        }
+        if (commands.isEmpty())
+        {
+            return replies;
+        }
+        if (this.checkCircuit(ip) != null)
+        {
+            for (int i = 0; i < commands.size(); i++)
+            {
+                replies.add(this.reply(ip, commands.get(i), ReadingStatus.CIRCUIT_OPEN, 
+                        responses[i], timestamp, 0));
+            }
+            return replies;
+        }
+        int answered;
+        if (this.pool != null)
+        {
+            answered = this.pool.exchangeAll(ip.getIp(), ip.getPort(), messages, 
+                    frames, responses, this.getTimeout(), this.isPipelined(), 
+                    this.observer);
+        }
+        else
+        {
+            IOSocket socket = new IOSocket();
+            socket.setObserver(this.observer);
+            answered = -1;
+            if (socket.startConnection(ip.getIp(), ip.getPort()))
+            {
+                answered = socket.exchangeAll(messages, frames, responses, 
+                        this.getTimeout(), this.isPipelined());
+                socket.stopConnection();
+            }
+        }
+        long elapsed = System.nanoTime() - started;
+        int received = answered < 0 ? -1 : 0;
+        for (int i = 0; i < commands.size(); i++)
+        {
+            ReadingStatus status = ReadingStatus.NO_RESPONSE;
+            if (answered < 0)
+            {
+                status = ReadingStatus.UNREACHABLE;
+            }
+            else if (i < answered)
+            {
+                status = ReadingStatus.OK;
+            }
+            if (received >= 0)
+            {
+                received += responses[i].limit();
+            }
+            replies.add(this.reply(ip, commands.get(i), status, responses[i], 
+                    timestamp, elapsed / 1000L));
+        }
+        if (this.observer != null)
+        {
+            this.observer.exchanged(elapsed, received);
+        }
+        if (this.breaker != null)
+        {
+            if (answered == commands.size())
+            {
+                this.breaker.succeeded();
+            }
+            else
+            {
+                this.breaker.failed();
+            }
+        }
+        return replies;
+    }
+    
+    /**
+     * Builds the reply to one command of a session.
+     * @param ip address of the gate.
+     * @param command the command.
+     * @param status how the command turned out.
+     * @param response the gate's reply.
+     * @param timestamp when the session started, in milliseconds since the
+     * epoch.
+     * @param latency time taken by the session in microseconds.
+     * @return the reply, with the counts if it was a count command.
+     */
+    private CommandReply reply(GateIPv4 ip, SupportedQueryType command, 
+            ReadingStatus status, ByteBuffer response, long timestamp, long latency)
+    {
+        GateReading reading = null;
+        if (command == SupportedQueryType.CUSTOMER_COUNTS)
+        {
+            if (status == ReadingStatus.OK)
+            {
+                reading = this.getFormatter().read(ip.getIp(), response, 
+                        this.counters, timestamp, latency);
+                status = reading.getStatus();
+            }
+            else
+            {
+                reading = new GateReading(ip.getIp(), this.type, timestamp, 
+                        status, latency);
+            }
+        }
+        return new CommandReply(command, status, response, reading);
+    }
+    
+    /**
+     * @return address and port the gate is queried on.
+     */
+    protected abstract GateIPv4 getAddress();
+    
+    /**
+     * @return the gate's formatter.
+     */
+    protected abstract ResultsFormatter getFormatter();
+    
+    /**
+     * @return knows how long the gate's reply frames are, or null if the 
+     * gate isn't queried over the network.
+     */
+    protected FrameDecoder getFrameDecoder()
+    {
+        return null;
+    }
+    
+    /**
+     * @return true if the gate reads commands that arrive together and 
+     * answers them in order, so a session can send them all at once.
+     */
+    protected boolean isPipelined()
+    {
+        return false;
+    }
+    
+    /**
+     * @return make and model of the gate.
+     */
+    public SupportedGateType getType()
+    {
+        return this.type;
+    }
+    
+    /**
+     * Runs all subsequent queries over long lived pooled connections 
+     * instead of connecting for each query.
+     * @param pool the pool, or null to connect for every query.
+     */
+    public void setConnectionPool(ConnectionPool pool)
+    {
+        this.pool = pool;
+    }
+    
+    /**
+     * Reports each step of all subsequent queries, for example to keep
+     * metrics on the gate.
+     * @param observer told about each step, or null.
+     */
+    public void setObserver(ConnectionObserver observer)
+    {
+        this.observer = observer;
+    }
+    
+    /**
+     * Stops querying the gate after it has failed too often in a row. 
+     * While the breaker is open, queries return a 
+     * {@link ReadingStatus#CIRCUIT_OPEN} reading at once.
+     * @param breaker the gate's breaker, or null to always query the gate.
+     */
+    public void setCircuitBreaker(CircuitBreaker breaker)
+    {
+        this.breaker = breaker;
+    }
+    
+    /**
+     * Checks the gate's breaker before a query.
+     * @param ip address of the gate.
+     * @return a reading that says the gate wasn't queried because it's 
+     * known to be down, or null if the query may go ahead.
+     */
+    protected GateReading checkCircuit(GateIPv4 ip)
+    {
+        if (this.breaker == null || this.breaker.allowRequest())
+        {
+            return null;
+        }
+        return new GateReading(ip.getIp(), this.type, System.currentTimeMillis(), 
+                ReadingStatus.CIRCUIT_OPEN, 0);
+    }
+    
+    /**
+     * Gives the exact bytes a gate sends for a query, so tools like the 
+     * gate simulator can recognize them.
+     * @param gate make and model of the gate.
+     * @param query the query.
+     * @return bytes sent to the gate, or null if that make of gate doesn't
+     * support the query over the network.
+     */
+    public static byte[] getQueryFrame(SupportedGateType gate, SupportedQueryType query)
+    {
+        GateCodec codec = GateCodecs.forType(gate);
+        return codec == null ? null : CustomerGate.toBytes(codec.getQueryFrame(query));
+    }
+    
+    /**
+     * @param frame a query frame from a codec, or null.
+     * @return a copy of the frame's bytes, or null if there's no frame.
+     */
+    private static byte[] toBytes(ByteBuffer frame)
+    {
+        if (frame == null)
+        {
+            return null;
+        }
+        byte[] bytes = new byte[frame.remaining()];
+        frame.duplicate().get(bytes);
+        return bytes;
+    }
+    
+    /**
+     * @param gate make and model of the gate.
+     * @return TCP port the gate answers queries on, or 0 if it isn't 
+     * queried over the network.
+     */
+    public static int getPort(SupportedGateType gate)
+    {
+        GateCodec codec = GateCodecs.forType(gate);
+        return codec == null ? 0 : codec.getPort();
+    }
+    
+    /**
+     * Sends a message to the gate and reads its response frame into the 
+     * gate's response buffer, over the pooled connection if there is one.
+     * @param ip address of the gate.
+     * @param message raw bytes to send.
+     * @param frame knows how long the gate's response frame is.
+     * @param timeout maximum time to wait for the response in milliseconds.
+     * @return number of bytes received from the gate, or -1 if the gate
+     * couldn't be connected to.
+     */
+    protected int exchange(GateIPv4 ip, byte[] message, FrameDecoder frame, int timeout)
+    {
+        if (this.pool != null)
+        {
+            return this.pool.exchange(ip.getIp(), ip.getPort(), message, 
+                    frame, timeout, this.responseBuffer, this.observer);
+        }
+        IOSocket socket = new IOSocket();
+        socket.setObserver(this.observer);
+        if (! socket.startConnection(ip.getIp(), ip.getPort()))
+        {
+            return -1;
+        }
+        socket.sendMessage(message);
+        int count = socket.readFrame(this.responseBuffer, frame, timeout);
+        socket.stopConnection();
+        return count;
+    }
+    
+    /**
+     * Turns the outcome of an exchange into a reading.
+     * @param ip address of the gate.
+     * @param formatter the gate's formatter.
+     * @param count bytes received, or -1 if the gate couldn't be reached.
+     * @param timestamp when the query started, in milliseconds since the epoch.
+     * @param started {@link System#nanoTime()} when the query started.
+     * @return the reading.
+     */
+    protected GateReading readResponse(GateIPv4 ip, ResultsFormatter formatter, 
+            int count, long timestamp, long started)
+    {
+        return this.readResponse(ip, formatter, this.responseBuffer, 
+                this.counters, count, timestamp, started);
+    }
+    
+    /**
+     * Same as {@link #readResponse(RFIDEquipment.GateIPv4, RFIDEquipment.ResultsFormatter, int, long, long)}
+     * for a response read into a buffer of its own.
+     * @param ip address of the gate.
+     * @param formatter the gate's formatter.
+     * @param response bytes received from the gate.
+     * @param counters where the response's counters are decoded.
+     * @param count bytes received, or -1 if the gate couldn't be reached.
+     * @param timestamp when the query started, in milliseconds since the epoch.
+     * @param started {@link System#nanoTime()} when the query started.
+     * @return the reading.
+     */
+    protected GateReading readResponse(GateIPv4 ip, ResultsFormatter formatter, 
+            ByteBuffer response, long[] counters, int count, long timestamp, 
+            long started)
+    {
+        long elapsed = System.nanoTime() - started;
+        long latency = elapsed / 1000L;
+        if (this.observer != null)
+        {
+            this.observer.exchanged(elapsed, count);
+        }
+        if (count < 0)
+        {
+            if (this.breaker != null)
+            {
+                this.breaker.failed();
+            }
+            return new GateReading(ip.getIp(), this.type, timestamp, 
+                    ReadingStatus.UNREACHABLE, latency);
+        }
+        this.reportResponse(ip, response);
+        GateReading reading = formatter.read(ip.getIp(), response, 
+                counters, timestamp, latency);
+        if (this.adaptive != null)
+        {
+            if (reading.isValid())
+            {
+                this.adaptive.record(latency);
+            }
+            else if (this.isShortFrame(response, count))
+            {
+                // Only a reply cut off by the timeout says to wait longer.
+                this.adaptive.timedOut();
+            }
+        }
+        if (this.breaker != null)
+        {
+            if (reading.isValid())
+            {
+                this.breaker.succeeded();
+            }
+            else
+            {
+                this.breaker.failed();
+            }
+        }
+        return reading;
+    }
+    
+    /**
+     * @param response bytes received from the gate.
+     * @param count bytes received from the gate.
+     * @return true if the gate stopped short of a whole reply frame, which 
+     * is what a read timeout leaves behind.
+     */
+    private boolean isShortFrame(ByteBuffer response, int count)
+    {
+        FrameDecoder decoder = this.getFrameDecoder();
+        if (decoder == null)
+        {
+            return count == 0;
+        }
+        int length = decoder.frameLength(response.array(), count);
+        return length < 0 || count < length;
+    }
+    
+    /**
+     * Reports a response read from a gate, warning if nothing came back.
+     * The response is only converted to text if debugging is on.
+     * @param ip address of the gate.
+     * @param response bytes received from the gate.
+     */
+    protected void reportResponse(GateIPv4 ip, ByteBuffer response)
+    {
+        // If there is another application connected to the port, you won't get
+        // any data, because someone else is hogging the connection so test if 
+        // you get any data back. 
+        if (! response.hasRemaining())
+        {
+            System.err.println("Can't read socket. Host:" + ip.getIp() 
+                    + ", port:" + ip.getPort() 
+                    + ". Is another application connected?");
+        }
+        else
+        {
+            if (this.debug)
+            {
+                System.out.println("count data recv'd:" 
+                        + IOSocket.toHexString(response.array(), response.limit()));
+            }
+        }
+    }
     
     private static class DummyGate extends CustomerGate
     {
@@ -135,21 +746,15 @@ public abstract class CustomerGate
         protected ResultsFormatter formatter;
         private String results;
         
-        public DummyGate(String ip)
+        public DummyGate(String ip, GateCodec codec, boolean debug)
         {
+            super(codec, debug);
             this.ip        = new GateIPv4(ip, PORT);
             this.QUERY     = SupportedQueries.CUSTOMER_COUNTS;
-            this.formatter = CustomerCountFormatter.getInstance(
-                    SupportedGateType._DUMMY_, 
-                    DEBUG
-            );
+            this.formatter = codec.newFormatter(debug);
             this.results   = "<response>";
         }
         
-        @Override
-        public void setTimeout(int seconds)
-        {  }
-        
         /**
          * Allows a dummy gate object to display a specific message as it would
          * if connected to a real gate.
@@ -186,274 +791,175 @@ public abstract class CustomerGate
         @Override
         public String queryGate()
         {
-            if (DEBUG)
+            if (this.debug)
             {
                 System.out.println("count data recv'd:" + results);
             }
             return this.formatter.format(results);
         }
         
-    }
-    
-    /** An alternate type of gate from Bibliotheca that has recorders for more
-     * than one aisle.
-     */
-    private static class FeigGateDualAisle extends FeigGate
-    {
-        public FeigGateDualAisle(String ip)
+        @Override
+        public GateReading readGate()
+        {
+            return new GateReading(this.ip.getIp(), this.type, 
+                    System.currentTimeMillis(), ReadingStatus.OFFLINE, 0);
+        }
+        
+        @Override
+        public void readGate(SelectorTransport transport, ResultsListener listener)
+        {
+            listener.completed(this.readGate());
+        }
+        
+        @Override
+        protected GateIPv4 getAddress()
         {
-            super(ip);
-            this.formatter = CustomerCountFormatter.getInstance(SupportedGateType._FEIG_ID_ISC_LR2500_B_DUAL_AISLE_, 
-                    DEBUG
-            );
+            return this.ip;
+        }
+        
+        @Override
+        protected ResultsFormatter getFormatter()
+        {
+            return this.formatter;
         }
     }
     
     /**
-     * Customer gate type manufactured by FEIG GmB. One of types of gates
-     * EPL has purchased.
+     * A gate queried over the network in the protocol of its make and 
+     * model's {@link GateCodec}, which is how 3M and FEIG gates, one or two
+     * aisle, are built. The codec's query frames are copied once, when the
+     * gate is built or its query changes, rather than for every query.
      */
-    private static class FeigGate extends CustomerGate
+    private static class NetworkGate extends CustomerGate
     {
-        /**
-         * The types of queries this type of device supports.
-         */
-        protected enum SupportedQueries
-        {
-            CUSTOMER_COUNTS("020012ff9f000d02020008017700ee024431");
-
-            private final String type;
-
-            private SupportedQueries(String s)
-            {
-                this.type = s;
-            }
-
-            @Override
-            public String toString()
-            {
-                return this.type;
-            }
-
-            public String getMessage()
-            {
-                return this.type;
-            }
-        }
-        // Set the correct port for this type of gate, since the gateIP has 
-        // a default of 10001.
-        protected final static int PORT = 10001;
-        protected final GateIPv4 ip;
-        protected SupportedQueries QUERY;
-        protected ResultsFormatter formatter;
-        protected int timeout;
+        private final GateCodec codec;
+        private final GateIPv4 ip;
+        private final FrameDecoder frame;
+        private final ResultsFormatter formatter;
+        private byte[] message;
 
         /**
-         * Constructor to create a patron gate of type FEIG, one or two aisle.
          * @param ip v4 IP of the gate.
+         * @param codec protocol of the gate's make and model, which must 
+         * support the customer counts query.
+         * @param debug true to output debug information.
          */
-        public FeigGate(String ip)
+        NetworkGate(String ip, GateCodec codec, boolean debug)
         {
-            this.ip        = new GateIPv4(ip, PORT);
-            this.QUERY     = SupportedQueries.CUSTOMER_COUNTS;
-            this.formatter = CustomerCountFormatter.getInstance(
-                    SupportedGateType._FEIG_ID_ISC_LR2500_B_, 
-                    DEBUG
-            );
-            this.timeout   = 1;
+            super(codec, debug);
+            this.codec     = codec;
+            this.ip        = new GateIPv4(ip, codec.getPort());
+            this.frame     = codec.getFrameDecoder();
+            this.formatter = codec.newFormatter(debug);
+            this.message   = CustomerGate.toBytes(
+                    codec.getQueryFrame(SupportedQueryType.CUSTOMER_COUNTS));
         }
-        
+
         @Override
         public void setQuery(SupportedQueryType type)
         {
-            // FIEG gates can support 2 useful queries, customer counts and
-            // reset counts (not implemented yet).
-            switch(type)
+            ByteBuffer query = this.codec.getQueryFrame(type);
+            if (query == null)
             {
-                case CUSTOMER_COUNTS:
-                    this.QUERY = SupportedQueries.CUSTOMER_COUNTS;
-                    break;
-                case RESET_COUNTS:
-                    System.err.println(
-                            "***error the reset counts command is not "
-                            + "supported yet."
-                    );
-                    Patroncount.displayHelp(1);
-                default:
-                    System.err.println(
-                            "***error this command is not "
-                            + "supported yet."
-                    );
-                    Patroncount.displayHelp(1);
+                throw new UnsupportedQueryException("***error: " + this.type 
+                        + " gates don't support the " + type + " command.");
             }
+            this.message = CustomerGate.toBytes(query);
         }
         
         @Override
-        public void setTimeout(int seconds)
+        public synchronized GateReading readGate()
         {
-            this.timeout = seconds;
+            GateReading skipped = this.checkCircuit(this.ip);
+            if (skipped != null)
+            {
+                return skipped;
+            }
+            long timestamp = System.currentTimeMillis();
+            long started = System.nanoTime();
+            // The old gates needed some delay for the hardware to respond, 
+            // so wait up to the timeout for the whole frame to arrive.
+            // An empty reply is reported once, by reportResponse().
+            int count = this.exchange(this.ip, this.message, this.frame, 
+                    this.getTimeout());
+            return this.readResponse(this.ip, this.formatter, count, timestamp, started);
         }
         
         @Override
-        public String queryGate()
+        public void readGate(SelectorTransport transport, final ResultsListener listener)
         {
-            IOSocket socket = new IOSocket();
-            if (! socket.startConnection(this.ip.getIp(), this.ip.getPort()))
-            {
-                return this.formatter.format("");
-            }
-            socket.sendMessage(this.QUERY.getMessage());
-            try 
-            {
-                // The old gates needed some delay for the hardware to respond.
-                TimeUnit.SECONDS.sleep(this.timeout);
-            } 
-            catch (InterruptedException ex) 
-            {
-                Logger.getLogger(FeigGate.class.getName()).log(Level.SEVERE, null, ex);
-            }
-            String results = socket.readBytes();
-            // If there is another application connected to the port, you won't get
-            // any data, because someone else is hogging the connection so test if 
-            // you get any data back. 
-            if (results.length() == 0)
+            GateReading skipped = this.checkCircuit(this.ip);
+            if (skipped != null)
             {
-                System.err.println("Can't read socket. Host:" + this.ip.getIp() 
-                        + ", port:" + this.ip.getPort() 
-                        + ". Is another application connected?");
+                listener.completed(skipped);
+                return;
             }
-            else
+            final long timestamp = System.currentTimeMillis();
+            final long started = System.nanoTime();
+            // The exchange runs on the transport's thread, alongside any
+            // other query of the gate, so it reads into buffers of its own.
+            final ByteBuffer response = ByteBuffer.allocate(this.responseBuffer.capacity());
+            final long[] decoded = new long[this.counters.length];
+            transport.submit(this.ip.getIp(), this.ip.getPort(), this.message, 
+                    this.frame, this.getTimeout(), response, 
+                    new ResponseHandler()
             {
-                if (DEBUG)
+                @Override
+                public void completed(ByteBuffer received)
                 {
-                    System.out.println("count data recv'd:" + results);
+                    this.finish(received.limit());
                 }
-            }
-            socket.stopConnection();
-            return this.formatter.format(results);
+                
+                @Override
+                public void unreachable()
+                {
+                    // Same as a failed connect on the blocking path.
+                    this.finish(-1);
+                }
+                
+                private void finish(int count)
+                {
+                    GateReading reading;
+                    try
+                    {
+                        reading = readResponse(ip, formatter, response, 
+                                decoded, count, timestamp, started);
+                    }
+                    catch (RuntimeException ex)
+                    {
+                        // The listener must hear back or the sweep waits forever.
+                        System.err.println("***error: query of gate '" + ip.getIp()
+                                + "' failed: " + ex);
+                        reading = new GateReading(ip.getIp(), type, timestamp, 
+                                ReadingStatus.NO_RESPONSE, 0);
+                    }
+                    listener.completed(reading);
+                }
+            }, this.observer);
         }
-    }
-    
-    /**
-    * Concrete implementation of the 3M gate.
-    * @author Andrew Nisbet <andrew.nisbet@epl.ca>
-    */
-    private static class ThreeMGate extends CustomerGate
-    {
-        /**
-         * The types of queries this type of device supports.
-         */
-        private enum SupportedQueries
-        {
-           CUSTOMER_COUNTS("63000406000D59");
-
-           private final String type;
-
-           private SupportedQueries(String s)
-           {
-               this.type = s;
-           }
-
-           @Override
-           public String toString()
-           {
-               return this.type;
-           }
-
-           public String getMessage()
-           {
-               return this.type;
-           }
-       }
-
-       private final static int PORT = 2101;
-       private SupportedQueries QUERY;
-       private final ResultsFormatter formatter;
-       private final GateIPv4 ip;
-       private int timeout;
-       private String response;
-
-       /**
-        * Constructor to make a patron gate of 3M manufacture.
-        * @param ip v4 IP of the gate.
-        */
-        public ThreeMGate(String ip)
+        
+        @Override
+        protected GateIPv4 getAddress()
         {
-            this.ip        = new GateIPv4(ip, PORT);
-            this.QUERY     = SupportedQueries.CUSTOMER_COUNTS;
-            this.formatter = CustomerCountFormatter.getInstance(
-                    SupportedGateType._3M_9100_,
-                    DEBUG
-            );
-            this.timeout   = 3;
-            this.response  = new String();
+            return this.ip;
         }
-
+        
         @Override
-        public void setQuery(SupportedQueryType type)
+        protected ResultsFormatter getFormatter()
         {
-            // FIEG gates can support 2 useful queries, customer counts and
-            // reset counts (not implemented yet).
-            switch(type)
-            {
-                case CUSTOMER_COUNTS:
-                    this.QUERY = SupportedQueries.CUSTOMER_COUNTS;
-                    break;
-                default:
-                    System.err.println(
-                            "***error this command is not "
-                            + "supported by this gate make and model."
-                    );
-                    Patroncount.displayHelp(1);
-            }
+            return this.formatter;
         }
         
         @Override
-        public String queryGate()
+        protected FrameDecoder getFrameDecoder()
         {
-            IOSocket socket = new IOSocket();
-            if (! socket.startConnection(this.ip.getIp(), this.ip.getPort()))
-            {
-                return this.formatter.format("");
-            }
-            socket.sendMessage(this.QUERY.getMessage());
-            try 
-            {
-                // The old gates needed some delay for the hardware to respond.
-                TimeUnit.SECONDS.sleep(this.timeout);
-            } 
-            catch (InterruptedException ex) 
-            {
-                // Logger.getLogger(ThreeMGate.class.getName()).log(Level.SEVERE, null, ex);
-                System.err.println("**warn: device " + this.ip.getHost() +
-                        " didn't respond within " + (this.timeout + 2) +
-                        " seconds. Is the gate up and connected to the network?");
-            }
-            this.response = socket.readBytes();
-            // If there is another application connected to the port, you won't get
-            // any data, because someone else is hogging the connection so test if 
-            // you get any data back. 
-            if (this.response.length() == 0)
-            {
-                System.err.println("Can't read socket. Host:" + this.ip.getIp() 
-                        + ", port:" + this.ip.getPort() 
-                        + ". Is another application connected?");
-            }
-            else
-            {
-                if (DEBUG)
-                {
-                    System.out.println("count data recv'd:" + this.response);
-                }
-            }
-            socket.stopConnection();
-            return this.formatter.format(this.response);
+            return this.frame;
         }
         
         @Override
-        public void setTimeout(int seconds)
+        protected boolean isPipelined()
         {
-           this.timeout = seconds;
+            return this.codec.isPipelined();
         }
     }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package RFIDEquipment;
+
+import Network.FrameDecoder;
+import java.util.Collections;
+
+/**
+ * Single aisle FEIG LR2500 gates, queried on port 10001. Every FEIG frame
+ * carries its length, and the reader answers commands in the order they
+ * arrive, so commands can be sent all at once.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class FeigCodec extends BasicGateCodec
+{
+    /**
+     * FEIG responses come in one of two frame layouts. The advanced
+     * protocol frame starts with STX (0x02) followed by a 2 byte big-endian
+     * length, the standard protocol frame starts with a 1 byte length.
+     * In both cases the length counts every byte of the frame, 
+     * including the CRC.
+     */
+    protected final static FrameDecoder FRAME = new FrameDecoder()
+    {
+        @Override
+        public int frameLength(byte[] buffer, int count)
+        {
+            if (count < 1)
+            {
+                return -1;
+            }
+            if (buffer[0] != 0x02)
+            {
+                return buffer[0] & 0xff;
+            }
+            if (count < 3)
+            {
+                return -1;
+            }
+            return ((buffer[1] & 0xff) << 8) | (buffer[2] & 0xff);
+        }
+    };
+
+    public FeigCodec()
+    {
+        this(SupportedGateType._FEIG_ID_ISC_LR2500_B_, new String[] {"FEIG", "FEIGx1"});
+    }
+
+    /**
+     * For other FEIG readers that differ only in their counters.
+     * @param type make and model of gate.
+     * @param names names accepted by the '-t' switch.
+     */
+    protected FeigCodec(SupportedGateType type, String[] names)
+    {
+        super(type, names, 10001, 1000, 1L << 32, FRAME, true, 
+                Collections.singletonMap(SupportedQueryType.CUSTOMER_COUNTS, 
+                        "020012ff9f000d02020008017700ee024431"));
+    }
+
+    @Override
+    public ResultsFormatter newFormatter(boolean debug)
+    {
+        return new CustomerCountFormatter.FeigCustomerCountFormatter(
+                this.getType(), debug);
+    }
+}
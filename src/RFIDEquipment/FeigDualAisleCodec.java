@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package RFIDEquipment;
+
+/**
+ * Dual aisle FEIG LR2500 gates, from Bibliotheca. They talk like single 
+ * aisle gates but report the counters of 2 detectors.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class FeigDualAisleCodec extends FeigCodec
+{
+    public FeigDualAisleCodec()
+    {
+        super(SupportedGateType._FEIG_ID_ISC_LR2500_B_DUAL_AISLE_, new String[] {"FEIGx2"});
+    }
+
+    @Override
+    public ResultsFormatter newFormatter(boolean debug)
+    {
+        return new CustomerCountFormatter.FeigCustomerCountDualAisleFormatter(
+                this.getType(), debug);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package RFIDEquipment;
+
+import Network.FrameDecoder;
+import java.nio.ByteBuffer;
+
+/**
+ * Everything the application needs to know about one make and model of 
+ * gate: the names it goes by, where and how long to wait for it, the bytes
+ * of each query it understands, how to tell when its reply is complete, and
+ * how to read the counts out of the reply.
+ * 
+ * Codecs are found with {@link java.util.ServiceLoader}, so a new model's
+ * codec can ship in its own jar. List the codec's class name in the jar's
+ * 'META-INF/services/RFIDEquipment.GateCodec' file and put the jar on the
+ * class path. The model still needs its own {@link SupportedGateType}, 
+ * since readings are stored and written by the type's ordinal.
+ * 
+ * Codecs are shared by every gate of their type, so must be immutable.
+ * {@link BasicGateCodec} does most of the work.
+ * @see GateCodecs
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public interface GateCodec
+{
+    /**
+     * @return make and model of gate this codec talks to.
+     */
+    public SupportedGateType getType();
+    
+    /**
+     * @return names of the gate type accepted by the '-t' switch and in 
+     * fleet files, matched without regard to case.
+     */
+    public String[] getNames();
+    
+    /**
+     * @return TCP port the gate answers queries on, or 0 if it isn't 
+     * queried over the network.
+     */
+    public int getPort();
+    
+    /**
+     * @return default time to wait for the gate's reply, in milliseconds.
+     */
+    public int getTimeout();
+    
+    /**
+     * @return number of values the gate's counters can hold before they 
+     * wrap back to 0.
+     */
+    public long getCounterRange();
+    
+    /**
+     * @param query the query.
+     * @return read only buffer of the bytes sent to the gate, encoded once
+     * when the codec was built, or null if the gate doesn't support the
+     * query over the network.
+     */
+    public ByteBuffer getQueryFrame(SupportedQueryType query);
+    
+    /**
+     * @return knows how long the gate's reply frames are, or null if the 
+     * gate isn't queried over the network.
+     */
+    public FrameDecoder getFrameDecoder();
+    
+    /**
+     * @return true if the gate reads commands that arrive together and 
+     * answers them in order, so they can be sent all at once.
+     */
+    public boolean isPipelined();
+    
+    /**
+     * @param debug true if the formatter should output debug information.
+     * @return a new formatter that reads the gate's replies.
+     */
+    public ResultsFormatter newFormatter(boolean debug);
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package RFIDEquipment;
+
+import Network.IOSocket;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * The codecs of every gate model on the class path, looked up by type or 
+ * by name in constant time. The built in models are listed in this 
+ * project's 'META-INF/services/RFIDEquipment.GateCodec' file. 
+ * 
+ * Codecs are loaded the first time one is asked for. If two codecs claim
+ * the same type or name, the first one found on the class path is used 
+ * and the other is reported.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public final class GateCodecs
+{
+    private GateCodecs()
+    {
+    }
+
+    /**
+     * Loaded on first use by the class loader, which makes it thread safe.
+     */
+    private static class Registry
+    {
+        private final static GateCodec[] BY_TYPE = new GateCodec[SupportedGateType.values().length];
+        private final static Map<String, GateCodec> BY_NAME = new HashMap<>();
+        private final static List<GateCodec> ALL = new ArrayList<>();
+
+        static
+        {
+            Iterator<GateCodec> codecs = ServiceLoader.load(GateCodec.class, 
+                    GateCodecs.class.getClassLoader()).iterator();
+            while (true)
+            {
+                GateCodec codec;
+                try
+                {
+                    if (! codecs.hasNext())
+                    {
+                        break;
+                    }
+                    codec = codecs.next();
+                }
+                catch (ServiceConfigurationError ex)
+                {
+                    // One broken jar shouldn't stop the other gates working.
+                    System.err.println("**warn: unable to load a gate codec, " 
+                            + ex.getMessage());
+                    continue;
+                }
+                Registry.register(codec);
+            }
+        }
+
+        private static void register(GateCodec codec)
+        {
+            int index = codec.getType().ordinal();
+            if (BY_TYPE[index] != null)
+            {
+                System.err.println("**warn: ignoring gate codec " + codec.getClass().getName()
+                        + ", " + codec.getType() + " gates already use " 
+                        + BY_TYPE[index].getClass().getName() + ".");
+                return;
+            }
+            BY_TYPE[index] = codec;
+            ALL.add(codec);
+            for (String name : codec.getNames())
+            {
+                String key = name.toUpperCase(Locale.ROOT);
+                if (BY_NAME.containsKey(key))
+                {
+                    System.err.println("**warn: gate type name '" + name 
+                            + "' is already used by " + BY_NAME.get(key).getType() + ".");
+                    continue;
+                }
+                BY_NAME.put(key, codec);
+            }
+        }
+    }
+
+    /**
+     * @param type make and model of gate.
+     * @return the type's codec, or null if there isn't one on the class path.
+     */
+    public static GateCodec forType(SupportedGateType type)
+    {
+        return Registry.BY_TYPE[type.ordinal()];
+    }
+
+    /**
+     * @param name name of the gate type, like '3M' or 'FEIGx2' (case 
+     * insensitive).
+     * @return the codec of the type with that name, or null if there isn't
+     * one.
+     */
+    public static GateCodec forName(String name)
+    {
+        return Registry.BY_NAME.get(name.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * @return every codec, in the order they were found.
+     */
+    public static List<GateCodec> all()
+    {
+        return Collections.unmodifiableList(Registry.ALL);
+    }
+
+    /**
+     * Adds query frames that aren't built into the codecs, like the 
+     * {@link SupportedQueryType#RESET_COUNTS} frame of a site's gates, 
+     * from a properties file of 'name.QUERY=hex' entries, for example
+     * 'FEIGx2.RESET_COUNTS=0200...'. The name is any gate type name, and 
+     * the gate's reply must be a frame its codec can read, as a count reply
+     * is. Entries that can't be used are reported and skipped.
+     * @param path path of the properties file.
+     * @return number of frames added.
+     * @throws IOException if the file can't be read.
+     */
+    public static int loadQueryFrames(String path) throws IOException
+    {
+        Properties frames = new Properties();
+        try (InputStream in = Files.newInputStream(Paths.get(path)))
+        {
+            frames.load(in);
+        }
+        int added = 0;
+        for (String key : frames.stringPropertyNames())
+        {
+            String hex = frames.getProperty(key).trim();
+            int dot = key.lastIndexOf('.');
+            GateCodec codec = dot > 0 ? GateCodecs.forName(key.substring(0, dot)) : null;
+            SupportedQueryType query = null;
+            for (SupportedQueryType type : SupportedQueryType.values())
+            {
+                if (type.name().equalsIgnoreCase(key.substring(dot + 1)))
+                {
+                    query = type;
+                }
+            }
+            String problem = null;
+            if (codec == null || query == null)
+            {
+                problem = "expected 'name.QUERY' where name is a gate type";
+            }
+            else if (! (codec instanceof BasicGateCodec))
+            {
+                problem = codec.getType() + " gates don't take frames from a file";
+            }
+            else if (hex.isEmpty() || hex.length() % 2 != 0 || ! hex.matches("[0-9a-fA-F]+"))
+            {
+                problem = "'" + hex + "' isn't a frame in hex";
+            }
+            if (problem != null)
+            {
+                System.err.println("**warn: skipping query frame '" + key + "', " 
+                        + problem + ".");
+                continue;
+            }
+            ((BasicGateCodec) codec).putQueryFrame(query, IOSocket.hexStringToByteArray(hex));
+            added++;
+        }
+        return added;
+    }
+}
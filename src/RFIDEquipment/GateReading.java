@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package RFIDEquipment;
+
+import java.util.Arrays;
+
+/**
+ * The result of a single gate query, kept as numbers rather than text so
+ * consumers don't have to parse counts back out of a string.
+ *
+ * Counters from each of the gate's detectors are kept as in-count, out-count
+ * pairs, and the in and out totals are the sums over all detectors. Readings
+ * whose status isn't {@link ReadingStatus#OK} have no detectors, and report
+ * -1 for both totals as the original application did.
+ *
+ * Readings are immutable and safe to share between threads.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public final class GateReading
+{
+    private final String gate;
+    private final SupportedGateType type;
+    private final long timestamp;
+    private final long in;
+    private final long out;
+    private final long[] detectors;
+    private final long latency;
+    private final ReadingStatus status;
+
+    /**
+     * Creates a successful reading.
+     * @param gate id of the gate, usually its IP.
+     * @param type make and model of the gate.
+     * @param timestamp when the query started, in milliseconds since the epoch.
+     * @param counters in-count, out-count pairs for each detector.
+     * @param count number of counters.
+     * @param latency time taken by the query in microseconds.
+     */
+    public GateReading(String gate, SupportedGateType type, long timestamp,
+            long[] counters, int count, long latency)
+    {
+        this.gate      = gate;
+        this.type      = type;
+        this.timestamp = timestamp;
+        this.detectors = Arrays.copyOf(counters, count);
+        this.latency   = latency;
+        this.status    = ReadingStatus.OK;
+        long inCount = 0;
+        long outCount = 0;
+        for (int i = 0; i + 1 < count; i += 2)
+        {
+            inCount += counters[i];
+            outCount += counters[i + 1];
+        }
+        this.in  = inCount;
+        this.out = outCount;
+    }
+
+    /**
+     * Creates a reading for a query that didn't produce counts.
+     * @param gate id of the gate, usually its IP.
+     * @param type make and model of the gate.
+     * @param timestamp when the query started, in milliseconds since the epoch.
+     * @param status why there are no counts.
+     * @param latency time taken by the query in microseconds.
+     */
+    public GateReading(String gate, SupportedGateType type, long timestamp,
+            ReadingStatus status, long latency)
+    {
+        this.gate      = gate;
+        this.type      = type;
+        this.timestamp = timestamp;
+        this.detectors = new long[0];
+        this.latency   = latency;
+        this.status    = status;
+        this.in        = -1;
+        this.out       = -1;
+    }
+
+    /**
+     * @return id of the gate, usually its IP.
+     */
+    public String getGate()
+    {
+        return gate;
+    }
+
+    /**
+     * @return make and model of the gate.
+     */
+    public SupportedGateType getType()
+    {
+        return type;
+    }
+
+    /**
+     * @return when the query started, in milliseconds since the epoch.
+     */
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /**
+     * @return total in-count over all detectors, or -1 if the query failed.
+     */
+    public long getIn()
+    {
+        return in;
+    }
+
+    /**
+     * @return total out-count over all detectors, or -1 if the query failed.
+     */
+    public long getOut()
+    {
+        return out;
+    }
+
+    /**
+     * @return number of detector counters, twice the number of detectors.
+     */
+    public int getCounterCount()
+    {
+        return detectors.length;
+    }
+
+    /**
+     * @param index counter number, even numbers are in-counts and odd
+     * numbers are out-counts.
+     * @return value of the counter.
+     */
+    public long getCounter(int index)
+    {
+        return detectors[index];
+    }
+
+    /**
+     * @return time taken by the query in microseconds.
+     */
+    public long getLatency()
+    {
+        return latency;
+    }
+
+    /**
+     * @return how the query turned out.
+     */
+    public ReadingStatus getStatus()
+    {
+        return status;
+    }
+
+    /**
+     * @return true if the reading holds counts from the gate.
+     */
+    public boolean isValid()
+    {
+        return status == ReadingStatus.OK;
+    }
+
+    /**
+     * @return the reading in the application's original 'in|out|' form,
+     * which is '-1|-1|' if the query failed.
+     */
+    @Override
+    public String toString()
+    {
+        return String.valueOf(in) + "|" + String.valueOf(out) + "|";
+    }
+}
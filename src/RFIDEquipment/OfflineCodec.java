@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package RFIDEquipment;
+
+/**
+ * Gates that are offline, or of an unknown make, so are never queried and
+ * always read '-1|-1|'.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class OfflineCodec extends BasicGateCodec
+{
+    public OfflineCodec()
+    {
+        super(SupportedGateType._DUMMY_, new String[] {"OFFLINE", "UNKNOWN", "UNDEFINED"}, 
+                0, 3000, 1L << 32, null, false);
+    }
+
+    @Override
+    public ResultsFormatter newFormatter(boolean debug)
+    {
+        return new CustomerCountFormatter.DummyCustomerCountFormatter(
+                this.getType(), debug);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package RFIDEquipment;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Threads shared by the asynchronous queries of every gate. Both are 
+ * created the first time they are needed, and are daemon threads so they
+ * never keep the application from exiting.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+final class QueryExecutors
+{
+    /**
+     * Most queries run at once on the default executor, others wait their
+     * turn.
+     */
+    final static int DEFAULT_THREADS = 64;
+
+    private QueryExecutors()
+    {
+    }
+
+    /**
+     * Holds the default executor, so it's only built if it's used.
+     */
+    private static class Default
+    {
+        private final static ThreadPoolExecutor EXECUTOR;
+        static
+        {
+            EXECUTOR = new ThreadPoolExecutor(DEFAULT_THREADS, DEFAULT_THREADS,
+                    30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    QueryExecutors.daemonThreads("gate-query"));
+            EXECUTOR.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * Holds the timer that enforces deadlines.
+     */
+    private static class Timer
+    {
+        private final static ScheduledExecutorService TIMER;
+        static
+        {
+            ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1,
+                    QueryExecutors.daemonThreads("gate-query-deadline"));
+            // Deadlines are cancelled far more often than they expire.
+            timer.setRemoveOnCancelPolicy(true);
+            TIMER = timer;
+        }
+    }
+
+    /**
+     * @return executor used by queries that aren't given one.
+     */
+    static Executor defaultExecutor()
+    {
+        return Default.EXECUTOR;
+    }
+
+    /**
+     * Fails a future with a {@link TimeoutException} if it hasn't finished
+     * by the deadline.
+     * @param future the query's future.
+     * @param deadline milliseconds the query may take, 0 or less for no 
+     * deadline.
+     */
+    static void deadline(final CompletableFuture<GateReading> future, 
+            final long deadline)
+    {
+        if (deadline <= 0 || future.isDone())
+        {
+            return;
+        }
+        final ScheduledFuture<?> timer = Timer.TIMER.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                future.completeExceptionally(new TimeoutException(
+                        "gate query took longer than " + deadline + " milliseconds"));
+            }
+        }, deadline, TimeUnit.MILLISECONDS);
+        future.whenComplete(new BiConsumer<GateReading, Throwable>()
+        {
+            @Override
+            public void accept(GateReading reading, Throwable error)
+            {
+                timer.cancel(false);
+            }
+        });
+    }
+
+    private static ThreadFactory daemonThreads(final String name)
+    {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
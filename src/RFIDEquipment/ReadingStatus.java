@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package RFIDEquipment;
+
+/**
+ * How a gate query turned out. Only {@link #OK} readings carry counts.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public enum ReadingStatus
+{
+    /** The gate responded with valid counts. */
+    OK,
+    /** The gate accepted the connection but didn't send a valid response. */
+    NO_RESPONSE,
+    /** The gate couldn't be connected to. */
+    UNREACHABLE,
+    /** The gate is configured as offline, so wasn't queried. */
+    OFFLINE,
+    /** The gate has failed too often lately, so wasn't queried. */
+    CIRCUIT_OPEN;
+}
@@ -16,6 +16,8 @@
  */
 package RFIDEquipment;
 
+import java.nio.ByteBuffer;
+
 /**
  * Formats results from all gate types to a standard output.
  * @author Andrew Nisbet andrew.nisbet@epl.ca
@@ -36,4 +38,47 @@ public interface ResultsFormatter
      * @return the result of the message sent.
      */
     public String format(String message);
+    
+    /**
+     * Reads the detector counters straight out of the gate's response frame,
+     * without converting it to a string first. Counters are written in 
+     * in-count, out-count pairs, one pair per detector.
+     * 
+     * @param frame response frame, from its position to its limit. The
+     * position of the buffer is not changed.
+     * @param counters receives the counters, must have room for at least
+     * {@link #MAX_COUNTERS} values.
+     * @return the number of counters written, or -1 if the frame doesn't
+     * hold a valid response.
+     */
+    public int decode(ByteBuffer frame, long[] counters);
+    
+    /**
+     * Formats decoded counters in the same way as {@link #format(java.lang.String)}.
+     * 
+     * @param counters in-count, out-count pairs from {@link #decode(java.nio.ByteBuffer, long[])}.
+     * @param count number of counters, or -1 if decoding failed.
+     * @return the result of the message sent.
+     */
+    public String format(long[] counters, int count);
+    
+    /**
+     * Decodes a response frame into a reading.
+     * 
+     * @param gate id of the gate, usually its IP.
+     * @param frame response frame, see {@link #decode(java.nio.ByteBuffer, long[])}.
+     * @param counters scratch space for decoding, must have room for at least
+     * {@link #MAX_COUNTERS} values.
+     * @param timestamp when the query started, in milliseconds since the epoch.
+     * @param latency time taken by the query in microseconds.
+     * @return the reading, with a status of {@link ReadingStatus#NO_RESPONSE}
+     * if the frame doesn't hold a valid response.
+     */
+    public GateReading read(String gate, ByteBuffer frame, long[] counters, 
+            long timestamp, long latency);
+    
+    /**
+     * Largest number of counters any gate reports.
+     */
+    public final static int MAX_COUNTERS = 8;
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package RFIDEquipment;
+
+/**
+ * Receives the results of a gate query that finishes some time after it
+ * was started.
+ * @see CustomerGate#readGate(Network.SelectorTransport, RFIDEquipment.ResultsListener)
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public interface ResultsListener
+{
+    /**
+     * Called exactly once when the query finishes.
+     * @param reading the results, the same as {@link CustomerGate#readGate()}
+     * would return.
+     */
+    public void completed(GateReading reading);
+}
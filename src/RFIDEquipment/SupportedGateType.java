@@ -19,7 +19,8 @@ package RFIDEquipment;
 /**
  * The canonical list of makes and models of gates this application supports.
  * Creating an entry here is the first step to adding support for 
- * a new customer gate.
+ * a new customer gate, the second is its {@link GateCodec}. Readings are 
+ * stored with the ordinal of their type, so new entries go at the end.
  * 
  * @author Andrew Nisbet andrew.nisbet@epl.ca
  * @version 1.0
@@ -44,4 +45,17 @@ public enum SupportedGateType
     {
         return this.type;
     } 
+    
+    /**
+     * Looks up a gate type by one of the names accepted by the '-t' switch
+     * (case insensitive).
+     * @param name name of the gate type like '3M', 'FEIG', or 'FEIGx2'.
+     * @return the matching gate type, or null if the name isn't recognized.
+     */
+    public static SupportedGateType fromName(String name)
+    {
+        // Each gate type's codec lists its names.
+        GateCodec codec = GateCodecs.forName(name);
+        return codec == null ? null : codec.getType();
+    }
 }
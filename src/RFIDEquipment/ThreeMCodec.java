@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package RFIDEquipment;
+
+import Network.FrameDecoder;
+import java.util.Collections;
+
+/**
+ * 3M 9100 gates, queried on port 2101. They can take a few seconds to 
+ * gather their counts, so are sent one command at a time.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class ThreeMCodec extends BasicGateCodec
+{
+    /**
+     * The 3M count reply is a fixed length frame. The out and in counters
+     * end at byte 13, anything after that is checksum.
+     */
+    private final static int RESPONSE_LENGTH = 13;
+    private final static FrameDecoder FRAME = new FrameDecoder()
+    {
+        @Override
+        public int frameLength(byte[] buffer, int count)
+        {
+            return RESPONSE_LENGTH;
+        }
+    };
+
+    public ThreeMCodec()
+    {
+        // The top 4 bits of each counter aren't part of the count.
+        super(SupportedGateType._3M_9100_, new String[] {"3M"}, 2101, 3000,
+                1L << 28, FRAME, false, Collections.singletonMap(
+                        SupportedQueryType.CUSTOMER_COUNTS, "63000406000D59"));
+    }
+
+    @Override
+    public ResultsFormatter newFormatter(boolean debug)
+    {
+        return new CustomerCountFormatter.ThreeMCustomerCountFormatter(
+                this.getType(), debug);
+    }
+}
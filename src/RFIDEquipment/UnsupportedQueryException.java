@@ -25,6 +25,8 @@ package RFIDEquipment;
  */
 public class UnsupportedQueryException extends RuntimeException
 {
+    private final static long serialVersionUID = 1L;
+    
     /**
      * Thrown if a gate can't or hasn't be extended to respond to a given 
      * type of query.
@@ -32,6 +34,7 @@ public class UnsupportedQueryException extends RuntimeException
      */
     public UnsupportedQueryException(String message)
     {
+        super(message);
         System.err.println(message);
     }
 }
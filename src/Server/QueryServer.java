@@ -0,0 +1,398 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Server;
+
+import Output.ReadingEncoder;
+import Network.GateIPv4;
+import Polling.GateEntry;
+import Polling.ReadingCache;
+import RFIDEquipment.GateReading;
+import RFIDEquipment.SupportedGateType;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers gate queries over HTTP, so other applications can get counts
+ * without starting a JVM per query. Every query goes through a 
+ * {@link ReadingCache}, so any number of clients asking about the same gate
+ * cost the gate one query per time to live.
+ *
+ * <ul>
+ * <li>GET /gates/{ip}/counts answers 'in|out|', the same as querying the
+ * gate with '-i'. The gate type is taken from the 'type' parameter, then 
+ * the fleet, then defaults to 3M. With 'format=json' (or csv or pipe) the 
+ * reading is written as the '-e' switch would write it instead.</li>
+ * <li>POST /query takes 'ip type [timeout]' lines, like a fleet file, 
+ * queries the gates in parallel and answers with one line per gate in
+ * the order given, in the 'format' parameter's format, 'pipe' by default.</li>
+ * </ul>
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class QueryServer
+{
+    /** Most gates a single POST /query may ask about. */
+    public final static int MAX_GATES = 10000;
+    private final static String TEXT = "text/plain; charset=utf-8";
+    private final static String PREFIX = "/gates/";
+    private final static String SUFFIX = "/counts";
+    private final HttpServer server;
+    private final ExecutorService requests;
+    private final ExecutorService queries;
+    private final ReadingCache cache;
+    private final Map<String, GateEntry> fleet;
+
+    /**
+     * Binds the server, but doesn't start it.
+     * @param address address and port to listen on.
+     * @param fleet gates whose types and timeouts are used when a request 
+     * doesn't give them, may be empty.
+     * @param cache where readings are kept between requests.
+     * @param concurrency most requests answered, and most gates queried, 
+     * at the same time.
+     * @throws IOException if the address can't be bound.
+     */
+    public QueryServer(InetSocketAddress address, List<GateEntry> fleet,
+            ReadingCache cache, int concurrency) throws IOException
+    {
+        this.cache = cache;
+        this.fleet = new HashMap<>();
+        for (GateEntry entry : fleet)
+        {
+            this.fleet.put(entry.getIp(), entry);
+        }
+        this.server = HttpServer.create(address, 128);
+        this.server.createContext(PREFIX, new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                try
+                {
+                    counts(exchange);
+                }
+                catch (RuntimeException ex)
+                {
+                    QueryServer.error(exchange, 500, "query failed, " + ex);
+                }
+                finally
+                {
+                    exchange.close();
+                }
+            }
+        });
+        this.server.createContext("/query", new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                try
+                {
+                    query(exchange);
+                }
+                catch (RuntimeException ex)
+                {
+                    QueryServer.error(exchange, 500, "query failed, " + ex);
+                }
+                finally
+                {
+                    exchange.close();
+                }
+            }
+        });
+        // Requests and gate queries get their own threads, so a bulk 
+        // request waiting on its gates can't starve the queries of them.
+        this.requests = QueryServer.pool(concurrency, "query-server");
+        this.queries  = QueryServer.pool(concurrency, "query-server-gate");
+        this.server.setExecutor(this.requests);
+    }
+
+    private static ExecutorService pool(int size, final String name)
+    {
+        final AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), 
+                new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Answers GET /gates/{ip}/counts.
+     */
+    private void counts(HttpExchange exchange) throws IOException
+    {
+        String path = exchange.getRequestURI().getPath();
+        if (! path.startsWith(PREFIX) || ! path.endsWith(SUFFIX)
+                || path.length() <= PREFIX.length() + SUFFIX.length())
+        {
+            QueryServer.error(exchange, 404, "no such resource");
+            return;
+        }
+        if (! exchange.getRequestMethod().equals("GET"))
+        {
+            exchange.getResponseHeaders().set("Allow", "GET");
+            QueryServer.error(exchange, 405, "use GET");
+            return;
+        }
+        String ip = path.substring(PREFIX.length(), path.length() - SUFFIX.length());
+        if (! GateIPv4.isValid(ip))
+        {
+            QueryServer.error(exchange, 400, "invalid IP '" + ip + "'");
+            return;
+        }
+        Map<String, String> parameters = QueryServer.parameters(exchange);
+        GateEntry entry = this.fleet.get(ip);
+        String typeName = parameters.get("type");
+        if (typeName != null)
+        {
+            SupportedGateType type = SupportedGateType.fromName(typeName);
+            if (type == null)
+            {
+                QueryServer.error(exchange, 400, "invalid RFID gate type '" + typeName + "'");
+                return;
+            }
+            if (entry == null || entry.getType() != type)
+            {
+                entry = new GateEntry(ip, type, 0);
+            }
+        }
+        else if (entry == null)
+        {
+            entry = new GateEntry(ip, SupportedGateType._3M_9100_, 0);
+        }
+        String format = parameters.get("format");
+        if (format == null)
+        {
+            GateReading reading = this.cache.get(entry);
+            QueryServer.send(exchange, 200, TEXT, 
+                    (reading.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        List<GateEntry> entries = new ArrayList<>(1);
+        entries.add(entry);
+        this.answer(exchange, entries, format);
+    }
+
+    /**
+     * Answers POST /query.
+     */
+    private void query(HttpExchange exchange) throws IOException
+    {
+        if (! exchange.getRequestURI().getPath().equals("/query"))
+        {
+            QueryServer.error(exchange, 404, "no such resource");
+            return;
+        }
+        if (! exchange.getRequestMethod().equals("POST"))
+        {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            QueryServer.error(exchange, 405, "use POST");
+            return;
+        }
+        List<GateEntry> entries = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                exchange.getRequestBody(), StandardCharsets.UTF_8));
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null)
+        {
+            lineNumber++;
+            GateEntry entry;
+            try
+            {
+                entry = GateEntry.parse(line);
+            }
+            catch (IllegalArgumentException ex)
+            {
+                QueryServer.error(exchange, 400, "line " + lineNumber + ", " + ex.getMessage());
+                return;
+            }
+            if (entry == null)
+            {
+                continue;
+            }
+            if (entries.size() == MAX_GATES)
+            {
+                QueryServer.error(exchange, 413, "at most " + MAX_GATES + " gates per query");
+                return;
+            }
+            entries.add(entry);
+        }
+        String format = QueryServer.parameters(exchange).get("format");
+        this.answer(exchange, entries, format == null ? "pipe" : format);
+    }
+
+    /**
+     * Queries the gates in parallel and writes their readings in order.
+     */
+    private void answer(HttpExchange exchange, List<GateEntry> entries, 
+            String format) throws IOException
+    {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64 + entries.size() * 64);
+        ReadingEncoder encoder;
+        try
+        {
+            encoder = ReadingEncoder.getInstance(format, body, false);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            QueryServer.error(exchange, 400, ex.getMessage());
+            return;
+        }
+        List<Future<GateReading>> readings = new ArrayList<>(entries.size());
+        for (final GateEntry entry : entries)
+        {
+            readings.add(this.queries.submit(new Callable<GateReading>()
+            {
+                @Override
+                public GateReading call()
+                {
+                    return cache.get(entry);
+                }
+            }));
+        }
+        try
+        {
+            for (Future<GateReading> reading : readings)
+            {
+                encoder.encode(reading.get());
+            }
+            encoder.flush();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            QueryServer.error(exchange, 503, "server is stopping");
+            return;
+        }
+        catch (ExecutionException ex)
+        {
+            QueryServer.error(exchange, 500, "query failed, " + ex.getCause());
+            return;
+        }
+        String type = format.equalsIgnoreCase("json") ? "application/x-ndjson" 
+                : format.equalsIgnoreCase("csv") ? "text/csv; charset=utf-8"
+                : format.equalsIgnoreCase("binary") ? "application/octet-stream" 
+                : TEXT;
+        QueryServer.send(exchange, 200, type, body.toByteArray());
+    }
+
+    /**
+     * Decodes the query string. Later values of a parameter replace 
+     * earlier ones.
+     */
+    private static Map<String, String> parameters(HttpExchange exchange) 
+            throws UnsupportedEncodingException
+    {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null)
+        {
+            return parameters;
+        }
+        for (String pair : query.split("&"))
+        {
+            int equals = pair.indexOf('=');
+            if (equals > 0)
+            {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                        URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+            }
+        }
+        return parameters;
+    }
+
+    private static void error(HttpExchange exchange, int status, String message)
+            throws IOException
+    {
+        QueryServer.send(exchange, status, TEXT, 
+                ("**error: " + message + ".\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, String type, 
+            byte[] body) throws IOException
+    {
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody())
+        {
+            out.write(body);
+        }
+    }
+
+    /**
+     * @return address the server is listening on.
+     */
+    public InetSocketAddress getAddress()
+    {
+        return this.server.getAddress();
+    }
+
+    /**
+     * Starts answering requests. The server's listener thread keeps the
+     * application running until {@link #stop()} is called.
+     */
+    public void start()
+    {
+        this.server.start();
+    }
+
+    /**
+     * Stops answering requests, waiting up to a second for any in progress.
+     */
+    public void stop()
+    {
+        this.server.stop(1);
+        this.requests.shutdown();
+        this.queries.shutdown();
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Simulator;
+
+import Network.GateIPv4;
+import RFIDEquipment.CustomerGate;
+import RFIDEquipment.GateCodecs;
+import RFIDEquipment.SupportedGateType;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+/**
+ * Runs simulated 3M and FEIG gates on this machine so the real network 
+ * code can be exercised, and load tested, without any hardware. 
+ * 
+ * Gates are either given consecutive addresses, each listening on its make's
+ * usual port so patroncount can query them as is, or share one address and 
+ * listen on consecutive ports. Linux answers on every 127.x.x.x address 
+ * without any setup, so thousands of gates can run on loopback. Run with:
+ * 
+ * java -cp patroncount.jar Simulator.GateSimulator -n 1000 -t 3M,FEIGx2 -o fleet.txt
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class GateSimulator
+{
+    private final static String VERSION = "1.0.0";
+
+    public static void displayHelp(int i)
+    {
+        System.err.println("Usage: GateSimulator [-dhvx] [-a first_ip] [-b first_port] [-n {integer}] [-t types]");
+        System.err.println("       [-l {ms}] [-j {ms}] [-r {rate}] [-g {rate}] [-s {integer}] [-o fleet_file] [-R file]");
+        System.err.println(" Example: GateSimulator -a 127.0.1.1 -n 500 -t FEIG,3M -l 20 -j 80 -r 0.01 -g 10");
+        System.err.println("    Simulates 3M 9100 and FEIG LR2500 gates answering count queries.");
+        System.err.println("    Gates run until the simulator is stopped with ctrl-C.");
+        System.err.println();
+        System.err.println(" Switches:");
+        System.err.println(" -a{127.0.0.1} IPv4 address of the first gate, the default is 127.0.0.1.");
+        System.err.println("   Other gates get the following addresses, each on its gate type's port");
+        System.err.println("   (" + CustomerGate.getPort(SupportedGateType._3M_9100_) + " for 3M, " 
+                + CustomerGate.getPort(SupportedGateType._FEIG_ID_ISC_LR2500_B_) 
+                + " for FEIG). Linux listens on any 127.x.x.x address, other systems");
+        System.err.println("   need loopback aliases.");
+        System.err.println(" -b{port} all gates share the '-a' address and listen on consecutive ports");
+        System.err.println("   starting with this one.");
+        System.err.println(" -d output debug information, a line per query.");
+        System.err.println(" -g{number} average patrons per minute counted by each in and out counter.");
+        System.err.println("   The default is 0, counters don't change.");
+        System.err.println(" -h usage message.");
+        System.err.println(" -j{milliseconds} up to this many milliseconds are added at random to each");
+        System.err.println("   response. The default is 0.");
+        System.err.println(" -l{milliseconds} time a gate takes to respond. The default is 0.");
+        System.err.println(" -n{integer} number of gates. The default is 1. Each gate and connection");
+        System.err.println("   uses a file descriptor, so check 'ulimit -n' for large numbers of gates.");
+        System.err.println(" -o{file} writes a patroncount fleet file listing the gates. Can't be used");
+        System.err.println("   with '-b' since fleet files don't have ports.");
+        System.err.println(" -R{file} gates also answer the reset frames in the file, the same file as");
+        System.err.println("   patroncount's '--reset', by setting their counters to 0 and sending them.");
+        System.err.println(" -r{0.0-1.0} chance that a gate hangs up instead of responding. The");
+        System.err.println("   default is 0.");
+        System.err.println(" -s{integer} value of every counter at start up. Counters wrap the way the");
+        System.err.println("   gates' do, 28 bits for 3M and 32 bits for FEIG. The default is 0.");
+        System.err.println(" -t{3M|FEIG|FEIGx1|FEIGx2[,...]} (case insensitive) types of gates. With more");
+        System.err.println("   than one type the gates take turns at each type. The default is '3M'.");
+        System.err.println(" -v display version information then exit.");
+        System.err.println(" -x usage message. Same as -h, but consistent with other applications.");
+        System.err.println();
+        System.err.println("Version: " + VERSION);
+        System.exit(i);
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args)
+    {
+        Options options = new Options();
+        options.addOption("a", true, "address of the first gate.");
+        options.addOption("b", true, "port of the first gate.");
+        options.addOption("d", false, "turns on debug information.");
+        options.addOption("g", true, "patrons per minute per counter.");
+        options.addOption("h", false, "usage help message.");
+        options.addOption("x", false, "usage help message.");
+        options.addOption("j", true, "response jitter (in milliseconds).");
+        options.addOption("l", true, "response latency (in milliseconds).");
+        options.addOption("n", true, "number of gates.");
+        options.addOption("o", true, "fleet file to write.");
+        options.addOption("R", true, "file of reset frames.");
+        options.addOption("r", true, "chance of dropping a connection.");
+        options.addOption("s", true, "starting counter value.");
+        options.addOption("t", true, "types of gate.");
+        options.addOption("v", false, "version information.");
+
+        boolean debug = false;
+        String first = "127.0.0.1";
+        int port = 0;
+        int count = 1;
+        int latency = 0;
+        int jitter = 0;
+        double dropRate = 0.0;
+        double growth = 0.0;
+        long start = 0L;
+        String fleetFile = null;
+        String[] typeNames = { "3M" };
+        List<SupportedGateType> types = new ArrayList<>();
+        try
+        {
+            CommandLineParser parser = new BasicParser();
+            CommandLine cmd = parser.parse(options, args);
+            if (cmd.hasOption("v"))
+            {
+                System.err.println("GateSimulator version: " + GateSimulator.VERSION);
+                return;
+            }
+            if (cmd.hasOption("h") || cmd.hasOption("x"))
+            {
+                GateSimulator.displayHelp(0);
+            }
+            debug = cmd.hasOption("d");
+            if (cmd.hasOption("a"))
+            {
+                first = cmd.getOptionValue("a");
+                if (new GateIPv4(first).isValid() == false)
+                {
+                    System.err.println("**error: the IP used with '-a' is invalid.");
+                    GateSimulator.displayHelp(1);
+                }
+            }
+            if (cmd.hasOption("b"))
+            {
+                port = Integer.parseInt(cmd.getOptionValue("b"));
+            }
+            if (cmd.hasOption("n"))
+            {
+                count = Integer.parseInt(cmd.getOptionValue("n"));
+            }
+            if (cmd.hasOption("l"))
+            {
+                latency = Integer.parseInt(cmd.getOptionValue("l"));
+            }
+            if (cmd.hasOption("j"))
+            {
+                jitter = Integer.parseInt(cmd.getOptionValue("j"));
+            }
+            if (cmd.hasOption("r"))
+            {
+                dropRate = Double.parseDouble(cmd.getOptionValue("r"));
+            }
+            if (cmd.hasOption("g"))
+            {
+                growth = Double.parseDouble(cmd.getOptionValue("g"));
+            }
+            if (cmd.hasOption("s"))
+            {
+                start = Long.parseLong(cmd.getOptionValue("s"));
+            }
+            fleetFile = cmd.getOptionValue("o");
+            if (cmd.hasOption("R"))
+            {
+                try
+                {
+                    GateCodecs.loadQueryFrames(cmd.getOptionValue("R"));
+                }
+                catch (IOException ex)
+                {
+                    System.err.println("***error: unable to read reset frames '" 
+                            + cmd.getOptionValue("R") + "': " + ex.getMessage());
+                    System.exit(1);
+                }
+            }
+            if (cmd.hasOption("t"))
+            {
+                typeNames = cmd.getOptionValue("t").split(",");
+            }
+        }
+        catch (ParseException | NumberFormatException ex)
+        {
+            System.err.println("**error: " + ex.getMessage() + ".");
+            GateSimulator.displayHelp(1);
+        }
+        if (count < 1 || latency < 0 || jitter < 0 || dropRate < 0.0 
+                || dropRate > 1.0 || growth < 0.0 || port < 0 || port > 65535)
+        {
+            System.err.println("**error: a switch value is out of range.");
+            GateSimulator.displayHelp(1);
+        }
+        if (port > 0 && fleetFile != null)
+        {
+            System.err.println("**error: '-o' can't be used with '-b'.");
+            GateSimulator.displayHelp(1);
+        }
+        for (String name : typeNames)
+        {
+            SupportedGateType type = SupportedGateType.fromName(name.trim());
+            if (type == null || CustomerGate.getPort(type) == 0)
+            {
+                System.err.println("**error: can't simulate gate type '" + name + "'.");
+                GateSimulator.displayHelp(1);
+            }
+            types.add(type);
+        }
+
+        Random random = new Random();
+        final SimulatorServer server;
+        List<SimulatedGate> gates = new ArrayList<>(count);
+        try
+        {
+            server = new SimulatorServer(latency, jitter, dropRate, random, debug);
+            for (int i = 0; i < count; i++)
+            {
+                SupportedGateType type = types.get(i % types.size());
+                InetSocketAddress address = port > 0
+                        ? new InetSocketAddress(InetAddress.getByName(first), port + i)
+                        : new InetSocketAddress(GateSimulator.address(first, i), 
+                                CustomerGate.getPort(type));
+                SimulatedGate gate = SimulatedGate.getInstance(type, address, 
+                        start, growth, random);
+                try
+                {
+                    server.add(gate);
+                }
+                catch (IOException ex)
+                {
+                    System.err.println("***error: can't listen on " 
+                            + address.getAddress().getHostAddress() + ":" 
+                            + address.getPort() + ", " + ex.getMessage() + ".");
+                    System.exit(1);
+                }
+                gates.add(gate);
+            }
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(GateSimulator.class.getName()).log(Level.SEVERE, null, ex);
+            System.exit(1);
+            return;
+        }
+        if (fleetFile != null)
+        {
+            GateSimulator.writeFleet(fleetFile, gates, typeNames);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                server.stop();
+                System.err.println("answered " + (server.getQueries() - server.getDropped())
+                        + " queries, dropped " + server.getDropped() 
+                        + " connections, ignored " + server.getIgnored() 
+                        + " unknown requests.");
+            }
+        }, "simulator-shutdown"));
+        System.err.println("simulating " + gates.size() + " gate(s) from " 
+                + gates.get(0).getAddress().getAddress().getHostAddress() + ":" 
+                + gates.get(0).getAddress().getPort() + " to " 
+                + gates.get(gates.size() - 1).getAddress().getAddress().getHostAddress() 
+                + ":" + gates.get(gates.size() - 1).getAddress().getPort() + ".");
+        server.run();
+    }
+
+    /**
+     * @param first the first address.
+     * @param offset how many addresses after the first.
+     * @return the address.
+     * @throws UnknownHostException if the address runs past 255.255.255.255.
+     */
+    static InetAddress address(String first, int offset) throws UnknownHostException
+    {
+        byte[] octets = InetAddress.getByName(first).getAddress();
+        long value = ((octets[0] & 0xffL) << 24) | ((octets[1] & 0xff) << 16)
+                | ((octets[2] & 0xff) << 8) | (octets[3] & 0xff);
+        value += offset;
+        if (value > 0xffffffffL)
+        {
+            throw new UnknownHostException("address " + first + " + " + offset 
+                    + " is out of range");
+        }
+        return InetAddress.getByAddress(new byte[] {
+            (byte) (value >>> 24), (byte) (value >>> 16), 
+            (byte) (value >>> 8), (byte) value
+        });
+    }
+
+    /**
+     * Writes a fleet file that patroncount's '-f' switch can read.
+     * @param path the file.
+     * @param gates simulated gates.
+     * @param typeNames the names the gate types were given on the command
+     * line, gates take turns at each type.
+     */
+    private static void writeFleet(String path, List<SimulatedGate> gates, 
+            String[] typeNames)
+    {
+        try (PrintWriter out = new PrintWriter(new FileWriter(path)))
+        {
+            out.println("# " + gates.size() + " simulated gates.");
+            for (int i = 0; i < gates.size(); i++)
+            {
+                out.println(gates.get(i).getAddress().getAddress().getHostAddress() 
+                        + " " + typeNames[i % typeNames.length].trim());
+            }
+        }
+        catch (IOException ex)
+        {
+            System.err.println("***error: can't write fleet file '" + path 
+                    + "', " + ex.getMessage() + ".");
+            System.exit(1);
+        }
+    }
+}
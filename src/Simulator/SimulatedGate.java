@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Simulator;
+
+import RFIDEquipment.CustomerGate;
+import RFIDEquipment.SupportedGateType;
+import RFIDEquipment.SupportedQueryType;
+import java.net.InetSocketAddress;
+import java.util.Random;
+
+/**
+ * A virtual gate that answers count queries the way the real hardware does.
+ * Each detector has an in and an out counter that grow over time at a given
+ * average rate, and wrap at the width of the gate's counters just like the
+ * real thing. If a reset frame has been loaded for the gate's type, the 
+ * gate answers it by setting its counters to 0 and sending its counts.
+ *
+ * Simulated gates are used only by the {@link SimulatorServer} thread, so 
+ * they aren't thread safe.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public abstract class SimulatedGate
+{
+    protected final SupportedGateType type;
+    protected final InetSocketAddress address;
+    protected final byte[] query;
+    protected final byte[] resetQuery;
+    protected final long[] counters;
+    private final long counterMask;
+    private final double growth;
+    private final Random random;
+    private long lastUpdate;
+
+    /**
+     * @param type make and model of the gate.
+     * @param address where the gate listens.
+     * @param detectors number of detectors, each has an in and an out counter.
+     * @param counterMask the bits of a counter the gate reports, counters 
+     * wrap to 0 when they pass this value.
+     * @param start value of every counter when the simulation starts.
+     * @param growth average number of patrons per minute counted by each
+     * counter.
+     * @param random source of the counter increments.
+     */
+    protected SimulatedGate(SupportedGateType type, InetSocketAddress address,
+            int detectors, long counterMask, long start, double growth, Random random)
+    {
+        this.type       = type;
+        this.address    = address;
+        this.query      = CustomerGate.getQueryFrame(type, SupportedQueryType.CUSTOMER_COUNTS);
+        this.resetQuery = CustomerGate.getQueryFrame(type, SupportedQueryType.RESET_COUNTS);
+        this.counters   = new long[detectors * 2];
+        this.counterMask = counterMask;
+        this.growth     = growth / 60000.0;
+        this.random     = random;
+        this.lastUpdate = System.currentTimeMillis();
+        for (int i = 0; i < this.counters.length; i++)
+        {
+            this.counters[i] = start & counterMask;
+        }
+    }
+
+    /**
+     * Builds a simulated gate.
+     * @param type make and model of the gate, any type that is queried over
+     * the network.
+     * @param address where the gate listens.
+     * @param start value of every counter when the simulation starts.
+     * @param growth average number of patrons per minute counted by each
+     * counter.
+     * @param random source of the counter increments.
+     * @return the gate.
+     * @throws IllegalArgumentException if the type of gate can't be simulated.
+     */
+    public static SimulatedGate getInstance(SupportedGateType type, 
+            InetSocketAddress address, long start, double growth, Random random)
+    {
+        switch (type)
+        {
+            case _3M_9100_:
+                return new ThreeMSimulatedGate(address, start, growth, random);
+            case _FEIG_ID_ISC_LR2500_B_:
+                return new FeigSimulatedGate(type, address, 1, start, growth, random);
+            case _FEIG_ID_ISC_LR2500_B_DUAL_AISLE_:
+                return new FeigSimulatedGate(type, address, 2, start, growth, random);
+            default:
+                throw new IllegalArgumentException("can't simulate '" + type + "' gates");
+        }
+    }
+
+    /**
+     * @return make and model of the gate.
+     */
+    public SupportedGateType getType()
+    {
+        return this.type;
+    }
+
+    /**
+     * @return where the gate listens.
+     */
+    public InetSocketAddress getAddress()
+    {
+        return this.address;
+    }
+
+    /**
+     * @return the exact bytes of the count query this gate answers.
+     */
+    public byte[] getQuery()
+    {
+        return this.query;
+    }
+
+    /**
+     * @return the exact bytes of the reset command this gate answers, or 
+     * null if it doesn't take one.
+     */
+    public byte[] getResetQuery()
+    {
+        return this.resetQuery;
+    }
+
+    /**
+     * Sets every counter back to 0.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < this.counters.length; i++)
+        {
+            this.counters[i] = 0L;
+        }
+        this.lastUpdate = System.currentTimeMillis();
+    }
+
+    /**
+     * Counts the patrons that went through the gate since the last query,
+     * and builds the response to a count query.
+     * @return the response frame.
+     */
+    public byte[] respond()
+    {
+        long now = System.currentTimeMillis();
+        double expected = this.growth * (now - this.lastUpdate);
+        this.lastUpdate = now;
+        if (expected > 0.0)
+        {
+            for (int i = 0; i < this.counters.length; i++)
+            {
+                // Vary the count by up to 50% either side of the average.
+                double patrons = expected * (0.5 + this.random.nextDouble());
+                long whole = (long) patrons;
+                if (this.random.nextDouble() < patrons - whole)
+                {
+                    whole++;
+                }
+                this.counters[i] = (this.counters[i] + whole) & this.counterMask;
+            }
+        }
+        return this.frame();
+    }
+
+    /**
+     * @return the count response holding the current counters.
+     */
+    protected abstract byte[] frame();
+
+    /**
+     * Writes a 32 bit big-endian counter.
+     * @param frame response frame.
+     * @param offset where the counter starts.
+     * @param value the counter.
+     */
+    protected static void putCounter(byte[] frame, int offset, long value)
+    {
+        frame[offset]     = (byte) (value >>> 24);
+        frame[offset + 1] = (byte) (value >>> 16);
+        frame[offset + 2] = (byte) (value >>> 8);
+        frame[offset + 3] = (byte) value;
+    }
+
+    /**
+     * FEIG LR2500 in the advanced protocol: STX, a 2 byte frame length, the
+     * reader address, the echoed command and a status byte, then the 
+     * command's data and a CRC16. The client reads the in and out counters
+     * of the first aisle at bytes 12 and 16, and the second aisle's at 20 
+     * and 24. The reader answers the counts query with the same 32 byte 
+     * (0x20) frame whether one aisle is wired or two, so a single aisle 
+     * gate's second aisle reads zero.
+     */
+    private static class FeigSimulatedGate extends SimulatedGate
+    {
+        /** Bytes 3 to 11 of a count response, address, command, status and data. */
+        private final static byte[] HEADER = {
+            0x00, (byte) 0x9f, 0x00, 0x02, 0x00, 0x18, 0x01, 0x77, 0x00
+        };
+        /** Bytes 28 and 29, after the counters, as a real reader sends them. */
+        private final static byte[] TRAILER = { (byte) 0xea, (byte) 0xeb };
+        /** Length of a count response. */
+        private final static int LENGTH = 0x20;
+
+        FeigSimulatedGate(SupportedGateType type, InetSocketAddress address,
+                int aisles, long start, double growth, Random random)
+        {
+            super(type, address, aisles, 0xffffffffL, start, growth, random);
+        }
+
+        @Override
+        protected byte[] frame()
+        {
+            int length = LENGTH;
+            byte[] frame = new byte[length];
+            frame[0] = 0x02;
+            frame[1] = (byte) (length >>> 8);
+            frame[2] = (byte) length;
+            System.arraycopy(HEADER, 0, frame, 3, HEADER.length);
+            for (int i = 0; i < this.counters.length; i++)
+            {
+                putCounter(frame, 12 + i * 4, this.counters[i]);
+            }
+            System.arraycopy(TRAILER, 0, frame, 28, TRAILER.length);
+            int crc = FeigSimulatedGate.crc16(frame, length - 2);
+            frame[length - 2] = (byte) crc;
+            frame[length - 1] = (byte) (crc >>> 8);
+            return frame;
+        }
+
+        /**
+         * FEIG's CRC16, polynomial 0x8408 preset to 0xFFFF, sent least 
+         * significant byte first.
+         * @param frame bytes to check.
+         * @param count number of bytes from the start of the frame.
+         * @return the CRC.
+         */
+        static int crc16(byte[] frame, int count)
+        {
+            int crc = 0xffff;
+            for (int i = 0; i < count; i++)
+            {
+                crc ^= frame[i] & 0xff;
+                for (int bit = 0; bit < 8; bit++)
+                {
+                    crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0x8408 : crc >>> 1;
+                }
+            }
+            return crc;
+        }
+    }
+
+    /**
+     * 3M 9100, a fixed length frame with the out counter at byte 5 and the
+     * in counter at byte 9. Only the low 28 bits of each counter are counts.
+     * The real gate follows the counters with a checksum which the client 
+     * ignores, so two placeholder bytes are sent in its place.
+     */
+    private static class ThreeMSimulatedGate extends SimulatedGate
+    {
+        /** Bytes 0 to 4 of a count response, the client doesn't check them. */
+        private final static byte[] HEADER = { 0x64, 0x00, 0x0a, 0x06, 0x00 };
+
+        ThreeMSimulatedGate(InetSocketAddress address, long start, double growth,
+                Random random)
+        {
+            super(SupportedGateType._3M_9100_, address, 1, 0x0fffffffL, start, 
+                    growth, random);
+        }
+
+        @Override
+        protected byte[] frame()
+        {
+            byte[] frame = new byte[HEADER.length + 8 + 2];
+            System.arraycopy(HEADER, 0, frame, 0, HEADER.length);
+            putCounter(frame, 5, this.counters[1]);
+            putCounter(frame, 9, this.counters[0]);
+            return frame;
+        }
+    }
+}
@@ -0,0 +1,460 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Simulator;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves any number of {@link SimulatedGate}s from a single thread through
+ * a {@link Selector}, so thousands of gates can run on a laptop. 
+ * 
+ * Each gate answers its count query after a configurable latency plus a 
+ * random jitter, and can be made to hang up instead of answering to 
+ * simulate flaky network links. Connections stay open between queries, like
+ * the real gates, so both one query per connection and pooled connections
+ * can be tested. Anything that isn't the gate's count query is ignored.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class SimulatorServer
+{
+    private final Selector selector;
+    private final int latency;
+    private final int jitter;
+    private final double dropRate;
+    private final boolean debug;
+    private final Random random;
+    // Only touched by the server thread.
+    private final PriorityQueue<Reply> replies;
+    private volatile boolean running;
+    private volatile long queries;
+    private volatile long dropped;
+    private volatile long ignored;
+
+    /**
+     * @param latency milliseconds a gate takes to answer a query.
+     * @param jitter up to this many more milliseconds are added at random to
+     * each answer.
+     * @param dropRate chance, from 0.0 to 1.0, that a gate hangs up instead
+     * of answering a query.
+     * @param random source of jitter and drops.
+     * @param debug true to report each query.
+     * @throws IOException if the selector can't be opened.
+     */
+    public SimulatorServer(int latency, int jitter, double dropRate, 
+            Random random, boolean debug) throws IOException
+    {
+        this.selector = Selector.open();
+        this.latency  = latency;
+        this.jitter   = jitter;
+        this.dropRate = dropRate;
+        this.random   = random;
+        this.debug    = debug;
+        this.replies  = new PriorityQueue<>(64, new Comparator<Reply>()
+        {
+            @Override
+            public int compare(Reply a, Reply b)
+            {
+                return Long.compare(a.due - b.due, 0L);
+            }
+        });
+        this.running  = true;
+    }
+
+    /**
+     * Starts listening for a gate's queries. Gates must be added before
+     * {@link #run()} is called.
+     * @param gate the gate.
+     * @throws IOException if the gate's address can't be listened on.
+     */
+    public void add(SimulatedGate gate) throws IOException
+    {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        try
+        {
+            server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            server.bind(gate.getAddress(), 64);
+            server.configureBlocking(false);
+            server.register(this.selector, SelectionKey.OP_ACCEPT, gate);
+        }
+        catch (IOException ex)
+        {
+            server.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Answers queries until {@link #stop()} is called.
+     */
+    public void run()
+    {
+        while (this.running)
+        {
+            try
+            {
+                this.selector.select(this.selectTimeout());
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext())
+                {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (! key.isValid())
+                    {
+                        continue;
+                    }
+                    if (key.isAcceptable())
+                    {
+                        this.accept(key);
+                    }
+                    else
+                    {
+                        ((Connection) key.attachment()).ready(key);
+                    }
+                }
+                this.sendDue();
+            }
+            catch (IOException ex)
+            {
+                Logger.getLogger(SimulatorServer.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+        for (SelectionKey key : this.selector.keys())
+        {
+            try
+            {
+                key.channel().close();
+            }
+            catch (IOException ex)
+            {
+                Logger.getLogger(SimulatorServer.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+        try
+        {
+            this.selector.close();
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(SimulatorServer.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Stops the server, which closes every gate and connection.
+     */
+    public void stop()
+    {
+        this.running = false;
+        this.selector.wakeup();
+    }
+
+    /**
+     * @return number of count queries received.
+     */
+    public long getQueries()
+    {
+        return this.queries;
+    }
+
+    /**
+     * @return number of connections dropped instead of answering a query.
+     */
+    public long getDropped()
+    {
+        return this.dropped;
+    }
+
+    /**
+     * @return number of requests that weren't a count query.
+     */
+    public long getIgnored()
+    {
+        return this.ignored;
+    }
+
+    /**
+     * @return milliseconds until the next reply is due.
+     */
+    private long selectTimeout()
+    {
+        Reply next = this.replies.peek();
+        if (next == null)
+        {
+            return 0; // nothing to time, wait for a query.
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(next.due - System.nanoTime()) + 1);
+    }
+
+    private void accept(SelectionKey key) throws IOException
+    {
+        SocketChannel channel = ((ServerSocketChannel) key.channel()).accept();
+        if (channel == null)
+        {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.register(this.selector, SelectionKey.OP_READ, 
+                new Connection(channel, (SimulatedGate) key.attachment()));
+    }
+
+    /**
+     * Queues a gate's answer to a query.
+     * @param connection where the query came from.
+     * @param reset true if the query was a reset command.
+     */
+    private void schedule(Connection connection, boolean reset)
+    {
+        this.queries++;
+        int delay = this.latency;
+        if (this.jitter > 0)
+        {
+            delay += this.random.nextInt(this.jitter + 1);
+        }
+        long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        // Gates answer in the order they're asked, whatever the jitter.
+        if (connection.lastDue != 0L && due - connection.lastDue <= 0)
+        {
+            due = connection.lastDue + 1;
+        }
+        connection.lastDue = due;
+        this.replies.add(new Reply(connection, due, reset));
+    }
+
+    private void sendDue()
+    {
+        long now = System.nanoTime();
+        Reply reply;
+        while ((reply = this.replies.peek()) != null && now - reply.due >= 0)
+        {
+            this.replies.poll();
+            Connection connection = reply.connection;
+            if (! connection.channel.isOpen())
+            {
+                continue;
+            }
+            if (this.dropRate > 0.0 && this.random.nextDouble() < this.dropRate)
+            {
+                this.dropped++;
+                if (this.debug)
+                {
+                    System.err.println("gate " + connection.gate.getAddress() 
+                            + " dropping connection.");
+                }
+                connection.close();
+                continue;
+            }
+            if (reply.reset)
+            {
+                connection.gate.reset();
+            }
+            connection.send(connection.gate.respond());
+        }
+    }
+
+    /**
+     * An answer waiting for the gate's latency to pass.
+     */
+    private static class Reply
+    {
+        private final Connection connection;
+        private final long due;
+        private final boolean reset;
+
+        Reply(Connection connection, long due, boolean reset)
+        {
+            this.connection = connection;
+            this.due        = due;
+            this.reset      = reset;
+        }
+    }
+
+    /**
+     * A client connected to one of the gates.
+     */
+    private class Connection
+    {
+        private final SocketChannel channel;
+        private final SimulatedGate gate;
+        private final ByteBuffer request;
+        private final Queue<ByteBuffer> out;
+        private long lastDue;
+
+        Connection(SocketChannel channel, SimulatedGate gate)
+        {
+            this.channel = channel;
+            this.gate    = gate;
+            this.request = ByteBuffer.allocate(256);
+            this.out     = new ArrayDeque<>();
+        }
+
+        void ready(SelectionKey key)
+        {
+            try
+            {
+                if (key.isReadable())
+                {
+                    if (this.channel.read(this.request) < 0)
+                    {
+                        this.close();
+                        return;
+                    }
+                    this.parse();
+                }
+                if (key.isValid() && key.isWritable())
+                {
+                    this.flush();
+                }
+            }
+            catch (IOException ex)
+            {
+                // The client hung up.
+                this.close();
+            }
+        }
+
+        /**
+         * Finds count queries and reset commands in what has been read so far.
+         */
+        private void parse()
+        {
+            byte[] query = this.gate.getQuery();
+            byte[] reset = this.gate.getResetQuery();
+            int longest = reset == null ? query.length : Math.max(query.length, reset.length);
+            this.request.flip();
+            while (this.request.hasRemaining())
+            {
+                byte[] found = null;
+                if (this.matches(query))
+                {
+                    found = query;
+                }
+                else if (reset != null && this.matches(reset))
+                {
+                    found = reset;
+                }
+                if (found != null)
+                {
+                    this.request.position(this.request.position() + found.length);
+                    if (debug)
+                    {
+                        System.err.println("gate " + this.gate.getAddress() 
+                                + (found == query ? " queried." : " reset."));
+                    }
+                    schedule(this, found != query);
+                }
+                else if (this.request.remaining() < longest)
+                {
+                    // Wait for the rest of the frame.
+                    break;
+                }
+                else
+                {
+                    ignored++;
+                    if (debug)
+                    {
+                        System.err.println("gate " + this.gate.getAddress() 
+                                + " ignoring unknown request.");
+                    }
+                    this.request.position(this.request.limit());
+                }
+            }
+            this.request.compact();
+            if (! this.request.hasRemaining())
+            {
+                this.request.clear();
+            }
+        }
+
+        private boolean matches(byte[] query)
+        {
+            int start = this.request.position();
+            if (this.request.remaining() < query.length)
+            {
+                return false;
+            }
+            for (int i = 0; i < query.length; i++)
+            {
+                if (this.request.get(start + i) != query[i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void send(byte[] frame)
+        {
+            this.out.add(ByteBuffer.wrap(frame));
+            try
+            {
+                this.flush();
+            }
+            catch (IOException ex)
+            {
+                this.close();
+            }
+        }
+
+        private void flush() throws IOException
+        {
+            ByteBuffer next;
+            while ((next = this.out.peek()) != null)
+            {
+                this.channel.write(next);
+                if (next.hasRemaining())
+                {
+                    this.channel.keyFor(selector).interestOps(
+                            SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                this.out.poll();
+            }
+            this.channel.keyFor(selector).interestOps(SelectionKey.OP_READ);
+        }
+
+        void close()
+        {
+            try
+            {
+                this.channel.close();
+            }
+            catch (IOException ex)
+            {
+                Logger.getLogger(SimulatorServer.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+}
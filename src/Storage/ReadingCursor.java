@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Storage;
+
+import RFIDEquipment.ReadingStatus;
+import RFIDEquipment.SupportedGateType;
+
+/**
+ * Steps through stored gate readings. Each record is 80 bytes:
+ * <pre>
+ * long    timestamp, milliseconds since the epoch
+ * int     latency in microseconds
+ * byte    status, ordinal of ReadingStatus
+ * byte    number of detector counters, n
+ * byte    gate type, ordinal of SupportedGateType
+ * byte    unused
+ * long[8] detector counters, the first n are used
+ * </pre>
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class ReadingCursor extends RecordCursor
+{
+    final static int SIZE = 80;
+    final static int LATENCY = 8;
+    final static int STATUS = 12;
+    final static int COUNT = 13;
+    final static int TYPE = 14;
+    final static int COUNTERS = 16;
+    private final static ReadingStatus[] STATUSES = ReadingStatus.values();
+    private final static SupportedGateType[] TYPES = SupportedGateType.values();
+
+    ReadingCursor()
+    {
+        super();
+    }
+
+    /**
+     * @return time taken by the query in microseconds.
+     */
+    public int getLatency()
+    {
+        return this.buffer.getInt(this.offset + LATENCY);
+    }
+
+    /**
+     * @return how the query turned out.
+     */
+    public ReadingStatus getStatus()
+    {
+        return STATUSES[this.buffer.get(this.offset + STATUS)];
+    }
+
+    /**
+     * @return make and model of the gate.
+     */
+    public SupportedGateType getType()
+    {
+        return TYPES[this.buffer.get(this.offset + TYPE)];
+    }
+
+    /**
+     * @return number of detector counters.
+     */
+    public int getCounterCount()
+    {
+        return this.buffer.get(this.offset + COUNT);
+    }
+
+    /**
+     * @param index counter number, even numbers are in-counts and odd
+     * numbers are out-counts.
+     * @return value of the counter.
+     */
+    public long getCounter(int index)
+    {
+        return this.buffer.getLong(this.offset + COUNTERS + index * 8);
+    }
+
+    /**
+     * @return total in-count over all detectors, or -1 if the query failed.
+     */
+    public long getIn()
+    {
+        return this.sum(0);
+    }
+
+    /**
+     * @return total out-count over all detectors, or -1 if the query failed.
+     */
+    public long getOut()
+    {
+        return this.sum(1);
+    }
+
+    private long sum(int first)
+    {
+        int count = this.getCounterCount();
+        if (count == 0)
+        {
+            return -1;
+        }
+        long total = 0;
+        for (int i = first; i < count; i += 2)
+        {
+            total += this.getCounter(i);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Storage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Steps through stored records in time order, reading each field straight 
+ * out of the memory-mapped segment files, so no objects are created per 
+ * record. Call {@link #next()} before reading the first record.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public abstract class RecordCursor
+{
+    private final List<Segment> segments;
+    private final List<int[]> runs;
+    private int run;
+    private int index;
+    private int end;
+    private int size;
+    protected ByteBuffer buffer;
+    protected int offset;
+
+    RecordCursor()
+    {
+        this.segments = new ArrayList<>();
+        this.runs     = new ArrayList<>();
+        this.run      = -1;
+    }
+
+    /**
+     * Adds a run of records from one segment.
+     * @param segment the segment.
+     * @param start index of the first record.
+     * @param end index after the last record.
+     */
+    void add(Segment segment, int start, int end)
+    {
+        this.segments.add(segment);
+        this.runs.add(new int[] { start, end });
+        this.size += end - start;
+    }
+
+    /**
+     * @return total number of records the cursor steps through.
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Moves to the next record.
+     * @return true if there is one.
+     */
+    public boolean next()
+    {
+        while (this.run < 0 || ++this.index >= this.end)
+        {
+            if (++this.run >= this.runs.size())
+            {
+                return false;
+            }
+            int[] bounds = this.runs.get(this.run);
+            this.buffer = this.segments.get(this.run).getBuffer();
+            this.index  = bounds[0] - 1;
+            this.end    = bounds[1];
+        }
+        this.offset = this.segments.get(this.run).offset(this.index);
+        return true;
+    }
+
+    /**
+     * @return timestamp of the record in milliseconds since the epoch.
+     */
+    public long getTimestamp()
+    {
+        return this.buffer.getLong(this.offset);
+    }
+}
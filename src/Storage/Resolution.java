@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Storage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periods the {@link TimeSeriesStore} rolls traffic up into. Periods start
+ * on the minute, hour, or day in UTC.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public enum Resolution
+{
+    MINUTE("1m", TimeUnit.MINUTES.toMillis(1), 1440),
+    HOUR("1h", TimeUnit.HOURS.toMillis(1), 744),
+    DAY("1d", TimeUnit.DAYS.toMillis(1), 366);
+
+    private final String name;
+    private final long millis;
+    private final int capacity;
+
+    private Resolution(String name, long millis, int capacity)
+    {
+        this.name     = name;
+        this.millis   = millis;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return length of the period in milliseconds.
+     */
+    public long getMillis()
+    {
+        return this.millis;
+    }
+
+    /**
+     * @return records in each segment file, about a day, month, or year.
+     */
+    int getCapacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * @param timestamp milliseconds since the epoch.
+     * @return start of the period the time falls in.
+     */
+    public long periodStart(long timestamp)
+    {
+        return timestamp - Math.floorMod(timestamp, this.millis);
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.name;
+    }
+
+    /**
+     * @param name '1m', '1h' or '1d'.
+     * @return the resolution, or null if the name isn't recognized.
+     */
+    public static Resolution fromName(String name)
+    {
+        for (Resolution resolution : Resolution.values())
+        {
+            if (resolution.name.equalsIgnoreCase(name))
+            {
+                return resolution;
+            }
+        }
+        return null;
+    }
+}
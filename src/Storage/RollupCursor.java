@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Storage;
+
+/**
+ * Steps through stored rollups, the traffic through a gate in each minute,
+ * hour or day. Each record is 32 bytes:
+ * <pre>
+ * long   start of the period, milliseconds since the epoch
+ * long   patrons in
+ * long   patrons out
+ * int    number of successful polls
+ * int    number of failed polls
+ * </pre>
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class RollupCursor extends RecordCursor
+{
+    final static int SIZE = 32;
+    final static int IN = 8;
+    final static int OUT = 16;
+    final static int READINGS = 24;
+    final static int FAILURES = 28;
+
+    RollupCursor()
+    {
+        super();
+    }
+
+    /**
+     * @return patrons in during the period.
+     */
+    public long getIn()
+    {
+        return this.buffer.getLong(this.offset + IN);
+    }
+
+    /**
+     * @return patrons out during the period.
+     */
+    public long getOut()
+    {
+        return this.buffer.getLong(this.offset + OUT);
+    }
+
+    /**
+     * @return number of successful polls during the period.
+     */
+    public int getReadings()
+    {
+        return this.buffer.getInt(this.offset + READINGS);
+    }
+
+    /**
+     * @return number of failed polls during the period.
+     */
+    public int getFailures()
+    {
+        return this.buffer.getInt(this.offset + FAILURES);
+    }
+}
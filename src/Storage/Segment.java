@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A memory-mapped file of fixed width records. The file is created at its
+ * full size and records are appended until it's full, nothing is ever 
+ * rewritten except the last record, which rollups update in place. The 
+ * first record of every segment starts with its timestamp in milliseconds,
+ * and timestamps never go down.
+ *
+ * The file starts with a 16 byte header:
+ * <pre>
+ * int    magic number 'PCTS'
+ * short  format version
+ * short  record size in bytes
+ * int    capacity in records
+ * int    number of records written
+ * </pre>
+ * The record count is written after the record, so a crash never leaves a
+ * half written record in the count.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+class Segment
+{
+    final static int MAGIC = 0x50435453;
+    final static short VERSION = 1;
+    final static int HEADER = 16;
+    private final static int COUNT = 12;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int recordSize;
+    private final int capacity;
+    private volatile int count;
+
+    private Segment(Path path, MappedByteBuffer buffer)
+    {
+        this.path       = path;
+        this.buffer     = buffer;
+        this.recordSize = buffer.getShort(6);
+        this.capacity   = buffer.getInt(8);
+        this.count      = buffer.getInt(COUNT);
+    }
+
+    /**
+     * Creates a new, empty segment file.
+     * @param path the file, which mustn't exist.
+     * @param recordSize bytes in each record.
+     * @param capacity number of records the segment holds.
+     * @return the segment mapped for writing.
+     * @throws IOException if the file can't be created.
+     */
+    static Segment create(Path path, int recordSize, int capacity) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER + (long) recordSize * capacity);
+            buffer.putInt(0, MAGIC);
+            buffer.putShort(4, VERSION);
+            buffer.putShort(6, (short) recordSize);
+            buffer.putInt(8, capacity);
+            buffer.putInt(COUNT, 0);
+            return new Segment(path, buffer);
+        }
+    }
+
+    /**
+     * Maps an existing segment file.
+     * @param path the file.
+     * @param writable true to map the file for appending.
+     * @return the segment.
+     * @throws IOException if the file can't be mapped or isn't a segment.
+     */
+    static Segment open(Path path, boolean writable) throws IOException
+    {
+        try (FileChannel channel = writable 
+                ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ))
+        {
+            MappedByteBuffer buffer = channel.map(writable 
+                    ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                    0, channel.size());
+            if (channel.size() < HEADER || buffer.getInt(0) != MAGIC 
+                    || buffer.getShort(4) != VERSION)
+            {
+                throw new IOException("'" + path + "' isn't a segment file");
+            }
+            return new Segment(path, buffer);
+        }
+    }
+
+    /**
+     * @return the segment's file.
+     */
+    Path getPath()
+    {
+        return this.path;
+    }
+
+    /**
+     * @return the mapped file. Record i starts at {@link #offset(int)}.
+     */
+    ByteBuffer getBuffer()
+    {
+        return this.buffer;
+    }
+
+    /**
+     * @return number of records written.
+     */
+    int getCount()
+    {
+        return this.count;
+    }
+
+    /**
+     * @return true if no more records fit.
+     */
+    boolean isFull()
+    {
+        return this.count >= this.capacity;
+    }
+
+    /**
+     * @param index record number.
+     * @return where the record starts in the buffer.
+     */
+    int offset(int index)
+    {
+        return HEADER + index * this.recordSize;
+    }
+
+    /**
+     * @param index record number.
+     * @return timestamp of the record.
+     */
+    long getTimestamp(int index)
+    {
+        return this.buffer.getLong(this.offset(index));
+    }
+
+    /**
+     * Makes the record written at {@link #offset(int)} of the current count
+     * part of the segment.
+     */
+    void commit()
+    {
+        this.buffer.putInt(COUNT, this.count + 1);
+        this.count++;
+    }
+
+    /**
+     * Finds the first record at or after a time.
+     * @param timestamp the time in milliseconds since the epoch.
+     * @return index of the record, or the count if there isn't one.
+     */
+    int search(long timestamp)
+    {
+        int low = 0;
+        int high = this.count;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (this.getTimestamp(middle) < timestamp)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Writes changes out to the file.
+     */
+    void force()
+    {
+        this.buffer.force();
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An append-only series of {@link Segment}s of the same kind of record, in
+ * one directory. Segment files are named after the timestamp of their first
+ * record, for example 'raw-1539900000000.seg', so the segments covering a
+ * time range are found from the file names alone. Only the newest segment is
+ * written to, older segments are mapped read only when they're read.
+ *
+ * Logs aren't thread safe, callers synchronize.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+class SegmentLog
+{
+    private final Path directory;
+    private final String prefix;
+    private final int recordSize;
+    private final int capacity;
+    private final long retention;
+    private final TreeMap<Long, Path> segments;
+    private Segment active;
+
+    /**
+     * Opens the log, finding any segments already written.
+     * @param directory where the segment files are.
+     * @param prefix start of the segment file names.
+     * @param recordSize bytes in each record.
+     * @param capacity records in each segment.
+     * @param retention milliseconds segments are kept after their last 
+     * record, or 0 to keep them forever.
+     * @throws IOException if the directory can't be read.
+     */
+    SegmentLog(Path directory, String prefix, int recordSize, int capacity,
+            long retention) throws IOException
+    {
+        this.directory  = directory;
+        this.prefix     = prefix;
+        this.recordSize = recordSize;
+        this.capacity   = capacity;
+        this.retention  = retention;
+        this.segments   = new TreeMap<>();
+        if (Files.isDirectory(directory))
+        {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "-*.seg"))
+            {
+                for (Path file : files)
+                {
+                    String name = file.getFileName().toString();
+                    try
+                    {
+                        this.segments.put(Long.parseLong(name.substring(
+                                prefix.length() + 1, name.length() - 4)), file);
+                    }
+                    catch (NumberFormatException ex)
+                    {
+                        System.err.println("**warn: ignoring unexpected file '" + file + "'.");
+                    }
+                }
+            }
+        }
+        if (! this.segments.isEmpty())
+        {
+            this.active = Segment.open(this.segments.lastEntry().getValue(), true);
+        }
+    }
+
+    /**
+     * @return timestamp of the last record, or Long.MIN_VALUE if the log is
+     * empty.
+     */
+    long lastTimestamp()
+    {
+        if (this.active == null || this.active.getCount() == 0)
+        {
+            return Long.MIN_VALUE;
+        }
+        return this.active.getTimestamp(this.active.getCount() - 1);
+    }
+
+    /**
+     * @return buffer holding the last record, see {@link #lastOffset()}.
+     */
+    ByteBuffer getBuffer()
+    {
+        return this.active.getBuffer();
+    }
+
+    /**
+     * @return where the last record starts in {@link #getBuffer()}.
+     */
+    int lastOffset()
+    {
+        return this.active.offset(this.active.getCount() - 1);
+    }
+
+    /**
+     * Starts a new record, which isn't part of the log until 
+     * {@link #commit()} is called. Starts a new segment if the newest is full.
+     * @param timestamp the record's timestamp, which is written to it.
+     * @return where the record starts in {@link #getBuffer()}.
+     * @throws IOException if a new segment can't be created.
+     */
+    int append(long timestamp) throws IOException
+    {
+        if (this.active == null || this.active.isFull())
+        {
+            Files.createDirectories(this.directory);
+            Path file = this.directory.resolve(String.format("%s-%013d.seg", 
+                    this.prefix, timestamp));
+            this.active = Segment.create(file, this.recordSize, this.capacity);
+            this.segments.put(timestamp, file);
+            this.compact(timestamp);
+        }
+        int offset = this.active.offset(this.active.getCount());
+        this.active.getBuffer().putLong(offset, timestamp);
+        return offset;
+    }
+
+    /**
+     * Adds the record started by {@link #append(long)} to the log.
+     */
+    void commit()
+    {
+        this.active.commit();
+    }
+
+    /**
+     * Deletes the segments whose records are all older than the log's 
+     * retention. The newest segment is always kept.
+     * @param now the current time in milliseconds since the epoch.
+     */
+    void compact(long now)
+    {
+        if (this.retention <= 0)
+        {
+            return;
+        }
+        long cutoff = now - this.retention;
+        Iterator<Map.Entry<Long, Path>> entries = this.segments.entrySet().iterator();
+        while (entries.hasNext())
+        {
+            Map.Entry<Long, Path> entry = entries.next();
+            Long next = this.segments.higherKey(entry.getKey());
+            // A segment ends where the next one starts.
+            if (next == null || next > cutoff)
+            {
+                break;
+            }
+            try
+            {
+                Files.deleteIfExists(entry.getValue());
+                entries.remove();
+            }
+            catch (IOException ex)
+            {
+                System.err.println("**warn: unable to delete '" + entry.getValue()
+                        + "', " + ex.getMessage() + ".");
+                break;
+            }
+        }
+    }
+
+    /**
+     * Finds the records in a time range.
+     * @param from start of the range in milliseconds since the epoch.
+     * @param to end of the range, exclusive.
+     * @param cursor receives the runs of records in the range.
+     * @throws IOException if an older segment can't be mapped.
+     */
+    void range(long from, long to, RecordCursor cursor) throws IOException
+    {
+        Long first = this.segments.floorKey(from);
+        if (first == null)
+        {
+            first = from;
+        }
+        List<Path> files = new ArrayList<>(this.segments.subMap(first, true, to, false).values());
+        for (Path file : files)
+        {
+            Segment segment = this.active != null && file.equals(this.active.getPath())
+                    ? this.active : Segment.open(file, false);
+            int start = segment.search(from);
+            int end = segment.search(to);
+            if (end > start)
+            {
+                cursor.add(segment, start, end);
+            }
+        }
+    }
+
+    /**
+     * Writes the newest segment out to its file.
+     */
+    void force()
+    {
+        if (this.active != null)
+        {
+            this.active.force();
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2018 Andrew Nisbet <andrew.nisbet@epl.ca>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package Storage;
+
+import Analysis.CountDelta;
+import Analysis.DeltaStage;
+import Analysis.DeltaStatus;
+import RFIDEquipment.GateReading;
+import RFIDEquipment.ReadingStatus;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded store of gate readings. Each gate gets a directory holding an
+ * append-only log of its raw readings, and logs of the traffic through it
+ * in each minute, hour and day, all as fixed width records in memory-mapped
+ * segment files. Rollups are kept up to date as readings are appended, 
+ * using a {@link DeltaStage} to turn counters into traffic, so they never
+ * need rebuilding.
+ *
+ * Raw readings and minute rollups are only kept for a while, the segments
+ * past their retention are deleted as new segments are started. Hour and 
+ * day rollups are kept forever, at 32 bytes a record that's about 300 KB a
+ * year per gate.
+ *
+ * Reads return cursors over the mapped files, see {@link RecordCursor}. 
+ * Readings of different gates may be appended from different threads.
+ *
+ * @author Andrew Nisbet andrew.nisbet@epl.ca
+ * @version 1.0
+ * @since   2026-10-17
+ */
+public class TimeSeriesStore
+{
+    /** Default time raw readings are kept, in milliseconds. */
+    public final static long DEFAULT_RAW_RETENTION = TimeUnit.DAYS.toMillis(2);
+    /** Default time minute rollups are kept, in milliseconds. */
+    public final static long DEFAULT_MINUTE_RETENTION = TimeUnit.DAYS.toMillis(7);
+    /** Raw readings in each segment, a day's worth at one a minute. */
+    private final static int RAW_CAPACITY = 1440;
+    private final Path root;
+    private final long rawRetention;
+    private final long minuteRetention;
+    private final DeltaStage deltas;
+    private final ConcurrentMap<String, GateSeries> series;
+
+    /**
+     * Opens a store with the default retention times.
+     * @param root directory of the store, created if it doesn't exist.
+     * @throws IOException if the directory can't be created.
+     */
+    public TimeSeriesStore(Path root) throws IOException
+    {
+        this(root, DEFAULT_RAW_RETENTION, DEFAULT_MINUTE_RETENTION);
+    }
+
+    /**
+     * @param root directory of the store, created if it doesn't exist.
+     * @param rawRetention milliseconds raw readings are kept, or 0 for ever.
+     * @param minuteRetention milliseconds minute rollups are kept, or 0 for
+     * ever.
+     * @throws IOException if the directory can't be created.
+     */
+    public TimeSeriesStore(Path root, long rawRetention, long minuteRetention)
+            throws IOException
+    {
+        this.root            = Files.createDirectories(root);
+        this.rawRetention    = rawRetention;
+        this.minuteRetention = minuteRetention;
+        this.deltas          = new DeltaStage(0);
+        this.series          = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Stores a reading and adds its traffic to the gate's rollups.
+     * @param reading the reading.
+     * @throws IOException if the segment files can't be written.
+     */
+    public void append(GateReading reading) throws IOException
+    {
+        GateSeries gate = this.getSeries(reading.getGate());
+        synchronized (gate)
+        {
+            gate.append(reading);
+        }
+    }
+
+    /**
+     * Reads a gate's raw readings.
+     * @param gate id of the gate, usually its IP.
+     * @param from start of the range in milliseconds since the epoch.
+     * @param to end of the range, exclusive.
+     * @return the readings in the range, oldest first.
+     * @throws IOException if the segment files can't be read.
+     */
+    public ReadingCursor readings(String gate, long from, long to) throws IOException
+    {
+        ReadingCursor cursor = new ReadingCursor();
+        GateSeries series = this.getSeries(gate);
+        synchronized (series)
+        {
+            series.raw.range(from, to, cursor);
+        }
+        return cursor;
+    }
+
+    /**
+     * Reads a gate's rollups.
+     * @param gate id of the gate, usually its IP.
+     * @param resolution length of the rollup periods.
+     * @param from start of the range in milliseconds since the epoch.
+     * @param to end of the range, exclusive.
+     * @return the rollups whose periods start in the range, oldest first.
+     * @throws IOException if the segment files can't be read.
+     */
+    public RollupCursor rollups(String gate, Resolution resolution, long from, 
+            long to) throws IOException
+    {
+        RollupCursor cursor = new RollupCursor();
+        GateSeries series = this.getSeries(gate);
+        synchronized (series)
+        {
+            series.rollups[resolution.ordinal()].range(from, to, cursor);
+        }
+        return cursor;
+    }
+
+    /**
+     * Deletes the raw and minute segments that are past their retention.
+     * This also happens whenever a gate starts a new segment.
+     */
+    public void compact()
+    {
+        long now = System.currentTimeMillis();
+        for (GateSeries gate : this.series.values())
+        {
+            synchronized (gate)
+            {
+                gate.raw.compact(now);
+                gate.rollups[Resolution.MINUTE.ordinal()].compact(now);
+            }
+        }
+    }
+
+    /**
+     * Writes everything appended so far out to the segment files.
+     */
+    public void flush()
+    {
+        for (GateSeries gate : this.series.values())
+        {
+            synchronized (gate)
+            {
+                gate.raw.force();
+                for (SegmentLog log : gate.rollups)
+                {
+                    log.force();
+                }
+            }
+        }
+    }
+
+    private GateSeries getSeries(String gate) throws IOException
+    {
+        GateSeries gateSeries = this.series.get(gate);
+        if (gateSeries == null)
+        {
+            GateSeries created = new GateSeries(gate);
+            gateSeries = this.series.putIfAbsent(gate, created);
+            if (gateSeries == null)
+            {
+                gateSeries = created;
+            }
+        }
+        return gateSeries;
+    }
+
+    /**
+     * @param gate id of a gate.
+     * @return name of the gate's directory, the id with anything but 
+     * letters, digits, '.', '-' and '_' replaced with '_'.
+     */
+    static String directoryName(String gate)
+    {
+        return gate.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /**
+     * The logs of one gate. Guarded by its own lock.
+     */
+    private class GateSeries
+    {
+        private final String gate;
+        private final SegmentLog raw;
+        private final SegmentLog[] rollups;
+
+        GateSeries(String gate) throws IOException
+        {
+            Path directory = root.resolve(TimeSeriesStore.directoryName(gate));
+            this.gate    = gate;
+            this.raw     = new SegmentLog(directory, "raw", ReadingCursor.SIZE,
+                    RAW_CAPACITY, rawRetention);
+            this.rollups = new SegmentLog[Resolution.values().length];
+            for (Resolution resolution : Resolution.values())
+            {
+                this.rollups[resolution.ordinal()] = new SegmentLog(directory, 
+                        resolution.toString(), RollupCursor.SIZE, resolution.getCapacity(),
+                        resolution == Resolution.MINUTE ? minuteRetention : 0L);
+            }
+            this.resume();
+        }
+
+        /**
+         * Picks up the traffic count from the gate's last stored reading, so
+         * the first reading after a restart isn't just a baseline.
+         */
+        private void resume() throws IOException
+        {
+            long last = this.raw.lastTimestamp();
+            if (last == Long.MIN_VALUE)
+            {
+                return;
+            }
+            ReadingCursor cursor = new ReadingCursor();
+            this.raw.range(last, last + 1, cursor);
+            if (cursor.next() && cursor.getStatus() == ReadingStatus.OK)
+            {
+                long[] counters = new long[cursor.getCounterCount()];
+                for (int i = 0; i < counters.length; i++)
+                {
+                    counters[i] = cursor.getCounter(i);
+                }
+                deltas.accept(new GateReading(this.gate, cursor.getType(), 
+                        cursor.getTimestamp(), counters, counters.length, 
+                        cursor.getLatency()));
+            }
+        }
+
+        void append(GateReading reading) throws IOException
+        {
+            if (reading.getTimestamp() < this.raw.lastTimestamp())
+            {
+                System.err.println("**warn: ignoring reading of " + this.gate 
+                        + " older than the last one stored.");
+                return;
+            }
+            int offset = this.raw.append(reading.getTimestamp());
+            ByteBuffer buffer = this.raw.getBuffer();
+            buffer.putInt(offset + ReadingCursor.LATENCY, 
+                    (int) Math.min(reading.getLatency(), Integer.MAX_VALUE));
+            buffer.put(offset + ReadingCursor.STATUS, (byte) reading.getStatus().ordinal());
+            buffer.put(offset + ReadingCursor.COUNT, (byte) reading.getCounterCount());
+            buffer.put(offset + ReadingCursor.TYPE, (byte) reading.getType().ordinal());
+            for (int i = 0; i < reading.getCounterCount(); i++)
+            {
+                buffer.putLong(offset + ReadingCursor.COUNTERS + i * 8, reading.getCounter(i));
+            }
+            this.raw.commit();
+            this.rollup(deltas.accept(reading));
+        }
+
+        /**
+         * Adds traffic to the periods it ended in.
+         */
+        private void rollup(CountDelta delta) throws IOException
+        {
+            for (Resolution resolution : Resolution.values())
+            {
+                SegmentLog log = this.rollups[resolution.ordinal()];
+                long period = resolution.periodStart(delta.getEnd());
+                long last = log.lastTimestamp();
+                int offset;
+                if (period == last)
+                {
+                    offset = log.lastOffset();
+                }
+                else if (period > last)
+                {
+                    offset = log.append(period);
+                    ByteBuffer buffer = log.getBuffer();
+                    buffer.putLong(offset + RollupCursor.IN, 0L);
+                    buffer.putLong(offset + RollupCursor.OUT, 0L);
+                    buffer.putInt(offset + RollupCursor.READINGS, 0);
+                    buffer.putInt(offset + RollupCursor.FAILURES, 0);
+                    log.commit();
+                }
+                else
+                {
+                    continue; // the period has already been rolled up.
+                }
+                ByteBuffer buffer = log.getBuffer();
+                if (delta.getStatus() == DeltaStatus.NO_DATA)
+                {
+                    buffer.putInt(offset + RollupCursor.FAILURES, 
+                            buffer.getInt(offset + RollupCursor.FAILURES) + 1);
+                    continue;
+                }
+                buffer.putInt(offset + RollupCursor.READINGS, 
+                        buffer.getInt(offset + RollupCursor.READINGS) + 1);
+                if (delta.hasTraffic())
+                {
+                    buffer.putLong(offset + RollupCursor.IN, 
+                            buffer.getLong(offset + RollupCursor.IN) + delta.getIn());
+                    buffer.putLong(offset + RollupCursor.OUT, 
+                            buffer.getLong(offset + RollupCursor.OUT) + delta.getOut());
+                }
+            }
+        }
+    }
+}
@@ -18,7 +18,52 @@ package patroncount;
 
 import RFIDEquipment.SupportedGateType;
 import RFIDEquipment.CustomerGate;
+import Analysis.DeltaStage;
+import Analysis.TrafficAggregator;
+import Metrics.MetricsRegistry;
+import Metrics.MetricsServer;
+import Network.CircuitBreaker;
 import Network.GateIPv4;
+import Network.SegmentLimiter;
+import Network.SelectorTransport;
+import Output.JdbcSink;
+import Output.ReadingEncoder;
+import Polling.FleetConfig;
+import Polling.FleetPoller;
+import Polling.FleetReset;
+import Polling.GateEntry;
+import Polling.LearnedTimeouts;
+import Polling.PollingDaemon;
+import Polling.ReadingCache;
+import Server.QueryServer;
+import RFIDEquipment.GateCodecs;
+import RFIDEquipment.GateReading;
+import RFIDEquipment.ResultsListener;
+import Storage.Resolution;
+import Storage.RollupCursor;
+import Storage.ReadingCursor;
+import Storage.TimeSeriesStore;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.cli.BasicParser;
@@ -37,6 +82,12 @@ import org.apache.commons.cli.ParseException;
  * trailing pipe is also added to conform the the output of the original 
  * application. 
  * 
+ * A whole fleet of gates can be queried at once with '-f', in which case each
+ * gate's counts are prefixed with its IP: 'ip|in|out|'. With '--daemon' the
+ * fleet is polled repeatedly from a single long running process. Fleet and 
+ * daemon results can also be written as CSV, JSON Lines, or binary records 
+ * with '-e'.
+ * 
  * @author Andrew Nisbet andrew.nisbet@epl.ca
  * @version 1.0
  * @since   2018-10-22
@@ -44,11 +95,19 @@ import org.apache.commons.cli.ParseException;
 public class Patroncount
 {
     private static boolean DEBUG;
-    private final static String VERSION = "1.2.1";
+    private final static String VERSION = "1.4.0";
+    private final static int DEFAULT_INTERVAL = 60;
 
     public static void displayHelp(int i)
     {
         System.err.println("Usage: patroncount.jar [-dhvx] [-i gate_ip] [-t gate_type] [-s {integer}]");
+        System.err.println("       patroncount.jar [-dhnvx] [-f fleet_file | -l {file|-}] [-c {integer}] [-e format]");
+        System.err.println("           [-G segment_file] [-T timeouts_file] [-J db_file]");
+        System.err.println("       patroncount.jar --daemon [-dr] [-f fleet_file] [-c {integer}] [-e format] [-p {seconds}] [-o file] [-S dir] [-A site_file]");
+        System.err.println("           [-B {integer}] [-M [address:]port] [-G segment_file] [-T timeouts_file] [-J db_file]");
+        System.err.println("       patroncount.jar --reset frames_file -f fleet_file [-d] [-c {integer}] [-W HH:MM]");
+        System.err.println("       patroncount.jar --serve [address:]port [-d] [-f fleet_file] [-c {integer}] [-C {seconds}]");
+        System.err.println("       patroncount.jar -S dir -H {raw|1m|1h|1d} -i gate_ip [-w {hours}]");
         System.err.println(" Exmaple: Patroncount -g 10.2.19.113");
         System.err.println("    Only IPv4 is currently supported. This may change.");
         System.err.println("    This application will query a patron gate for patron in and out counts.");
@@ -57,12 +116,100 @@ public class Patroncount
         System.err.println(" The application currently supports the following RFID gate models.");
         System.err.println();
         System.err.println(" Switches:");
+        System.err.println(" -A{file} with '--daemon', keeps running totals of patrons in and out, and the");
+        System.err.println("   occupancy, of each aisle, entrance, branch and region, reported with '-M'.");
+        System.err.println("   The file has one 'ip region branch entrance [aisle ...]' line per gate.");
+        System.err.println("   Each in, out detector pair of the gate counts toward the aisle in the");
+        System.err.println("   same place, the last aisle taking any extra pairs. A gate without aisles");
+        System.err.println("   is a single aisle named after its IP. Gates not in the file only count");
+        System.err.println("   toward the system totals.");
+        System.err.println(" -B{integer} with '--daemon', stops polling a gate after this many failed");
+        System.err.println("   polls in a row, and prints '-1|-1|' for it without waiting on the network.");
+        System.err.println("   The gate is tried again after 5 to 10 seconds, then after twice as long");
+        System.err.println("   each time it still fails, up to 5 minutes. 'csv' and 'json' output show");
+        System.err.println("   these polls as CIRCUIT_OPEN. The default is " 
+                + CircuitBreaker.DEFAULT_THRESHOLD + ", 0 always polls every gate.");
+        System.err.println(" -C{seconds} with '--serve', how long a gate's reading is reused before the gate");
+        System.err.println("   is queried again. The default is " + TimeUnit.MILLISECONDS.toSeconds(ReadingCache.DEFAULT_TTL)
+                + " seconds, 0 only shares queries that are under way.");
+        System.err.println(" -c{integer} maximum number of gates queried at the same time with '-f' or '-l'.");
+        System.err.println("   The default is " + FleetPoller.DEFAULT_CONCURRENCY + ".");
         System.err.println(" -d output debug information.");
+        System.err.println(" --daemon (or -D) keeps running and polls every gate in the '-f' fleet");
+        System.err.println("   file every '-p' seconds. Each poll prints 'timestamp|ip|in_count|out_count|'.");
+        System.err.println(" -e{pipe|csv|json|binary} with '-f', '-l' or '--daemon', the output format. 'pipe'");
+        System.err.println("   is the default and prints the lines described here. 'csv' and 'json' (JSON");
+        System.err.println("   Lines) include the gate type, status, each detector's counters and the");
+        System.err.println("   query latency. 'binary' writes compact length prefixed records.");
+        System.err.println(" -f{file} queries every gate listed in the file, one 'ip type [seconds]'");
+        System.err.println("   entry per line, where type is any value accepted by '-t'. Gates are");
+        System.err.println("   queried in parallel and each prints 'ip|in_count|out_count|'.");
         System.err.println(" -h usage message.");
+        System.err.println(" -G{file} with '-f', '-l' or '--daemon', limits the queries on each network");
+        System.err.println("   segment, so gates behind one slow branch link aren't all queried at once,");
+        System.err.println("   while gates on other segments still are. A segment is a /24 subnet, or a");
+        System.err.println("   labelled list of subnets. The file sets 'prefix' (default " + SegmentLimiter.DEFAULT_PREFIX 
+                + "), 'in.flight' queries");
+        System.err.println("   per segment (default " + SegmentLimiter.DEFAULT_IN_FLIGHT 
+                + "), 'rate' of queries started per second (default 0,");
+        System.err.println("   no limit) and 'burst' (default 'in.flight'). 'segment.NAME=10.2.30.0/24,...'");
+        System.err.println("   labels a segment, and 'in.flight.NAME', 'rate.NAME' and 'burst.NAME' set");
+        System.err.println("   its own limits.");
+        System.err.println(" -H{raw|1m|1h|1d} prints the readings of the '-i' gate kept in the '-S' store");
+        System.err.println("   over the last '-w' hours as 'timestamp|ip|in_count|out_count|', or with");
+        System.err.println("   1m, 1h or 1d, the patrons in and out each minute, hour or day (UTC).");
         System.err.println(" -i{10.0.0.127} the IPv4 address of the target gate.");
-        System.err.println(" -s{seconds} Sets the expected delay between having received the query to the");
-        System.err.println("   time it takes to respond, after which the gate is deemed to be off line.");
-        System.err.println("   Each gate type has its own default value, so you shouldn't need this.");
+        System.err.println(" -J{file} with '-f', '-l' or '--daemon', also writes every reading to a database");
+        System.err.println("   table in batches. The file sets the JDBC 'url', and optionally 'user',");
+        System.err.println("   'password', 'table' (default " + JdbcSink.DEFAULT_TABLE + "), 'batch.size' (default "
+                + JdbcSink.DEFAULT_BATCH_SIZE + ") and");
+        System.err.println("   'flush.seconds' (default " + TimeUnit.MILLISECONDS.toSeconds(JdbcSink.DEFAULT_FLUSH_INTERVAL)
+                + "). The database's JDBC driver must be on the class path.");
+        System.err.println(" --serve{[address:]port} (or -L) answers gate queries over HTTP until stopped.");
+        System.err.println("   GET /gates/{ip}/counts answers 'in|out|', add '?format=json' (or csv, pipe)");
+        System.err.println("   for the '-e' format, and '&type=' for the gate type if it isn't 3M or in");
+        System.err.println("   the '-f' fleet file. POST /query takes 'ip type [seconds]' lines, like a");
+        System.err.println("   fleet file, and answers with a line per gate in the '?format=' format.");
+        System.err.println("   Clients asking about the same gate at once share a single query of it,");
+        System.err.println("   see '-C'. The address is 127.0.0.1 unless given.");
+        System.err.println(" -l{file|-} like '-f', but reads the gates from the file, or standard in with");
+        System.err.println("   '-', and queries each as soon as its line is read. Each gate's line is");
+        System.err.println("   printed as soon as it's done, so they come in the order the gates answer.");
+        System.err.println(" -M{[address:]port} with '--daemon', serves per gate connection and query");
+        System.err.println("   metrics for Prometheus on http://address:port/metrics. The address is");
+        System.err.println("   127.0.0.1 unless given.");
+        System.err.println(" -n with '-f' or '-l', queries the whole fleet from a single non-blocking thread");
+        System.err.println("   instead of a thread per gate.");
+        System.err.println(" -o{file} with '--daemon', appends results to the file instead of standard out.");
+        System.err.println(" -p{seconds} with '--daemon', the time between polls of each gate.");
+        System.err.println("   The default is " + DEFAULT_INTERVAL + " seconds.");
+        System.err.println(" --reset{file} (or -R) with '-f', reads the final counts of every gate and");
+        System.err.println("   resets its counters, in parallel, printing 'ip|in_count|out_count|outcome|attempts|'");
+        System.err.println("   per gate, where outcome is RESET, FAILED or UNSUPPORTED. Each gate is");
+        System.err.println("   tried up to " + FleetReset.DEFAULT_ATTEMPTS + " times. The file holds each gate type's reset frame in");
+        System.err.println("   hex as 'type.RESET_COUNTS=hex', for example 'FEIGx2.RESET_COUNTS=02...',");
+        System.err.println("   and the gate must answer it with a frame like its count reply. Gates");
+        System.err.println("   without a frame aren't touched. Exits with 1 if any gate failed.");
+        System.err.println(" -r (or --deltas) with '--daemon', prints the patrons in and out since the");
+        System.err.println("   gate's previous poll instead of its counters. Counter wrap around and");
+        System.err.println("   gate resets are accounted for, and the first poll of each gate only");
+        System.err.println("   sets the starting point so prints nothing.");
+        System.err.println(" -S{directory} with '--daemon', also keeps every reading in a store in this");
+        System.err.println("   directory, with running totals of patrons per minute, hour and day.");
+        System.err.println("   Readings are kept for " + TimeUnit.MILLISECONDS.toDays(TimeSeriesStore.DEFAULT_RAW_RETENTION)
+                + " days, minutes for " + TimeUnit.MILLISECONDS.toDays(TimeSeriesStore.DEFAULT_MINUTE_RETENTION)
+                + " days, and hours and days for ever.");
+        System.err.println(" -s{seconds} Sets the longest delay between having sent the query and the");
+        System.err.println("   gate's response, after which the gate is deemed to be off line. Gates");
+        System.err.println("   that respond sooner are read as soon as their response arrives.");
+        System.err.println("   Each gate type has its own default value, so you shouldn't need this,");
+        System.err.println("   and 0 uses it. Fractions like '0.5' set the delay in milliseconds.");
+        System.err.println(" -T{file} with '-f', '-l' or '--daemon', learns how long to wait for each gate");
+        System.err.println("   from how quickly it has answered before, and keeps what was learned in");
+        System.err.println("   the file so it survives restarts. The file can also set the 'floor' and");
+        System.err.println("   'ceiling' of every learned timeout in milliseconds, and the safety");
+        System.err.println("   'factor' response times are multiplied by. Gates given a timeout in");
+        System.err.println("   the fleet file keep it.");
         System.err.println(" -t{[3M]|[FEIG|FEIGx1]|FEIGx2|OFFLINE} (case insensitive)");
         System.err.println("   Specifies the type, (model and manufacturer) of the target gate.");
         System.err.println("   The default is '3M', in which case -t is optional.");
@@ -70,6 +217,9 @@ public class Patroncount
         System.err.println("   'offline', 'unknown', 'Undefined' are all equivalent and will "
                 + "always return '-1|-1|'.");
         System.err.println(" -v display version information then exit.");
+        System.err.println(" -W{HH:MM[:SS]} with '--reset', waits for the next time the clock reads this");
+        System.err.println("   before resetting, or resets right away if it did less than a minute ago.");
+        System.err.println(" -w{hours} with '-H', how far back to print. The default is 24 hours.");
         System.err.println(" -x usage message. Same as -h, but consistent with other applications.");
         // TODO: add timeout for operations to match the times in the -t flag.
         // TODO: Exceptions should exit, not hang.
@@ -87,19 +237,66 @@ public class Patroncount
 //        String host = "10.2.19.113";  // 3M - IDY gate specifically
 //        String host = "10.2.44.12"; // FEIGx1 - HVY gate specifically
 //        String host = "10.2.30.38"; // FEIGx2 - LON gate specifically
+        if (Patroncount.quickQuery(args))
+        {
+            return;
+        }
         // First get the valid options
         Options options = new Options();
+        options.addOption("A", true, "daemon site file of gate locations.");
+        options.addOption("B", true, "daemon failures before a gate stops being polled.");
+        options.addOption("C", true, "server cache time to live (in seconds).");
+        options.addOption("c", true, "maximum number of gates queried at once.");
         options.addOption("d", false, "turns on debug information.");
+        options.addOption("D", "daemon", false, "poll the fleet until stopped.");
+        options.addOption("e", true, "output format of fleet results.");
+        options.addOption("f", true, "file of gates to query.");
         options.addOption("h", false, "usage help message.");
+        options.addOption("G", true, "network segment limits file.");
+        options.addOption("H", true, "history resolution.");
         options.addOption("x", false, "usage help message.");
         options.addOption("i", true, "gate IP. The IPv4 address for the gate to poll.");
+        options.addOption("J", true, "database connection file.");
+        options.addOption("L", "serve", true, "serve gate queries over HTTP on this address.");
+        options.addOption("l", true, "file of gates to stream, or '-' for standard in.");
+        options.addOption("M", true, "daemon metrics address.");
+        options.addOption("n", false, "non-blocking fleet queries.");
+        options.addOption("o", true, "daemon output file.");
+        options.addOption("p", true, "daemon polling interval (in seconds).");
+        options.addOption("R", "reset", true, "file of reset frames, reads then resets every gate.");
+        options.addOption("r", "deltas", false, "daemon prints traffic between polls.");
         options.addOption("s", true, "sets the hardware delay (in seconds).");
+        options.addOption("S", true, "directory of the reading store.");
         options.addOption("t", true, "type, or model of gate target.");
+        options.addOption("T", true, "learned timeouts file.");
         options.addOption("v", false, "version information.");
+        options.addOption("W", true, "time of day to reset at.");
+        options.addOption("w", true, "history window (in hours).");
         
-        CustomerGate gate;
         String ip = "10.0.0.127";
         int timeout = 0;
+        String fleetFile = null;
+        boolean nonBlocking = false;
+        boolean streaming = false;
+        boolean daemon = false;
+        boolean deltas = false;
+        InetSocketAddress serve = null;
+        long cacheTtl = ReadingCache.DEFAULT_TTL;
+        String storeDir = null;
+        InetSocketAddress metrics = null;
+        String timeoutFile = null;
+        String sinkFile = null;
+        String siteFile = null;
+        String resetFile = null;
+        String segmentFile = null;
+        long resetAt = 0L;
+        int breakerThreshold = CircuitBreaker.DEFAULT_THRESHOLD;
+        String history = null;
+        int window = 24;
+        String format = "pipe";
+        int interval = DEFAULT_INTERVAL;
+        String outputFile = null;
+        int concurrency = FleetPoller.DEFAULT_CONCURRENCY;
         SupportedGateType gateType = SupportedGateType._3M_9100_;
         try
         {
@@ -116,7 +313,139 @@ public class Patroncount
             {
                 DEBUG = true;
             }
-            if (cmd.hasOption("i")) // gate IP
+            storeDir = cmd.getOptionValue("S");
+            if (cmd.hasOption("L")) // serve queries over HTTP
+            {
+                serve = Patroncount.parseAddress(cmd.getOptionValue("L"));
+                if (serve == null)
+                {
+                    System.err.println("**error: '--serve' must be a port, or address:port.");
+                    Patroncount.displayHelp(1);
+                }
+                if (cmd.hasOption("D") || cmd.hasOption("l"))
+                {
+                    System.err.println("**error: '--serve' can't be used with '--daemon' or '-l'.");
+                    Patroncount.displayHelp(1);
+                }
+                if (cmd.hasOption("C"))
+                {
+                    try
+                    {
+                        cacheTtl = GateEntry.parseTimeout(cmd.getOptionValue("C"));
+                    }
+                    catch (IllegalArgumentException ex)
+                    {
+                        System.err.println("**error: '-C' must be 0 or more seconds, up to a day.");
+                        Patroncount.displayHelp(1);
+                    }
+                }
+            }
+            if (cmd.hasOption("f") || cmd.hasOption("l") || serve != null) // fleet of gates
+            {
+                fleetFile = cmd.getOptionValue("f");
+                if (fleetFile == null)
+                {
+                    if (cmd.hasOption("l"))
+                    {
+                        fleetFile = cmd.getOptionValue("l");
+                        streaming = true;
+                    }
+                }
+                else if (cmd.hasOption("l"))
+                {
+                    System.err.println("**error: '-f' and '-l' can't be used together.");
+                    Patroncount.displayHelp(1);
+                }
+                nonBlocking = cmd.hasOption("n");
+                daemon = cmd.hasOption("D");
+                if (daemon && streaming)
+                {
+                    System.err.println("**error: '--daemon' requires a fleet file"
+                            + " specified with the '-f' flag.");
+                    Patroncount.displayHelp(1);
+                }
+                deltas = cmd.hasOption("r");
+                resetFile = cmd.getOptionValue("R");
+                if (resetFile != null && (daemon || streaming || serve != null))
+                {
+                    System.err.println("**error: '--reset' requires a fleet file specified"
+                            + " with the '-f' flag, and can't be used with '--daemon' or '--serve'.");
+                    Patroncount.displayHelp(1);
+                }
+                if (cmd.hasOption("W"))
+                {
+                    try
+                    {
+                        resetAt = Patroncount.nextTime(LocalTime.parse(cmd.getOptionValue("W")));
+                    }
+                    catch (DateTimeParseException ex)
+                    {
+                        System.err.println("**error: '-W' must be a time of day, like 00:00.");
+                        Patroncount.displayHelp(1);
+                    }
+                }
+                if (cmd.hasOption("p"))
+                {
+                    interval = Patroncount.parseNumber(cmd.getOptionValue("p"));
+                    if (interval < 1)
+                    {
+                        System.err.println("**error: '-p' must be at least 1 second.");
+                        Patroncount.displayHelp(1);
+                    }
+                }
+                outputFile = cmd.getOptionValue("o");
+                timeoutFile = cmd.getOptionValue("T");
+                sinkFile = cmd.getOptionValue("J");
+                siteFile = cmd.getOptionValue("A");
+                segmentFile = cmd.getOptionValue("G");
+                if (cmd.hasOption("M"))
+                {
+                    metrics = Patroncount.parseAddress(cmd.getOptionValue("M"));
+                    if (metrics == null)
+                    {
+                        System.err.println("**error: '-M' must be a port, or address:port.");
+                        Patroncount.displayHelp(1);
+                    }
+                }
+                if (cmd.hasOption("e"))
+                {
+                    format = cmd.getOptionValue("e");
+                    try
+                    {
+                        ReadingEncoder.getInstance(format, System.out, false);
+                    }
+                    catch (IllegalArgumentException ex)
+                    {
+                        System.err.println("**error: " + ex.getMessage() + ".");
+                        Patroncount.displayHelp(1);
+                    }
+                }
+                if (cmd.hasOption("B"))
+                {
+                    breakerThreshold = Patroncount.parseNumber(cmd.getOptionValue("B"));
+                    if (breakerThreshold < 0)
+                    {
+                        System.err.println("**error: '-B' must be 0 or more.");
+                        Patroncount.displayHelp(1);
+                    }
+                }
+                if (cmd.hasOption("c"))
+                {
+                    concurrency = Patroncount.parseNumber(cmd.getOptionValue("c"));
+                    if (concurrency < 1)
+                    {
+                        System.err.println("**error: '-c' must be at least 1.");
+                        Patroncount.displayHelp(1);
+                    }
+                }
+            }
+            else if (cmd.hasOption("D"))
+            {
+                System.err.println("**error: '--daemon' requires a fleet file"
+                        + " specified with the '-f' flag.");
+                Patroncount.displayHelp(1);
+            }
+            else if (cmd.hasOption("i")) // gate IP
             {
                 GateIPv4 gateIp = new GateIPv4(cmd.getOptionValue("i"));
                 if (gateIp.isValid() == false)
@@ -125,6 +454,26 @@ public class Patroncount
                     Patroncount.displayHelp(1);
                 }
                 ip = cmd.getOptionValue("i");
+                if (cmd.hasOption("H"))
+                {
+                    history = cmd.getOptionValue("H");
+                    if (storeDir == null || (! history.equalsIgnoreCase("raw") 
+                            && Resolution.fromName(history) == null))
+                    {
+                        System.err.println("**error: '-H' needs 'raw', '1m', '1h' or '1d',"
+                                + " and a store specified with '-S'.");
+                        Patroncount.displayHelp(1);
+                    }
+                    if (cmd.hasOption("w"))
+                    {
+                        window = Patroncount.parseNumber(cmd.getOptionValue("w"));
+                        if (window < 1)
+                        {
+                            System.err.println("**error: '-w' must be at least 1 hour.");
+                            Patroncount.displayHelp(1);
+                        }
+                    }
+                }
             }
             else
             {
@@ -135,28 +484,13 @@ public class Patroncount
             // Gate type specification.
             if (cmd.hasOption("t")) // location of the pidFile, default is current directory (relative to jar location).
             {
-                switch (cmd.getOptionValue("t").toUpperCase())
-                {
-                    case "3M": // Add more gate types here, and extend code in CustomerGate.
-                        gateType = SupportedGateType._3M_9100_;
-                        break;
-                    case "FEIGX1":
-                    case "FEIG":
-                        gateType = SupportedGateType._FEIG_ID_ISC_LR2500_B_;
-                        break;
-                    case "FEIGX2":
-                        gateType = SupportedGateType._FEIG_ID_ISC_LR2500_B_DUAL_AISLE_;
-                        break;
-                    case "UNDEFINED":
-                    case "UNKNOWN":
-                    case "OFFLINE":
-                        gateType = SupportedGateType._DUMMY_;
-                        break;
-                    default:
-                        System.err.println("**error: "
-                                + "invalid RFID gate type selected. Refrer to "
-                                + "documentation for supported RFID gate types.");
-                        Patroncount.displayHelp(1);
+                gateType = SupportedGateType.fromName(cmd.getOptionValue("t"));
+                if (gateType == null)
+                {
+                    System.err.println("**error: "
+                            + "invalid RFID gate type selected. Refrer to "
+                            + "documentation for supported RFID gate types.");
+                    Patroncount.displayHelp(1);
                 }
             }
             if (cmd.hasOption("h") || cmd.hasOption("x"))
@@ -165,19 +499,818 @@ public class Patroncount
             }
             if (cmd.hasOption("s"))
             {
-                timeout = Integer.parseInt(cmd.getOptionValue("s"));
+                try
+                {
+                    timeout = GateEntry.parseTimeout(cmd.getOptionValue("s"));
+                }
+                catch (IllegalArgumentException ex)
+                {
+                    System.err.println("**error: '-s' " + ex.getMessage() + ".");
+                    Patroncount.displayHelp(1);
+                }
             }
         } 
         catch (ParseException | UnsupportedOperationException ex)
         {
             Logger.getLogger(Patroncount.class.getName()).log(Level.SEVERE, null, ex);
         }
-        gate = CustomerGate.getInstance(gateType, ip, DEBUG);
+        if (resetFile != null)
+        {
+            Patroncount.resetFleet(fleetFile, resetFile, concurrency, resetAt);
+            return;
+        }
+        if (serve != null)
+        {
+            Patroncount.runServer(serve, fleetFile, cacheTtl, concurrency);
+            return;
+        }
+        if (daemon)
+        {
+            Patroncount.runDaemon(fleetFile, concurrency, interval, outputFile, 
+                    format, deltas, storeDir, metrics, timeoutFile, 
+                    breakerThreshold, sinkFile, siteFile, segmentFile);
+            return;
+        }
+        if (history != null)
+        {
+            Patroncount.printHistory(storeDir, ip, history, window);
+            return;
+        }
+        if (fleetFile != null)
+        {
+            Patroncount.pollFleet(fleetFile, streaming, concurrency, nonBlocking, 
+                    format, timeoutFile, sinkFile, segmentFile);
+            return;
+        }
+        Patroncount.queryGate(gateType, ip, timeout);
+    }
+    
+    /**
+     * Queries one gate and prints its counts.
+     * @param gateType make and model of the gate.
+     * @param ip the gate's IPv4 address.
+     * @param timeout longest wait for the response in milliseconds, or 0
+     * for the gate type's default.
+     */
+    private static void queryGate(SupportedGateType gateType, String ip, int timeout)
+    {
+        CustomerGate gate = CustomerGate.getInstance(gateType, ip, DEBUG);
         if (timeout > 0)
         {
-            gate.setTimeout(timeout);
+            gate.setTimeoutMillis(timeout);
         }
         System.out.println(gate.queryGate());
     }
     
+    /**
+     * Queries a single gate without building the command line parser, for
+     * the '-i ip [-t type] [-s seconds] [-d]' runs cron starts every few
+     * minutes, where starting the JVM takes longer than the query itself. 
+     * Anything else, mistakes included, is left to the full parser so it
+     * is handled and reported the same way as always.
+     * @param args the command line arguments.
+     * @return true if the gate was queried, and false if the arguments need
+     * the full parser.
+     */
+    private static boolean quickQuery(String[] args)
+    {
+        String ip = null;
+        String type = null;
+        String seconds = null;
+        boolean debug = false;
+        for (int i = 0; i < args.length; i++)
+        {
+            String arg = args[i];
+            if (arg.length() < 2 || arg.charAt(0) != '-')
+            {
+                return false;
+            }
+            char flag = arg.charAt(1);
+            if (flag == 'd' && arg.length() == 2)
+            {
+                debug = true;
+                continue;
+            }
+            String value;
+            if (arg.length() > 2)
+            {
+                value = arg.substring(2);
+            }
+            else if (i + 1 < args.length && ! args[i + 1].startsWith("-"))
+            {
+                value = args[++i];
+            }
+            else
+            {
+                return false;
+            }
+            if (flag == 'i' && ip == null)
+            {
+                ip = value;
+            }
+            else if (flag == 't' && type == null)
+            {
+                type = value;
+            }
+            else if (flag == 's' && seconds == null)
+            {
+                seconds = value;
+            }
+            else
+            {
+                return false;
+            }
+        }
+        if (! GateIPv4.isValid(ip))
+        {
+            return false;
+        }
+        SupportedGateType gateType = SupportedGateType._3M_9100_;
+        if (type != null)
+        {
+            gateType = SupportedGateType.fromName(type);
+            if (gateType == null)
+            {
+                return false;
+            }
+        }
+        int timeout = 0;
+        if (seconds != null)
+        {
+            try
+            {
+                timeout = GateEntry.parseTimeout(seconds);
+            }
+            catch (IllegalArgumentException ex)
+            {
+                return false;
+            }
+        }
+        DEBUG = debug;
+        Patroncount.queryGate(gateType, ip, timeout);
+        return true;
+    }
+    
+    /**
+     * Polls every gate in the fleet file at a fixed rate until the process
+     * is stopped.
+     * @param fleetFile path to the file of 'ip type [seconds]' entries.
+     * @param concurrency maximum number of gates to query at once.
+     * @param interval seconds between polls of each gate.
+     * @param outputFile file results are appended to, or null for standard out.
+     * @param format output format, see {@link ReadingEncoder}.
+     * @param deltas true to output the traffic between polls rather than
+     * the gates' counters.
+     * @param storeDir directory of the store readings are kept in, or null
+     * to not keep them.
+     * @param metrics address metrics are served on, or null to not serve them.
+     * @param timeoutFile file of learned timeouts, or null to use each gate
+     * type's default.
+     * @param breakerThreshold failures in a row before a gate stops being
+     * polled, or 0 to always poll every gate.
+     * @param sinkFile database connection file, or null to not write
+     * readings to a database.
+     * @param siteFile file of where each gate is, or null to not total
+     * traffic by branch and region.
+     * @param segmentFile file of network segment limits, or null to only
+     * limit the whole fleet.
+     */
+    private static void runDaemon(String fleetFile, int concurrency, 
+            int interval, String outputFile, String format, boolean deltas,
+            String storeDir, InetSocketAddress metrics, String timeoutFile,
+            int breakerThreshold, String sinkFile, String siteFile, 
+            String segmentFile)
+    {
+        List<GateEntry> gates = Patroncount.loadFleet(fleetFile);
+        OutputStream out = System.out;
+        if (outputFile != null)
+        {
+            try
+            {
+                out = new FileOutputStream(outputFile, true);
+            }
+            catch (IOException ex)
+            {
+                System.err.println("***error: unable to open output file '" 
+                        + outputFile + "': " + ex.getMessage());
+                System.exit(1);
+                return;
+            }
+        }
+        final PollingDaemon pollingDaemon = new PollingDaemon(gates, concurrency, 
+                ReadingEncoder.getInstance(format, out, true), DEBUG);
+        if (deltas)
+        {
+            pollingDaemon.setDeltaStage(new DeltaStage(TimeUnit.SECONDS.toMillis(interval)));
+        }
+        if (storeDir != null)
+        {
+            pollingDaemon.setStore(Patroncount.openStore(storeDir));
+        }
+        if (sinkFile != null)
+        {
+            pollingDaemon.setSink(Patroncount.openSink(sinkFile));
+        }
+        if (breakerThreshold > 0)
+        {
+            pollingDaemon.setCircuitBreakers(breakerThreshold);
+        }
+        if (segmentFile != null)
+        {
+            pollingDaemon.setLimiter(Patroncount.openLimiter(segmentFile));
+        }
+        if (timeoutFile != null)
+        {
+            pollingDaemon.setLearnedTimeouts(Patroncount.openTimeouts(timeoutFile));
+        }
+        TrafficAggregator traffic = null;
+        if (siteFile != null)
+        {
+            traffic = Patroncount.openSites(siteFile);
+            pollingDaemon.setAggregator(traffic);
+            if (metrics == null)
+            {
+                System.err.println("**warn: traffic totals of '-A' are only reported with '-M'.");
+            }
+        }
+        if (metrics != null)
+        {
+            MetricsRegistry registry = new MetricsRegistry();
+            pollingDaemon.setMetrics(registry);
+            registry.setTraffic(traffic);
+            try
+            {
+                new MetricsServer(metrics, registry).start();
+            }
+            catch (IOException ex)
+            {
+                System.err.println("***error: unable to serve metrics on '" 
+                        + metrics + "': " + ex.getMessage());
+                System.exit(1);
+            }
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread()
+        {
+            @Override
+            public void run()
+            {
+                pollingDaemon.stop();
+            }
+        });
+        pollingDaemon.start(interval);
+        pollingDaemon.awaitTermination();
+    }
+    
+    /**
+     * Reads the final counts of every gate in the fleet and resets them, 
+     * printing 'ip|in_count|out_count|outcome|attempts|' for each gate. 
+     * Exits with 1 if any gate that supports resets wasn't reset.
+     * @param fleetFile path to the file of 'ip type [seconds]' entries.
+     * @param resetFile properties file of each gate type's reset frame.
+     * @param concurrency maximum number of gates talked to at once.
+     * @param resetAt when to reset, in milliseconds since the epoch, or 0
+     * for now.
+     */
+    private static void resetFleet(String fleetFile, String resetFile, 
+            int concurrency, long resetAt)
+    {
+        try
+        {
+            if (GateCodecs.loadQueryFrames(resetFile) == 0)
+            {
+                System.err.println("**warn: no query frames in '" + resetFile + "'.");
+            }
+        }
+        catch (IOException ex)
+        {
+            System.err.println("***error: unable to read reset frames '" 
+                    + resetFile + "': " + ex.getMessage());
+            System.exit(1);
+            return;
+        }
+        List<GateEntry> gates = Patroncount.loadFleet(fleetFile);
+        FleetReset reset = new FleetReset(gates, concurrency, 
+                FleetReset.DEFAULT_ATTEMPTS, DEBUG);
+        List<FleetReset.Result> results;
+        try
+        {
+            results = reset.run(resetAt);
+        }
+        catch (InterruptedException ex)
+        {
+            System.err.println("***error: reset interrupted.");
+            System.exit(1);
+            return;
+        }
+        int failed = 0;
+        int unsupported = 0;
+        long first = Long.MAX_VALUE;
+        long last = 0L;
+        for (FleetReset.Result result : results)
+        {
+            System.out.println(result);
+            switch (result.getOutcome())
+            {
+                case RESET:
+                    first = Math.min(first, result.getFinished());
+                    last = Math.max(last, result.getFinished());
+                    break;
+                case FAILED:
+                    failed++;
+                    break;
+                default:
+                    unsupported++;
+                    break;
+            }
+        }
+        int done = results.size() - failed - unsupported;
+        System.err.println("reset " + done + " of " + results.size() + " gates"
+                + (done > 0 ? " within " + (last - first) + " milliseconds" : "")
+                + ", " + failed + " failed, " + unsupported + " without a reset frame.");
+        if (failed > 0)
+        {
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * @param time a time of day.
+     * @return the next time the clock shows that time, in milliseconds 
+     * since the epoch, or now if it did so less than a minute ago.
+     */
+    private static long nextTime(LocalTime time)
+    {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(time);
+        if (next.isBefore(now.minusMinutes(1)))
+        {
+            next = next.plusDays(1);
+        }
+        return next.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    /**
+     * Answers gate queries over HTTP until the process is stopped.
+     * @param address address to listen on.
+     * @param fleetFile file of the gates whose types and timeouts are used
+     * when a request doesn't give them, or null for none.
+     * @param cacheTtl milliseconds a gate's reading is used for before the
+     * gate is queried again.
+     * @param concurrency most requests answered, and most gates queried, at
+     * the same time.
+     */
+    private static void runServer(InetSocketAddress address, String fleetFile,
+            long cacheTtl, int concurrency)
+    {
+        List<GateEntry> gates = new ArrayList<>();
+        if (fleetFile != null)
+        {
+            gates = Patroncount.loadFleet(fleetFile);
+        }
+        ReadingCache cache = new ReadingCache(cacheTtl, 
+                Math.max(ReadingCache.DEFAULT_MAX_SIZE, gates.size()), DEBUG);
+        final QueryServer server;
+        try
+        {
+            server = new QueryServer(address, gates, cache, concurrency);
+        }
+        catch (IOException ex)
+        {
+            System.err.println("***error: unable to serve queries on '" 
+                    + address + "': " + ex.getMessage());
+            System.exit(1);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread()
+        {
+            @Override
+            public void run()
+            {
+                server.stop();
+            }
+        });
+        server.start();
+    }
+    
+    /**
+     * Parses the '-M' metrics or '--serve' address.
+     * @param value 'port' or 'address:port'.
+     * @return the address, loopback if none was given, or null if the value
+     * isn't valid.
+     */
+    private static InetSocketAddress parseAddress(String value)
+    {
+        String host = "127.0.0.1";
+        String port = value;
+        int colon = value.lastIndexOf(':');
+        if (colon >= 0)
+        {
+            host = value.substring(0, colon);
+            port = value.substring(colon + 1);
+        }
+        try
+        {
+            int number = Integer.parseInt(port);
+            if (host.isEmpty() || number < 1 || number > 65535)
+            {
+                return null;
+            }
+            return new InetSocketAddress(host, number);
+        }
+        catch (NumberFormatException ex)
+        {
+            return null;
+        }
+    }
+    
+    /**
+     * Reads a whole number switch value.
+     * @param value the switch's value.
+     * @return the number, or -1 if the value isn't a number, so it fails 
+     * the switch's range check.
+     */
+    private static int parseNumber(String value)
+    {
+        try
+        {
+            return Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException ex)
+        {
+            return -1;
+        }
+    }
+    
+    /**
+     * Reads the site file, exiting if it can't be read.
+     * @param siteFile file of 'ip region branch entrance [aisle ...]' lines.
+     * @return the aggregator of the sites in the file.
+     */
+    private static TrafficAggregator openSites(String siteFile)
+    {
+        try
+        {
+            return TrafficAggregator.load(siteFile);
+        }
+        catch (IOException ex)
+        {
+            System.err.println("***error: unable to read site file '" 
+                    + siteFile + "': " + ex.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+    
+    /**
+     * Opens the reading store, exiting if it can't be opened.
+     * @param storeDir directory of the store.
+     * @return the store.
+     */
+    private static TimeSeriesStore openStore(String storeDir)
+    {
+        try
+        {
+            return new TimeSeriesStore(Paths.get(storeDir));
+        }
+        catch (IOException ex)
+        {
+            System.err.println("***error: unable to open store '" 
+                    + storeDir + "': " + ex.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+    
+    /**
+     * Prints a gate's stored readings or rollups.
+     * @param storeDir directory of the store.
+     * @param ip the gate.
+     * @param resolution 'raw' for readings, or the name of a {@link Resolution}.
+     * @param hours how far back to print.
+     */
+    private static void printHistory(String storeDir, String ip, 
+            String resolution, int hours)
+    {
+        Path path = Paths.get(storeDir);
+        if (! path.toFile().isDirectory())
+        {
+            System.err.println("***error: no store in '" + storeDir + "'.");
+            System.exit(1);
+        }
+        TimeSeriesStore store = Patroncount.openStore(storeDir);
+        long to = System.currentTimeMillis() + 1;
+        long from = to - TimeUnit.HOURS.toMillis(hours);
+        StringBuilder line = new StringBuilder(64);
+        try
+        {
+            if (resolution.equalsIgnoreCase("raw"))
+            {
+                ReadingCursor readings = store.readings(ip, from, to);
+                while (readings.next())
+                {
+                    Patroncount.printHistoryLine(line, readings.getTimestamp(), ip, 
+                            readings.getIn(), readings.getOut());
+                }
+            }
+            else
+            {
+                Resolution period = Resolution.fromName(resolution);
+                RollupCursor rollups = store.rollups(ip, period, period.periodStart(from), to);
+                while (rollups.next())
+                {
+                    Patroncount.printHistoryLine(line, rollups.getTimestamp(), ip, 
+                            rollups.getIn(), rollups.getOut());
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(Patroncount.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        System.out.flush();
+    }
+    
+    private static void printHistoryLine(StringBuilder line, long timestamp, 
+            String ip, long in, long out)
+    {
+        line.setLength(0);
+        line.append(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp),
+                ZoneId.systemDefault()).format(ReadingEncoder.PIPE_TIMESTAMP))
+                .append('|').append(ip).append('|').append(in).append('|')
+                .append(out).append('|');
+        System.out.println(line);
+    }
+    
+    /**
+     * Reads the fleet file, exiting if it can't be read.
+     * @param fleetFile path to the file of 'ip type [seconds]' entries.
+     * @return the gates in the fleet.
+     */
+    private static List<GateEntry> loadFleet(String fleetFile)
+    {
+        try
+        {
+            return FleetConfig.load(fleetFile);
+        }
+        catch (IOException ex)
+        {
+            System.err.println("***error: unable to read fleet file '" 
+                    + fleetFile + "': " + ex.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+    
+    /**
+     * Queries every gate listed in the fleet file and prints one line per gate.
+     * @param fleetFile path to the file of 'ip type [seconds]' entries, or
+     * when streaming, '-' for standard in.
+     * @param streaming true to start each query as its line is read and
+     * print each gate's line as soon as it's done, false to print the 
+     * whole fleet in order once every gate is done.
+     * @param concurrency maximum number of gates to query at once.
+     * @param nonBlocking true to query from a single non-blocking thread.
+     * @param format output format, see {@link ReadingEncoder}.
+     * @param timeoutFile file of learned timeouts, or null to use each gate
+     * type's default.
+     * @param sinkFile database connection file, or null to not write
+     * readings to a database.
+     * @param segmentFile file of network segment limits, or null to only
+     * limit the whole fleet.
+     */
+    private static void pollFleet(String fleetFile, boolean streaming, 
+            int concurrency, boolean nonBlocking, String format, 
+            String timeoutFile, String sinkFile, String segmentFile)
+    {
+        List<GateEntry> gates = null;
+        BufferedReader input = null;
+        if (streaming)
+        {
+            input = Patroncount.openInput(fleetFile);
+        }
+        else
+        {
+            gates = Patroncount.loadFleet(fleetFile);
+        }
+        FleetPoller poller = new FleetPoller(concurrency, DEBUG);
+        if (segmentFile != null)
+        {
+            poller.setLimiter(Patroncount.openLimiter(segmentFile));
+        }
+        LearnedTimeouts timeouts = null;
+        if (timeoutFile != null)
+        {
+            timeouts = Patroncount.openTimeouts(timeoutFile);
+            poller.setLearnedTimeouts(timeouts);
+        }
+        SelectorTransport transport = null;
+        if (nonBlocking)
+        {
+            try
+            {
+                transport = new SelectorTransport();
+            }
+            catch (IOException ex)
+            {
+                System.err.println("***error: unable to start the non-blocking "
+                        + "transport: " + ex.getMessage());
+                System.exit(1);
+                return;
+            }
+            poller.setTransport(transport);
+        }
+        JdbcSink sink = null;
+        if (sinkFile != null)
+        {
+            sink = Patroncount.openSink(sinkFile);
+        }
+        ReadingEncoder encoder = ReadingEncoder.getInstance(format, System.out, false);
+        try
+        {
+            if (input != null)
+            {
+                Patroncount.streamFleet(poller, input, encoder, sink);
+            }
+            else
+            {
+                for (GateReading reading : poller.poll(gates))
+                {
+                    encoder.encode(reading);
+                    if (sink != null)
+                    {
+                        sink.accept(reading);
+                    }
+                }
+            }
+            encoder.flush();
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(Patroncount.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        // A whole sweep goes to the database as one batch, unless it's 
+        // bigger than the batch size.
+        if (sink != null)
+        {
+            sink.close();
+        }
+        if (transport != null)
+        {
+            transport.close();
+        }
+        if (timeouts != null)
+        {
+            try
+            {
+                timeouts.save();
+            }
+            catch (IOException ex)
+            {
+                System.err.println("**warn: unable to save learned timeouts to '" 
+                        + timeoutFile + "': " + ex.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Queries gates as they are read and prints each as soon as it's done.
+     * @param poller queries the gates.
+     * @param input source of 'ip type [seconds]' lines, closed when done.
+     * @param encoder where the readings are printed.
+     * @param sink database the readings are written to, or null.
+     * @throws IOException if the input can't be read.
+     */
+    private static void streamFleet(FleetPoller poller, BufferedReader input,
+            final ReadingEncoder encoder, final JdbcSink sink) throws IOException
+    {
+        try (BufferedReader lines = input)
+        {
+            poller.stream(lines, new ResultsListener()
+            {
+                @Override
+                public void completed(GateReading reading)
+                {
+                    synchronized (encoder)
+                    {
+                        try
+                        {
+                            encoder.encode(reading);
+                            encoder.flush();
+                        }
+                        catch (IOException ex)
+                        {
+                            Logger.getLogger(Patroncount.class.getName()).log(Level.SEVERE, null, ex);
+                        }
+                    }
+                    if (sink != null)
+                    {
+                        sink.accept(reading);
+                    }
+                }
+            });
+        }
+    }
+    
+    /**
+     * Opens the '-l' gate list, exiting if it can't be opened.
+     * @param path path of the file, or '-' for standard in.
+     * @return reader of the lines.
+     */
+    private static BufferedReader openInput(String path)
+    {
+        if (path.equals("-"))
+        {
+            return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        }
+        try
+        {
+            return Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8);
+        }
+        catch (IOException ex)
+        {
+            System.err.println("***error: unable to read gate list '" 
+                    + path + "': " + ex.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+    
+    /**
+     * Reads the network segment limits, exiting if the file can't be read.
+     * @param segmentFile properties file of the limits, see 
+     * {@link SegmentLimiter}.
+     * @return the limiter.
+     */
+    private static SegmentLimiter openLimiter(String segmentFile)
+    {
+        try
+        {
+            return SegmentLimiter.load(segmentFile);
+        }
+        catch (IOException | IllegalArgumentException ex)
+        {
+            System.err.println("***error: unable to read segment limits '" 
+                    + segmentFile + "': " + ex.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+    
+    /**
+     * Reads the learned timeouts, exiting if the file can't be read.
+     * @param timeoutFile file of learned timeouts, which needn't exist yet.
+     * @return the timeouts.
+     */
+    private static LearnedTimeouts openTimeouts(String timeoutFile)
+    {
+        try
+        {
+            return new LearnedTimeouts(Paths.get(timeoutFile));
+        }
+        catch (IOException | IllegalArgumentException ex)
+        {
+            System.err.println("***error: unable to read learned timeouts '" 
+                    + timeoutFile + "': " + ex.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+    
+    /**
+     * Reads the database connection file and sets up the sink, exiting if
+     * the file can't be read. The database isn't connected to until the
+     * first batch is written.
+     * @param sinkFile properties file with the JDBC 'url', and optionally
+     * 'user', 'password', 'table', 'batch.size' and 'flush.seconds'.
+     * @return the sink.
+     */
+    private static JdbcSink openSink(String sinkFile)
+    {
+        Properties settings = new Properties();
+        try (InputStream in = new FileInputStream(sinkFile))
+        {
+            settings.load(in);
+            String url = settings.getProperty("url");
+            if (url == null)
+            {
+                throw new IllegalArgumentException("no 'url' given");
+            }
+            int batchSize = Integer.parseInt(settings.getProperty("batch.size", 
+                    String.valueOf(JdbcSink.DEFAULT_BATCH_SIZE)).trim());
+            long flushSeconds = Long.parseLong(settings.getProperty("flush.seconds", 
+                    String.valueOf(TimeUnit.MILLISECONDS.toSeconds(JdbcSink.DEFAULT_FLUSH_INTERVAL))).trim());
+            return new JdbcSink(url.trim(), settings.getProperty("user"), 
+                    settings.getProperty("password"), 
+                    settings.getProperty("table", JdbcSink.DEFAULT_TABLE).trim(), 
+                    batchSize, TimeUnit.SECONDS.toMillis(flushSeconds));
+        }
+        catch (IOException | IllegalArgumentException ex)
+        {
+            System.err.println("***error: unable to read database settings '" 
+                    + sinkFile + "': " + ex.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+    
 }